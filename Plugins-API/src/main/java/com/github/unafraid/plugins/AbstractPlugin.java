@@ -27,17 +27,23 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.github.unafraid.plugins.conditions.ConditionType;
 import com.github.unafraid.plugins.conditions.PluginConditions;
+import com.github.unafraid.plugins.events.PluginEvent;
+import com.github.unafraid.plugins.events.PluginEventBus;
+import com.github.unafraid.plugins.events.PluginEventType;
 import com.github.unafraid.plugins.exceptions.PluginException;
 import com.github.unafraid.plugins.exceptions.PluginRuntimeException;
 import com.github.unafraid.plugins.installers.IPluginInstaller;
 import com.github.unafraid.plugins.installers.file.FileInstaller;
 import com.github.unafraid.plugins.migrations.PluginMigrations;
+import com.github.unafraid.plugins.util.CircuitBreaker;
 import com.github.unafraid.plugins.util.ThrowableRunnable;
 import com.google.common.base.MoreObjects;
 
@@ -55,9 +61,11 @@ public abstract class AbstractPlugin {
 	private final List<IPluginInstaller> installers = new ArrayList<>(Collections.singleton(fileInstaller));
 	private final AtomicReference<PluginState> state = new AtomicReference<>(PluginState.AVAILABLE);
 	private final Set<IPluginFunction<? extends AbstractPlugin>> functions = new LinkedHashSet<>();
+	private final Map<IPluginFunction<? extends AbstractPlugin>, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
 	private Path pluginsPath;
 	private Path jarPath;
 	private String jarHash;
+	private volatile PluginEventBus eventBus;
 	
 	/**
 	 * Gets the name of the plugin.<br>
@@ -103,6 +111,40 @@ public abstract class AbstractPlugin {
 		return functions.stream().filter(function -> functionClass.isInstance(function)).map(functionClass::cast).findFirst().orElse(null);
 	}
 	
+	/**
+	 * Gets a function by an interface it implements, guarded by its circuit breaker, see {@link #getCircuitBreaker(IPluginFunction)}.<br>
+	 * Invocations through the returned proxy fail fast with {@link com.github.unafraid.plugins.exceptions.CircuitOpenException CircuitOpenException} while the function keeps throwing or being slow, so callers are not dragged down by a bad plugin.
+	 * Only interfaces can be proxied, so expose the methods to guard through one.
+	 * @param <R> the interface type
+	 * @param functionInterface an interface of the function
+	 * @return the guarded function, or {@code null} if no function implements the interface
+	 */
+	public final <R> R getGuardedFunction(Class<R> functionInterface) {
+		final IPluginFunction<? extends AbstractPlugin> function = functions.stream().filter(functionInterface::isInstance).findFirst().orElse(null);
+		if (function == null) {
+			return null;
+		}
+		return CircuitBreaker.guard(functionInterface, functionInterface.cast(function), getCircuitBreaker(function));
+	}
+	
+	/**
+	 * Gets the circuit breaker of a function, shared by all its guarded proxies, to configure or inspect it.
+	 * @param function the function
+	 * @return the circuit breaker
+	 */
+	public final CircuitBreaker getCircuitBreaker(IPluginFunction<? extends AbstractPlugin> function) {
+		Objects.requireNonNull(function);
+		return circuitBreakers.computeIfAbsent(function, k -> new CircuitBreaker(getName() + "/" + function.getClass().getName()));
+	}
+	
+	/**
+	 * Gets the registered functions of the plugin.
+	 * @return functions
+	 */
+	public final Set<IPluginFunction<? extends AbstractPlugin>> getFunctions() {
+		return Collections.unmodifiableSet(functions);
+	}
+	
 	/**
 	 * Registers function of an plugin
 	 * @param <T> the generic plugin type
@@ -132,6 +174,9 @@ public abstract class AbstractPlugin {
 		
 		if (state.compareAndSet(currentState, newState)) {
 			onStateChanged(currentState, newState);
+			if (currentState != newState) {
+				publish(PluginEvent.stateChanged(this, currentState, newState));
+			}
 			return true;
 		}
 		return false;
@@ -172,17 +217,20 @@ public abstract class AbstractPlugin {
 	 * @throws PluginException
 	 */
 	public final void start() throws PluginException {
-		conditions.testConditions(ConditionType.START, this);
-		verifyStateAndRun(() ->
+		runAndPublish(() ->
 		{
-			for (IPluginInstaller installer : installers) {
-				installer.repair(this);
-			}
-			
-			for (IPluginFunction<?> function : functions) {
-				function.onStart();
-			}
-		}, PluginState.INSTALLED, PluginState.STARTED);
+			conditions.testConditions(ConditionType.START, this);
+			verifyStateAndRun(() ->
+			{
+				for (IPluginInstaller installer : installers) {
+					installer.repair(this);
+				}
+				
+				for (IPluginFunction<?> function : functions) {
+					function.onStart();
+				}
+			}, PluginState.INSTALLED, PluginState.STARTED);
+		}, null);
 	}
 	
 	/**
@@ -190,13 +238,16 @@ public abstract class AbstractPlugin {
 	 * @throws PluginException
 	 */
 	public final void stop() throws PluginException {
-		conditions.testConditions(ConditionType.STOP, this);
-		verifyStateAndRun(() ->
+		runAndPublish(() ->
 		{
-			for (IPluginFunction<?> function : functions) {
-				function.onStop();
-			}
-		}, PluginState.STARTED, PluginState.INSTALLED);
+			conditions.testConditions(ConditionType.STOP, this);
+			verifyStateAndRun(() ->
+			{
+				for (IPluginFunction<?> function : functions) {
+					function.onStop();
+				}
+			}, PluginState.STARTED, PluginState.INSTALLED);
+		}, null);
 	}
 	
 	/**
@@ -215,17 +266,20 @@ public abstract class AbstractPlugin {
 	 * @throws PluginException
 	 */
 	public final void install() throws PluginException {
-		conditions.testConditions(ConditionType.INSTALL, this);
-		verifyStateAndRun(() ->
+		runAndPublish(() ->
 		{
-			for (IPluginInstaller installer : installers) {
-				installer.install(this);
-			}
-			
-			for (IPluginFunction<?> function : functions) {
-				function.onInstall();
-			}
-		}, PluginState.INITIALIZED, PluginState.INSTALLED);
+			conditions.testConditions(ConditionType.INSTALL, this);
+			verifyStateAndRun(() ->
+			{
+				for (IPluginInstaller installer : installers) {
+					installer.install(this);
+				}
+				
+				for (IPluginFunction<?> function : functions) {
+					function.onInstall();
+				}
+			}, PluginState.INITIALIZED, PluginState.INSTALLED);
+		}, PluginEventType.INSTALLED);
 	}
 	
 	/**
@@ -233,17 +287,20 @@ public abstract class AbstractPlugin {
 	 * @throws PluginException
 	 */
 	public final void uninstall() throws PluginException {
-		conditions.testConditions(ConditionType.UNINSTALL, this);
-		verifyStateAndRun(() ->
+		runAndPublish(() ->
 		{
-			for (IPluginInstaller installer : installers) {
-				installer.uninstall(this);
-			}
-			
-			for (IPluginFunction<?> function : functions) {
-				function.onUninstall();
-			}
-		}, PluginState.INSTALLED, PluginState.INITIALIZED);
+			conditions.testConditions(ConditionType.UNINSTALL, this);
+			verifyStateAndRun(() ->
+			{
+				for (IPluginInstaller installer : installers) {
+					installer.uninstall(this);
+				}
+				
+				for (IPluginFunction<?> function : functions) {
+					function.onUninstall();
+				}
+			}, PluginState.INSTALLED, PluginState.INITIALIZED);
+		}, PluginEventType.UNINSTALLED);
 	}
 	
 	/**
@@ -253,15 +310,61 @@ public abstract class AbstractPlugin {
 	 * @throws PluginException
 	 */
 	public final void migrate(int from, int to) throws PluginException {
-		conditions.testConditions(ConditionType.MIGRATION, this);
-		verifyStateAndRun(() ->
+		runAndPublish(() ->
 		{
-			migrations.migrate(from, to, this);
-			
-			for (IPluginFunction<?> function : functions) {
-				function.onMigrate(from, to);
-			}
-		}, PluginState.INSTALLED, getState());
+			conditions.testConditions(ConditionType.MIGRATION, this);
+			verifyStateAndRun(() ->
+			{
+				migrations.migrate(from, to, this);
+				
+				for (IPluginFunction<?> function : functions) {
+					function.onMigrate(from, to);
+				}
+			}, PluginState.INSTALLED, getState());
+		}, PluginEventType.MIGRATED);
+	}
+	
+	/**
+	 * Runs a lifecycle operation of the plugin, publishing its outcome to the event bus of the repository.
+	 * @param operation the operation
+	 * @param successType the type of the event published on success, or {@code null} if the state change is enough
+	 * @throws PluginException
+	 */
+	private void runAndPublish(ThrowableRunnable operation, PluginEventType successType) throws PluginException {
+		try {
+			operation.runOrThrow();
+		}
+		catch (PluginException | RuntimeException e) {
+			publish(PluginEvent.failed(this, e));
+			throw e;
+		}
+		catch (Throwable t) {
+			publish(PluginEvent.failed(this, t));
+			throw new PluginException(t);
+		}
+		
+		if (successType != null) {
+			publish(PluginEvent.of(successType, this));
+		}
+	}
+	
+	/**
+	 * Publishes the event to the event bus of the repository, if any.
+	 * @param event the event
+	 */
+	private void publish(PluginEvent event) {
+		final PluginEventBus eventBus = this.eventBus;
+		if (eventBus != null) {
+			eventBus.publish(event);
+		}
+	}
+	
+	/**
+	 * Sets the event bus of the repository. (internal usage only)
+	 * @param eventBus the event bus
+	 */
+	final void setEventBus(PluginEventBus eventBus) {
+		this.eventBus = eventBus;
 	}
 	
 	/**
@@ -424,6 +527,15 @@ public abstract class AbstractPlugin {
 		return 0;
 	}
 	
+	/**
+	 * Gets the names of the plugins this plugin depends on.<br>
+	 * Bulk operations make sure these are processed before this plugin.
+	 * @return dependencies
+	 */
+	public Set<String> getDependencies() {
+		return Collections.emptySet();
+	}
+	
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -75,6 +75,25 @@ public interface IPluginFunction<T extends AbstractPlugin> {
 		// to be overridden
 	}
 	
+	/**
+	 * Triggered by {@link PluginRepository#warmUp(java.util.concurrent.Executor)} once your plugin is started, so you can exercise your hot code paths before the first real request.<br>
+	 * It may run concurrently with the warm-up of other functions.
+	 * @throws PluginException
+	 */
+	default void onWarmUp() throws PluginException {
+		// to be overridden
+	}
+	
+	/**
+	 * Polled by the {@link PluginSupervisor} while your plugin is started, an unhealthy plugin gets restarted.<br>
+	 * Keep it quick, the checks of all plugins run one after another.
+	 * @return {@code true} if the function is healthy, otherwise {@code false}
+	 * @throws PluginException when the function is unhealthy, recorded as the cause of the failure
+	 */
+	default boolean isHealthy() throws PluginException {
+		return true;
+	}
+	
 	/**
 	 * Gets the plugin owner of this function
 	 * @return the plugin itself
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.unafraid.plugins.util.FileHashUtil;
+import com.github.unafraid.plugins.util.JarClassLoader;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Manages the dynamic class data sharing (CDS) archive of the plugin classes, so later boots load them from shared memory instead of parsing and verifying them again.<br>
+ * Archives are named after a fingerprint of the hashes of the plugin and shared library JARs (the same hashes as {@link AbstractPlugin#getJarHash()}) and of the JVM, so any change to them leads to a new archive.
+ * <p>
+ * The archive is created and used by the JVM itself, so the options have to be given at launch, e.g. by a start script running {@code java -cp <class path> com.github.unafraid.plugins.PluginClassDataSharing <plugins path>}, which prints them and removes stale archives:
+ * <ul>
+ * <li>Java 19 and newer: {@code -XX:+AutoCreateSharedArchive -XX:SharedArchiveFile=<archive>}, the JVM creates the archive at exit when missing or unusable.</li>
+ * <li>Java 13 to 18: {@code -XX:ArchiveClassesAtExit=<archive>} for the warm run when the archive does not exist, {@code -XX:SharedArchiveFile=<archive>} afterwards.</li>
+ * <li>Older Java versions: nothing, dynamic archives are not supported.</li>
+ * </ul>
+ * The JVM only archives classes when its class path consists of JARs, not class directories.<br>
+ * The classes loaded from each plugin JAR during a warm run can also be recorded with {@link #writeClassList(PluginRepository)}.
+ * @author UnAfraid
+ */
+public final class PluginClassDataSharing {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PluginClassDataSharing.class);
+	
+	/**
+	 * The directory of the archives, relative to the plugins path.
+	 */
+	public static final String ARCHIVE_DIRECTORY = "cds";
+	
+	private static final String ARCHIVE_PREFIX = "plugins-";
+	private static final String ARCHIVE_SUFFIX = ".jsa";
+	private static final String CLASS_LIST_SUFFIX = ".classlist";
+	
+	private final Path pluginsPath;
+	private final Path archivePath;
+	private volatile String fingerprint;
+	
+	public PluginClassDataSharing(Path pluginsPath, Path archivePath) {
+		this.pluginsPath = Objects.requireNonNull(pluginsPath);
+		this.archivePath = Objects.requireNonNull(archivePath);
+	}
+	
+	public PluginClassDataSharing(Path pluginsPath) {
+		this(pluginsPath, pluginsPath.resolve(ARCHIVE_DIRECTORY));
+	}
+	
+	/**
+	 * Gets the fingerprint of the plugin JARs, the shared library JARs and the JVM, computed once.<br>
+	 * Concurrent first callers may compute it more than once, always to the same value.
+	 * @return fingerprint
+	 * @throws IOException if the JARs cannot be hashed
+	 */
+	public String getFingerprint() throws IOException {
+		String fingerprint = this.fingerprint;
+		if (fingerprint == null) {
+			final Map<String, String> jarHashes = new TreeMap<>();
+			for (Path directory : Arrays.asList(pluginsPath, pluginsPath.resolve(PluginRepository.LIBRARIES_DIRECTORY))) {
+				if (!Files.isDirectory(directory)) {
+					continue;
+				}
+				
+				try (Stream<Path> stream = Files.list(directory)) {
+					for (Path jar : stream.filter(path -> path.getFileName().toString().endsWith(".jar")).collect(Collectors.toList())) {
+						jarHashes.put(pluginsPath.relativize(jar).toString(), FileHashUtil.getFileHash(jar).toString());
+					}
+				}
+			}
+			
+			final Hasher hasher = Hashing.sha256().newHasher();
+			hasher.putString(System.getProperty("java.vm.vendor", "") + ' ' + System.getProperty("java.vm.version", ""), StandardCharsets.UTF_8);
+			jarHashes.forEach((jar, jarHash) -> hasher.putString(jar, StandardCharsets.UTF_8).putString(jarHash, StandardCharsets.UTF_8));
+			fingerprint = hasher.hash().toString().substring(0, 16);
+			this.fingerprint = fingerprint;
+		}
+		return fingerprint;
+	}
+	
+	/**
+	 * Gets the archive file of the current fingerprint.
+	 * @return archive file
+	 * @throws IOException if the JARs cannot be hashed
+	 */
+	public Path getArchiveFile() throws IOException {
+		return archivePath.resolve(ARCHIVE_PREFIX + getFingerprint() + ARCHIVE_SUFFIX);
+	}
+	
+	/**
+	 * Gets the class list file of the current fingerprint.
+	 * @return class list file
+	 * @throws IOException if the JARs cannot be hashed
+	 */
+	public Path getClassListFile() throws IOException {
+		return archivePath.resolve(ARCHIVE_PREFIX + getFingerprint() + CLASS_LIST_SUFFIX);
+	}
+	
+	/**
+	 * Gets the JVM options that create or use the archive of the current fingerprint.
+	 * @param javaVersion the feature version of the JVM to be launched, e.g. {@code 17}
+	 * @return JVM options, empty if the JVM does not support dynamic archives
+	 * @throws IOException if the JARs cannot be hashed
+	 */
+	public List<String> getJvmOptions(int javaVersion) throws IOException {
+		if (javaVersion < 13) {
+			return Collections.emptyList();
+		}
+		
+		final Path archiveFile = getArchiveFile().toAbsolutePath();
+		if (javaVersion >= 19) {
+			return Arrays.asList("-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=" + archiveFile);
+		}
+		
+		if (Files.isRegularFile(archiveFile)) {
+			return Collections.singletonList("-XX:SharedArchiveFile=" + archiveFile);
+		}
+		return Collections.singletonList("-XX:ArchiveClassesAtExit=" + archiveFile);
+	}
+	
+	/**
+	 * Deletes the archives and class lists of other fingerprints.
+	 * @return amount of deleted files
+	 * @throws IOException
+	 */
+	public int deleteStaleArchives() throws IOException {
+		if (!Files.isDirectory(archivePath)) {
+			return 0;
+		}
+		
+		final String current = ARCHIVE_PREFIX + getFingerprint() + '.';
+		final List<Path> staleFiles;
+		try (Stream<Path> stream = Files.list(archivePath)) {
+			staleFiles = stream.filter(path -> {
+				final String fileName = path.getFileName().toString();
+				return fileName.startsWith(ARCHIVE_PREFIX) && !fileName.startsWith(current) && (fileName.endsWith(ARCHIVE_SUFFIX) || fileName.endsWith(CLASS_LIST_SUFFIX));
+			}).collect(Collectors.toList());
+		}
+		
+		for (Path staleFile : staleFiles) {
+			Files.delete(staleFile);
+		}
+		return staleFiles.size();
+	}
+	
+	/**
+	 * Writes the classes loaded so far from each plugin JAR of the repository into the class list file, one {@code <jar hash> <class name>} per line.
+	 * @param <T> the plugin type
+	 * @param repository the plugin repository
+	 * @throws IOException
+	 */
+	public <T extends AbstractPlugin> void writeClassList(PluginRepository<T> repository) throws IOException {
+		final Map<String, Set<String>> classes = new TreeMap<>();
+		repository.getAllPlugins().values().stream().flatMap(plugins -> plugins.values().stream()).forEach(plugin -> {
+			final ClassLoader classLoader = repository.getClassLoader(plugin);
+			if (classLoader instanceof JarClassLoader) {
+				classes.computeIfAbsent(plugin.getJarHash(), k -> new TreeSet<>()).addAll(((JarClassLoader) classLoader).getDefinedClasses());
+			}
+		});
+		
+		final Path classListFile = getClassListFile();
+		Files.createDirectories(classListFile.getParent());
+		try (BufferedWriter writer = Files.newBufferedWriter(classListFile, StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, Set<String>> entry : classes.entrySet()) {
+				for (String className : entry.getValue()) {
+					writer.write(entry.getKey() + ' ' + className);
+					writer.newLine();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Reads the class list file of the current fingerprint.
+	 * @return the recorded class names by jar hash, empty if nothing was recorded
+	 * @throws IOException
+	 */
+	public Map<String, Set<String>> readClassList() throws IOException {
+		final Path classListFile = getClassListFile();
+		if (!Files.isRegularFile(classListFile)) {
+			return Collections.emptyMap();
+		}
+		
+		final Map<String, Set<String>> classes = new HashMap<>();
+		for (String line : Files.readAllLines(classListFile, StandardCharsets.UTF_8)) {
+			final int separator = line.indexOf(' ');
+			if (separator > 0) {
+				classes.computeIfAbsent(line.substring(0, separator), k -> new TreeSet<>()).add(line.substring(separator + 1).trim());
+			}
+		}
+		return classes;
+	}
+	
+	/**
+	 * Gets the feature version of a Java specification version, e.g. {@code 8} for {@code 1.8}.
+	 * @param specificationVersion the specification version
+	 * @return feature version
+	 */
+	static int getJavaVersion(String specificationVersion) {
+		final String version = specificationVersion.startsWith("1.") ? specificationVersion.substring(2) : specificationVersion;
+		final int dot = version.indexOf('.');
+		return Integer.parseInt(dot > 0 ? version.substring(0, dot) : version);
+	}
+	
+	/**
+	 * Prints the JVM options for the archive of the given plugins path, separated by spaces, and deletes stale archives.
+	 * @param args the plugins path, optionally followed by the feature version of the JVM to be launched (defaults to the running one)
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			throw new IllegalArgumentException("Usage: PluginClassDataSharing <plugins path> [java version]");
+		}
+		
+		final PluginClassDataSharing classDataSharing = new PluginClassDataSharing(Paths.get(args[0]));
+		final int javaVersion = args.length > 1 ? Integer.parseInt(args[1]) : getJavaVersion(System.getProperty("java.specification.version"));
+		final int deleted = classDataSharing.deleteStaleArchives();
+		if (deleted > 0) {
+			LOGGER.info("Deleted {} stale class data sharing file(s).", deleted);
+		}
+		
+		final List<String> options = new ArrayList<>(classDataSharing.getJvmOptions(javaVersion));
+		if (!options.isEmpty()) {
+			Files.createDirectories(classDataSharing.archivePath);
+		}
+		System.out.println(String.join(" ", options));
+	}
+}
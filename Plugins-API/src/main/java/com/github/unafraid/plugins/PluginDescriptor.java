@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * The metadata of a plugin, known without loading or instantiating the plugin class.<br>
+ * Plugin JARs may carry the descriptors of their plugins in {@value #INDEX_RESOURCE}, a properties file with the keys {@code <n>.class}, {@code <n>.name}, {@code <n>.author}, {@code <n>.createdAt}, {@code <n>.description}, {@code <n>.version}, {@code <n>.priority}, {@code <n>.dependencies}, {@code <n>.functions}, {@code <n>.installerSources} and {@code <n>.types} (the last four comma separated) for each plugin, numbered from 0.<br>
+ * The index can be generated at build time by {@link PluginIndexGenerator}.
+ * @author UnAfraid
+ */
+public class PluginDescriptor {
+	/**
+	 * The location of the plugin index inside plugin JARs.
+	 */
+	public static final String INDEX_RESOURCE = "META-INF/plugin-index";
+	
+	private final String className;
+	private final String name;
+	private final String author;
+	private final String createdAt;
+	private final String description;
+	private final int version;
+	private final int priority;
+	private final Set<String> dependencies;
+	private final Set<String> functions;
+	private final Set<String> installerSources;
+	private final Set<String> types;
+	private Path jarPath;
+	private String jarHash;
+	
+	public PluginDescriptor(String className, String name, String author, String createdAt, String description, int version, int priority, Set<String> dependencies, Set<String> functions, Set<String> installerSources, Set<String> types) {
+		this.className = Objects.requireNonNull(className);
+		this.name = Objects.requireNonNull(name);
+		this.author = author;
+		this.createdAt = createdAt;
+		this.description = description;
+		this.version = version;
+		this.priority = priority;
+		this.dependencies = Collections.unmodifiableSet(new LinkedHashSet<>(dependencies));
+		this.functions = Collections.unmodifiableSet(new LinkedHashSet<>(functions));
+		this.installerSources = Collections.unmodifiableSet(new LinkedHashSet<>(installerSources));
+		this.types = Collections.unmodifiableSet(new LinkedHashSet<>(types));
+	}
+	
+	/**
+	 * Creates the descriptor of an already instantiated plugin.
+	 * @param plugin the plugin
+	 * @return the descriptor
+	 */
+	public static PluginDescriptor of(AbstractPlugin plugin) {
+		final PluginDescriptor descriptor = new PluginDescriptor(plugin.getClass().getName(), plugin.getName(), plugin.getAuthor(), plugin.getCreatedAt(), plugin.getDescription(), plugin.getVersion(), plugin.getPriority(), plugin.getDependencies(), plugin.getFunctions().stream().map(function -> function.getClass().getName()).collect(Collectors.toCollection(LinkedHashSet::new)), plugin.getInstallers().stream().flatMap(installer -> installer.getSources().stream()).collect(Collectors.toCollection(LinkedHashSet::new)), getTypes(plugin.getClass()));
+		descriptor.setJarPath(plugin.getJarPath());
+		descriptor.setJarHash(plugin.getJarHash());
+		return descriptor;
+	}
+	
+	/**
+	 * Collects the names of the super classes and interfaces of a plugin class.
+	 * @param pluginClass the plugin class
+	 * @return the type names, without {@link Object}
+	 */
+	private static Set<String> getTypes(Class<?> pluginClass) {
+		final Set<String> types = new LinkedHashSet<>();
+		for (Class<?> clazz = pluginClass.getSuperclass(); (clazz != null) && (clazz != Object.class); clazz = clazz.getSuperclass()) {
+			types.add(clazz.getName());
+		}
+		
+		final List<Class<?>> interfaces = new ArrayList<>();
+		for (Class<?> clazz = pluginClass; clazz != null; clazz = clazz.getSuperclass()) {
+			interfaces.addAll(Arrays.asList(clazz.getInterfaces()));
+		}
+		for (int i = 0; i < interfaces.size(); i++) {
+			if (types.add(interfaces.get(i).getName())) {
+				interfaces.addAll(Arrays.asList(interfaces.get(i).getInterfaces()));
+			}
+		}
+		return types;
+	}
+	
+	/**
+	 * Reads the descriptors of a plugin index.
+	 * @param input the plugin index
+	 * @return the descriptors in index order
+	 * @throws IOException if the index cannot be read or is malformed
+	 */
+	public static List<PluginDescriptor> read(InputStream input) throws IOException {
+		final Properties properties = new Properties();
+		try (Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		
+		final List<PluginDescriptor> descriptors = new ArrayList<>();
+		for (int i = 0; properties.containsKey(i + ".class"); i++) {
+			final String prefix = i + ".";
+			final String name = properties.getProperty(prefix + "name");
+			if (name == null) {
+				throw new IOException("Missing " + prefix + "name in plugin index");
+			}
+			
+			try {
+				final int version = Integer.parseInt(properties.getProperty(prefix + "version", "0").trim());
+				final int priority = Integer.parseInt(properties.getProperty(prefix + "priority", "0").trim());
+				descriptors.add(new PluginDescriptor(properties.getProperty(prefix + "class").trim(), name, properties.getProperty(prefix + "author"), properties.getProperty(prefix + "createdAt"), properties.getProperty(prefix + "description"), version, priority, readList(properties, prefix + "dependencies"), readList(properties, prefix + "functions"), readList(properties, prefix + "installerSources"), readList(properties, prefix + "types")));
+			}
+			catch (NumberFormatException e) {
+				throw new IOException("Malformed " + prefix + "version or " + prefix + "priority in plugin index", e);
+			}
+		}
+		return descriptors;
+	}
+	
+	/**
+	 * Reads a comma separated list of the plugin index.
+	 * @param properties the plugin index
+	 * @param key the key of the list
+	 * @return the values of the list
+	 */
+	private static Set<String> readList(Properties properties, String key) {
+		return Arrays.stream(properties.getProperty(key, "").split(",")).map(String::trim).filter(value -> !value.isEmpty()).collect(Collectors.toCollection(LinkedHashSet::new));
+	}
+	
+	/**
+	 * Writes the descriptors as a plugin index.
+	 * @param descriptors the descriptors
+	 * @param output the output, which is not closed
+	 * @throws IOException
+	 */
+	public static void write(Collection<PluginDescriptor> descriptors, OutputStream output) throws IOException {
+		final Properties properties = new Properties();
+		int i = 0;
+		for (PluginDescriptor descriptor : descriptors) {
+			final String prefix = i++ + ".";
+			properties.setProperty(prefix + "class", descriptor.getClassName());
+			properties.setProperty(prefix + "name", descriptor.getName());
+			if (descriptor.getAuthor() != null) {
+				properties.setProperty(prefix + "author", descriptor.getAuthor());
+			}
+			if (descriptor.getCreatedAt() != null) {
+				properties.setProperty(prefix + "createdAt", descriptor.getCreatedAt());
+			}
+			if (descriptor.getDescription() != null) {
+				properties.setProperty(prefix + "description", descriptor.getDescription());
+			}
+			properties.setProperty(prefix + "version", Integer.toString(descriptor.getVersion()));
+			properties.setProperty(prefix + "priority", Integer.toString(descriptor.getPriority()));
+			properties.setProperty(prefix + "dependencies", String.join(",", descriptor.getDependencies()));
+			properties.setProperty(prefix + "functions", String.join(",", descriptor.getFunctions()));
+			properties.setProperty(prefix + "installerSources", String.join(",", descriptor.getInstallerSources()));
+			properties.setProperty(prefix + "types", String.join(",", descriptor.getTypes()));
+		}
+		
+		final StringWriter content = new StringWriter();
+		properties.store(content, null);
+		
+		// Drop the time stamp comment and sort the keys, so the same plugins always produce the same index.
+		final String lines = Arrays.stream(content.toString().split("\\R")).filter(line -> !line.isEmpty() && !line.startsWith("#")).sorted().collect(Collectors.joining("\n", "", "\n"));
+		final Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+		writer.write(lines);
+		writer.flush();
+	}
+	
+	/**
+	 * Gets the fully qualified name of the plugin class.
+	 * @return class name
+	 */
+	public String getClassName() {
+		return className;
+	}
+	
+	/**
+	 * Gets the name of the plugin, see {@link AbstractPlugin#getName()}.
+	 * @return plugin name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Gets the name of the author, see {@link AbstractPlugin#getAuthor()}.
+	 * @return author's name
+	 */
+	public String getAuthor() {
+		return author;
+	}
+	
+	/**
+	 * Gets the creation date of the plugin, see {@link AbstractPlugin#getCreatedAt()}.
+	 * @return creation date
+	 */
+	public String getCreatedAt() {
+		return createdAt;
+	}
+	
+	/**
+	 * Gets the description of the plugin, see {@link AbstractPlugin#getDescription()}.
+	 * @return description
+	 */
+	public String getDescription() {
+		return description;
+	}
+	
+	/**
+	 * Gets the version of the plugin, see {@link AbstractPlugin#getVersion()}.
+	 * @return version
+	 */
+	public int getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Gets the priority of the plugin, see {@link AbstractPlugin#getPriority()}.
+	 * @return priority
+	 */
+	public int getPriority() {
+		return priority;
+	}
+	
+	/**
+	 * Gets the names of the plugins this plugin depends on, see {@link AbstractPlugin#getDependencies()}.
+	 * @return dependencies
+	 */
+	public Set<String> getDependencies() {
+		return dependencies;
+	}
+	
+	/**
+	 * Gets the class names of the functions registered by the plugin, see {@link AbstractPlugin#getFunctions()}.
+	 * @return function class names
+	 */
+	public Set<String> getFunctions() {
+		return functions;
+	}
+	
+	/**
+	 * Gets the sources of the resources used by the installers of the plugin, see {@link com.github.unafraid.plugins.installers.IPluginInstaller#getSources()}.
+	 * @return installer sources
+	 */
+	public Set<String> getInstallerSources() {
+		return installerSources;
+	}
+	
+	/**
+	 * Gets the names of the super classes and interfaces of the plugin class, empty if the plugin index does not record them.
+	 * @return type names
+	 */
+	public Set<String> getTypes() {
+		return types;
+	}
+	
+	/**
+	 * Checks whether the plugin class is the given type or a subtype of it, without loading the plugin class.
+	 * @param type the type
+	 * @return {@code true} if the plugin is a {@code type}, {@code false} if it is not or the plugin index does not record its types
+	 */
+	public boolean isInstanceOf(Class<?> type) {
+		return className.equals(type.getName()) || types.contains(type.getName());
+	}
+	
+	/**
+	 * Sets the JAR file's path. (internal usage only)
+	 * @param jarPath path of the JAR that contains the plugin
+	 */
+	final void setJarPath(Path jarPath) {
+		this.jarPath = jarPath;
+	}
+	
+	/**
+	 * Gets the JAR file's path that contains the plugin.
+	 * @return JAR file's path
+	 */
+	public final Path getJarPath() {
+		return jarPath;
+	}
+	
+	/**
+	 * Sets the JAR's hash. (internal usage only)
+	 * @param jarHash the hash of the JAR file that contains the plugin
+	 */
+	final void setJarHash(String jarHash) {
+		this.jarHash = jarHash;
+	}
+	
+	/**
+	 * Gets the JAR file's hash that contains the plugin.
+	 * @return JAR hash
+	 */
+	public final String getJarHash() {
+		return jarHash;
+	}
+	
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+			.add("className", className)
+			.add("name", name)
+			.add("author", author)
+			.add("createdAt", createdAt)
+			.add("description", description)
+			.add("jarHash", jarHash)
+			.add("version", version)
+			.add("priority", priority)
+			.add("dependencies", dependencies)
+			.add("functions", functions)
+			.add("installerSources", installerSources)
+			.add("types", types)
+			.toString();
+	}
+}
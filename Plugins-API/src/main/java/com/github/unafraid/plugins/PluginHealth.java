@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * The health metrics recorded by the {@link PluginSupervisor} for a plugin.
+ * @author UnAfraid
+ */
+public class PluginHealth {
+	private final String name;
+	private final String jarHash;
+	private final AtomicLong checks = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+	private final AtomicLong restarts = new AtomicLong();
+	private final AtomicLong failedRestarts = new AtomicLong();
+	private volatile Throwable lastFailure;
+	private volatile long lastCheckedAt;
+	private volatile long lastFailedAt;
+	private volatile boolean restarting;
+	// Guarded by this, the backoff and the next restart time are updated together.
+	private long nextRestartNanos;
+	private long backoffNanos;
+	
+	PluginHealth(AbstractPlugin plugin) {
+		this.name = plugin.getName();
+		this.jarHash = plugin.getJarHash();
+	}
+	
+	/**
+	 * Records a passed health check.
+	 */
+	void recordHealthy() {
+		checks.incrementAndGet();
+		consecutiveFailures.set(0);
+		synchronized (this) {
+			if (isRestartAllowed()) {
+				// Healthy for the whole backoff since the last restart, the next restart is not a flap.
+				backoffNanos = 0;
+			}
+		}
+		lastCheckedAt = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Records a failed health check.
+	 * @param cause the cause of the failure
+	 */
+	void recordUnhealthy(Throwable cause) {
+		checks.incrementAndGet();
+		failures.incrementAndGet();
+		consecutiveFailures.incrementAndGet();
+		lastFailure = cause;
+		lastCheckedAt = lastFailedAt = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Records a restart attempt, and schedules when the next one is allowed by doubling the backoff.
+	 * @param started whether the plugin is started again
+	 * @param cause the cause of the failure, or {@code null} if the restart succeeded
+	 * @param initialBackoffNanos the backoff after the first restart
+	 * @param maxBackoffNanos the maximum backoff
+	 */
+	void recordRestart(boolean started, Throwable cause, long initialBackoffNanos, long maxBackoffNanos) {
+		restarts.incrementAndGet();
+		if (cause != null) {
+			failedRestarts.incrementAndGet();
+			lastFailure = cause;
+			lastFailedAt = System.currentTimeMillis();
+		}
+		restarting = !started;
+		synchronized (this) {
+			backoffNanos = backoffNanos == 0 ? initialBackoffNanos : Math.min(backoffNanos * 2, maxBackoffNanos);
+			nextRestartNanos = System.nanoTime() + backoffNanos;
+		}
+	}
+	
+	/**
+	 * Checks whether the backoff of the last restart has elapsed.
+	 * @return {@code true} if a restart is allowed
+	 */
+	synchronized boolean isRestartAllowed() {
+		return (backoffNanos == 0) || ((System.nanoTime() - nextRestartNanos) >= 0);
+	}
+	
+	/**
+	 * Gets the name of the plugin.
+	 * @return plugin name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Gets the hash of the JAR of the plugin version.
+	 * @return JAR hash
+	 */
+	public String getJarHash() {
+		return jarHash;
+	}
+	
+	/**
+	 * Gets the amount of health checks.
+	 * @return checks
+	 */
+	public long getChecks() {
+		return checks.get();
+	}
+	
+	/**
+	 * Gets the amount of failed health checks.
+	 * @return failures
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+	
+	/**
+	 * Gets the amount of failed health checks since the last passed one.
+	 * @return consecutive failures
+	 */
+	public int getConsecutiveFailures() {
+		return consecutiveFailures.get();
+	}
+	
+	/**
+	 * Gets the amount of restart attempts.
+	 * @return restarts
+	 */
+	public long getRestarts() {
+		return restarts.get();
+	}
+	
+	/**
+	 * Gets the amount of restart attempts that failed to start the plugin again.
+	 * @return failed restarts
+	 */
+	public long getFailedRestarts() {
+		return failedRestarts.get();
+	}
+	
+	/**
+	 * Gets the cause of the last failed health check or restart.
+	 * @return the cause, or {@code null} if the check just returned {@code false} or nothing failed yet
+	 */
+	public Throwable getLastFailure() {
+		return lastFailure;
+	}
+	
+	/**
+	 * Gets the time of the last health check.
+	 * @return time in milliseconds, or 0 if not checked yet
+	 */
+	public long getLastCheckedAt() {
+		return lastCheckedAt;
+	}
+	
+	/**
+	 * Gets the time of the last failed health check or restart.
+	 * @return time in milliseconds, or 0 if nothing failed yet
+	 */
+	public long getLastFailedAt() {
+		return lastFailedAt;
+	}
+	
+	/**
+	 * Checks whether the last restart failed to start the plugin again, so the supervisor keeps retrying.
+	 * @return {@code true} if the plugin is being restarted
+	 */
+	public boolean isRestarting() {
+		return restarting;
+	}
+	
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+			.add("name", name)
+			.add("jarHash", jarHash)
+			.add("checks", checks)
+			.add("failures", failures)
+			.add("consecutiveFailures", consecutiveFailures)
+			.add("restarts", restarts)
+			.add("failedRestarts", failedRestarts)
+			.add("restarting", restarting)
+			.add("lastFailure", lastFailure)
+			.toString();
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.unafraid.plugins.util.ClassIndex;
+
+/**
+ * Generates the {@value PluginDescriptor#INDEX_RESOURCE} of a plugin project at build time.<br>
+ * Every concrete {@link AbstractPlugin} subclass found in the given class directories or JARs is instantiated once, so the index records exactly what the plugin reports at runtime, including the functions and installer sources registered in its constructor and {@code setup}.
+ * <p>
+ * Usage: {@code PluginIndexGenerator <output directory> <class directory or JAR>...}, the generated index is written to {@code <output directory>/META-INF/plugin-index}.
+ * Gradle builds of plugin projects may apply {@code gradle/plugin-index.gradle} of this repository, which runs it after compilation and packs the index into the JAR, see the script for how to apply it.
+ * @author UnAfraid
+ */
+public final class PluginIndexGenerator {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PluginIndexGenerator.class);
+	
+	private PluginIndexGenerator() {
+		// utility class
+	}
+	
+	/**
+	 * Creates the descriptors of the plugins found in the given class directories or JARs.
+	 * @param paths the class directories or JARs to look for plugins in
+	 * @param classLoader the class loader able to load the classes of the paths and their dependencies
+	 * @return the descriptors, ordered by class name
+	 * @throws IOException if a path cannot be indexed
+	 * @throws ReflectiveOperationException if a plugin cannot be instantiated
+	 */
+	public static List<PluginDescriptor> generate(Collection<Path> paths, ClassLoader classLoader) throws IOException, ReflectiveOperationException {
+		final TreeSet<String> classNames = new TreeSet<>();
+		for (Path path : paths) {
+			classNames.addAll(ClassIndex.of(path).getClasses());
+		}
+		
+		final List<PluginDescriptor> descriptors = new ArrayList<>();
+		for (String className : classNames) {
+			final Class<?> clazz;
+			try {
+				clazz = Class.forName(className, false, classLoader);
+			}
+			catch (ClassNotFoundException | LinkageError e) {
+				LOGGER.debug("Skipping class {} that cannot be loaded.", className, e);
+				continue;
+			}
+			
+			if (!AbstractPlugin.class.isAssignableFrom(clazz) || Modifier.isAbstract(clazz.getModifiers()) || !Modifier.isPublic(clazz.getModifiers())) {
+				continue;
+			}
+			
+			final AbstractPlugin plugin = (AbstractPlugin) clazz.getDeclaredConstructor().newInstance();
+			descriptors.add(PluginDescriptor.of(plugin));
+		}
+		return descriptors;
+	}
+	
+	/**
+	 * Generates the plugin index.
+	 * @param args the output directory, followed by the class directories or JARs to look for plugins in
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("Usage: PluginIndexGenerator <output directory> <class directory or JAR>...");
+		}
+		
+		final List<Path> paths = Arrays.stream(args, 1, args.length).map(Paths::get).filter(Files::exists).collect(Collectors.toList());
+		final URL[] urls = new URL[paths.size()];
+		for (int i = 0; i < urls.length; i++) {
+			urls[i] = paths.get(i).toUri().toURL();
+		}
+		
+		final List<PluginDescriptor> descriptors;
+		try (URLClassLoader classLoader = new URLClassLoader(urls, Thread.currentThread().getContextClassLoader())) {
+			descriptors = generate(paths, classLoader);
+		}
+		
+		final Path index = Paths.get(args[0]).resolve(PluginDescriptor.INDEX_RESOURCE);
+		if (descriptors.isEmpty()) {
+			Files.deleteIfExists(index);
+			LOGGER.info("No plugins found, {} is not generated.", PluginDescriptor.INDEX_RESOURCE);
+			return;
+		}
+		
+		Files.createDirectories(index.getParent());
+		try (OutputStream output = Files.newOutputStream(index)) {
+			PluginDescriptor.write(descriptors, output);
+		}
+		LOGGER.info("Generated {} with {} plugin(s).", index, descriptors.size());
+	}
+}
@@ -23,23 +23,48 @@ package com.github.unafraid.plugins;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.unafraid.plugins.events.EventOverflowPolicy;
+import com.github.unafraid.plugins.events.PluginEvent;
+import com.github.unafraid.plugins.events.PluginEventBus;
+import com.github.unafraid.plugins.events.PluginEventType;
 import com.github.unafraid.plugins.exceptions.PluginException;
+import com.github.unafraid.plugins.util.ClassIndex;
+import com.github.unafraid.plugins.util.ClassLoaderLeakDetector;
 import com.github.unafraid.plugins.util.FileHashUtil;
 import com.github.unafraid.plugins.util.JarClassLoader;
 import com.github.unafraid.plugins.util.PathUtil;
+import com.google.common.hash.Hashing;
 
 /**
  * This is the class that scans for available plugins.<br>
@@ -51,13 +76,33 @@ import com.github.unafraid.plugins.util.PathUtil;
 public class PluginRepository<T extends AbstractPlugin> {
 	private static final Logger LOGGER = LoggerFactory.getLogger(PluginRepository.class);
 	
-	private static final String IDE_MODE = "IDE Mode.";
+	/**
+	 * The JAR hash of the plugins found on the class-path instead of in a JAR, e.g. when running from an IDE.
+	 */
+	static final String IDE_MODE = "IDE Mode.";
 	
-	private final Map<String, Map<String, T>> plugins = new HashMap<>();
-	private final Map<T, ClassLoader> classLoaders = new HashMap<>();
+	private static final Comparator<AbstractPlugin> PLUGIN_VERSION_ORDER = Comparator.comparing(AbstractPlugin::getName, String.CASE_INSENSITIVE_ORDER).thenComparing(Comparator.comparingInt(AbstractPlugin::getVersion).reversed()).thenComparing(Comparator.comparing(AbstractPlugin::getJarHash).reversed());
+	private static final Comparator<PluginDescriptor> VERSION_ORDER = Comparator.comparing(PluginDescriptor::getName, String.CASE_INSENSITIVE_ORDER).thenComparing(Comparator.comparingInt(PluginDescriptor::getVersion).reversed()).thenComparing(Comparator.comparing(PluginDescriptor::getJarHash).reversed());
+	static final String LIBRARIES_DIRECTORY = "lib";
+	
+	// Keyed by plugin name like the routings, the versions of a plugin are replaced as a whole and ordered newest first, see sortVersions.
+	private final Map<String, Map<String, T>> plugins = new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER);
+	private final Map<T, ClassLoader> classLoaders = new ConcurrentHashMap<>();
+	private final Map<String, Map<String, PluginDescriptor>> lazyPlugins = new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER);
+	private final Map<PluginDescriptor, LazyJar> lazyJars = new ConcurrentHashMap<>();
+	private final Map<String, PluginRouting> routings = new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER);
+	private final ClassLoaderLeakDetector leakDetector = new ClassLoaderLeakDetector();
+	private volatile PluginEventBus eventBus = new PluginEventBus();
+	private final PluginSupervisor<T> supervisor = new PluginSupervisor<>(this);
 	
 	private final Path pluginsPath;
 	private final ClassLoader parentClassLoader;
+	private ClassIndex parentClassIndex;
+	private boolean indexedClassLoading;
+	private boolean lazyInstantiation;
+	private boolean librariesLoaded;
+	private JarClassLoader libraryClassLoader;
+	private ClassIndex libraryClassIndex;
 	
 	public PluginRepository(Path pluginsPath, ClassLoader parentClassLoader) {
 		this.pluginsPath = pluginsPath;
@@ -78,40 +123,27 @@ public class PluginRepository<T extends AbstractPlugin> {
 		Objects.requireNonNull(pluginClass);
 		
 		// Scan for plug-ins deployed as 'jar' files.
-		final int previousSize = plugins.size();
+		final int previousSize = getPluginCount();
 		try {
 			if (Files.isDirectory(pluginsPath)) {
+				final ClassIndex parentClassIndex = getParentClassIndex();
+				loadLibraries(parentClassIndex);
 				Files.list(pluginsPath)
 						.filter(path -> path.getFileName().toString().endsWith(".jar"))
 						.forEach(path ->
 								{
 									try {
-										final URL url = path.toUri().toURL();
-										final JarClassLoader classLoader = parentClassLoader != null ? new JarClassLoader(new URL[]{url}, parentClassLoader) : new JarClassLoader(new URL[]{url});
-										for (T plugin : ServiceLoader.load(pluginClass, classLoader)) {
-											if (classLoader.hasParentLoadedClass(plugin.getClass().getName())) {
-												// Skip plugins that are coming already known to parent ClassLoaders as they will be loaded below
-												continue;
-											}
-											
-											plugin.setPluginsPath(pluginsPath);
-											plugin.setJarPath(path);
-											plugin.setJarHash(FileHashUtil.getFileHash(path).toString());
-											
-											try {
-												processPlugin(plugin, classLoader);
-											} catch (Exception e) {
-												LOGGER.warn("Failed to process plugin {}.", plugin, e);
-											}
-										}
+										scanJar(path, pluginClass, parentClassIndex);
 									} catch (Exception e) {
-										LOGGER.warn("Failed to convert path: {} to URI/URL", path, e);
+										LOGGER.warn("Failed to scan plugin JAR: {}", path, e);
+										eventBus.publish(PluginEvent.failed(null, e));
 									}
 								}
 						);
 			}
 		} catch (Exception e) {
 			LOGGER.warn("Failed to scan for plugins: ", e);
+			eventBus.publish(PluginEvent.failed(null, e));
 		}
 		
 		// Scan general class loader for plug-ins (Debug project include)
@@ -121,22 +153,440 @@ public class PluginRepository<T extends AbstractPlugin> {
 			plugin.setJarHash(IDE_MODE);
 			
 			try {
-				final Map<String, T> plugins = this.plugins.get(plugin.getName());
-				if (!plugins.isEmpty()) {
-					LOGGER.info("Discarding plugins {} in favor of class-path registered ones", plugins);
-					plugins.clear();
+				final List<T> discardedPlugins = plugins.getOrDefault(plugin.getName(), Collections.emptyMap()).values().stream().filter(discarded -> !IDE_MODE.equals(discarded.getJarHash())).collect(Collectors.toList());
+				if (!discardedPlugins.isEmpty()) {
+					LOGGER.info("Discarding plugins {} in favor of class-path registered ones", discardedPlugins);
+					for (T discarded : discardedPlugins) {
+						removeVersion(discarded);
+						cleanupClassLoader(discarded);
+					}
 				}
+				discardLazyPlugins(plugin.getName(), descriptor -> !IDE_MODE.equals(descriptor.getJarHash()));
 				processPlugin(plugin, Thread.currentThread().getContextClassLoader());
 			} catch (Exception e) {
 				LOGGER.warn("Failed to process plugin {}.", plugin, e);
 			}
 		}
 		
-		if (previousSize != plugins.size()) {
-			LOGGER.info("Discovered {} -> {} plugin(s).", previousSize, plugins.size());
-		} else if (plugins.size() != 0) {
-			LOGGER.info("Reloaded {} plugin(s).", plugins.size());
+		final int size = getPluginCount();
+		if (previousSize != size) {
+			LOGGER.info("Discovered {} -> {} plugin(s).", previousSize, size);
+		} else if (size != 0) {
+			LOGGER.info("Reloaded {} plugin(s).", size);
+		}
+		eventBus.publish(PluginEvent.of(PluginEventType.SCANNED, null));
+	}
+	
+	/**
+	 * Scans a plugin JAR.<br>
+	 * The plugins are looked up in the {@value PluginDescriptor#INDEX_RESOURCE} of the JAR, falling back to its {@link ServiceLoader} providers when it has none.
+	 * When lazy instantiation is enabled and the JAR carries an index recording the types of its plugins, only the descriptors of its plugins are registered, otherwise its plugins are instantiated right away.
+	 *
+	 * @param path             the JAR file
+	 * @param pluginClass      the plugin class
+	 * @param parentClassIndex the index of the parent class path
+	 * @throws Exception
+	 */
+	private void scanJar(Path path, Class<T> pluginClass, ClassIndex parentClassIndex) throws Exception {
+		final ClassIndex classIndex = ClassIndex.ofJar(path);
+		final List<PluginDescriptor> descriptors = new ArrayList<>();
+		final List<String> providers = findProviders(path, classIndex, pluginClass, descriptors);
+		final boolean lazy = lazyInstantiation && classIndex.containsResource(PluginDescriptor.INDEX_RESOURCE) && descriptors.stream().noneMatch(descriptor -> descriptor.getTypes().isEmpty());
+		
+		for (String provider : providers) {
+			if (parentClassIndex.containsClass(provider)) {
+				// Skip plugins that are coming already known to parent ClassLoaders as they will be loaded below
+				LOGGER.debug("Skipping plugin {} from {} as it is present on the class-path.", provider, path);
+				descriptors.removeIf(descriptor -> descriptor.getClassName().equals(provider));
+			}
+		}
+		providers.removeIf(parentClassIndex::containsClass);
+		
+		if (providers.isEmpty()) {
+			return;
+		}
+		
+		if (libraryClassIndex != null) {
+			final Set<String> sharedPackages = classIndex.getClassPackages();
+			sharedPackages.retainAll(libraryClassIndex.getClassPackages());
+			if (!sharedPackages.isEmpty()) {
+				LOGGER.warn("Plugin JAR {} bundles packages {} of the shared libraries, the shared ones will be used.", path.getFileName(), sharedPackages);
+			}
+		}
+		
+		final String jarHash = FileHashUtil.getFileHash(path).toString();
+		if (lazy) {
+			final LazyJar lazyJar = new LazyJar(pluginClass, path, classIndex);
+			// Plugins registered first are not instantiated before the whole JAR is registered, so its class loader is not released in between.
+			synchronized (lazyJar) {
+				for (PluginDescriptor descriptor : descriptors) {
+					descriptor.setJarPath(path);
+					descriptor.setJarHash(jarHash);
+					
+					if (plugins.getOrDefault(descriptor.getName(), Collections.emptyMap()).containsKey(jarHash)) {
+						// Do not process unchanged plugins.
+						continue;
+					}
+					
+					lazyPlugins.compute(descriptor.getName(), (name, lazyPlugins) ->
+					{
+						final Map<String, PluginDescriptor> versions = lazyPlugins != null ? lazyPlugins : new ConcurrentHashMap<>();
+						if (versions.putIfAbsent(jarHash, descriptor) == null) {
+							lazyJar.pending.incrementAndGet();
+							lazyJars.put(descriptor, lazyJar);
+						}
+						return versions;
+					});
+				}
+			}
+			return;
+		}
+		
+		final JarClassLoader classLoader = createClassLoader(path.toUri().toURL(), classIndex, parentClassIndex);
+		boolean processed = false;
+		for (String provider : providers) {
+			try {
+				final Class<?> clazz = Class.forName(provider, false, classLoader);
+				if (!pluginClass.isAssignableFrom(clazz)) {
+					// The index lists every plugin of the JAR, regardless of the plugin class scanned for.
+					LOGGER.debug("Skipping plugin {} from {} as it is not a {}.", provider, path, pluginClass.getName());
+					continue;
+				}
+				
+				final T plugin = pluginClass.cast(clazz.getDeclaredConstructor().newInstance());
+				plugin.setPluginsPath(pluginsPath);
+				plugin.setJarPath(path);
+				plugin.setJarHash(jarHash);
+				
+				processed |= processPlugin(plugin, classLoader);
+			} catch (Exception e) {
+				LOGGER.warn("Failed to process plugin {}.", provider, e);
+			}
+		}
+		
+		if (!processed) {
+			// Nothing new in this JAR, do not keep its class loader around.
+			classLoader.close();
+			leakDetector.track(classLoader, path.toString());
+		}
+	}
+	
+	/**
+	 * Finds the plugin classes of a JAR, listed by its {@value PluginDescriptor#INDEX_RESOURCE}, or by its {@link ServiceLoader} providers when it has none.<br>
+	 * Index entries recording types other than the plugin class are skipped, entries without types are checked once their class is loaded.
+	 *
+	 * @param path        the JAR file
+	 * @param classIndex  the index of the JAR
+	 * @param pluginClass the plugin class
+	 * @param descriptors the list to add the descriptors of the index to
+	 * @return the names of the plugin classes
+	 * @throws IOException if the index cannot be read
+	 */
+	private List<String> findProviders(Path path, ClassIndex classIndex, Class<T> pluginClass, List<PluginDescriptor> descriptors) throws IOException {
+		if (!classIndex.containsResource(PluginDescriptor.INDEX_RESOURCE)) {
+			return new ArrayList<>(classIndex.getProviders(pluginClass));
+		}
+		
+		try (JarFile jarFile = new JarFile(path.toFile());
+			InputStream input = jarFile.getInputStream(jarFile.getEntry(PluginDescriptor.INDEX_RESOURCE))) {
+			for (PluginDescriptor descriptor : PluginDescriptor.read(input)) {
+				if (!descriptor.getTypes().isEmpty() && !descriptor.isInstanceOf(pluginClass)) {
+					// The index lists every plugin of the JAR, regardless of the plugin class scanned for.
+					LOGGER.debug("Skipping plugin {} from {} as it is not a {}.", descriptor.getClassName(), path, pluginClass.getName());
+					continue;
+				}
+				descriptors.add(descriptor);
+			}
+		}
+		return descriptors.stream().map(PluginDescriptor::getClassName).collect(Collectors.toList());
+	}
+	
+	/**
+	 * Instantiates a plugin that was scanned lazily, and processes it into the plugin repository.<br>
+	 * Each plugin is instantiated exactly once, concurrent callers wait for the instantiation to finish.
+	 * The plugin's constructor runs without holding the lock of its JAR, so it may look up plugins of other JARs while those are looking up plugins of its JAR.
+	 *
+	 * @param descriptor the descriptor of the plugin
+	 */
+	private void instantiate(PluginDescriptor descriptor) {
+		final LazyJar lazyJar = lazyJars.get(descriptor);
+		if (lazyJar == null) {
+			return;
+		}
+		
+		final Instantiation instantiation = new Instantiation();
+		final Instantiation running = lazyJar.instantiations.putIfAbsent(descriptor, instantiation);
+		if (running != null) {
+			// Stays pending until processed, so concurrent callers wait for it instead of missing the plugin, unless it is looked up by its own constructor.
+			if (running.thread != Thread.currentThread()) {
+				running.done.join();
+			}
+			return;
+		}
+		
+		try {
+			if (lazyJars.get(descriptor) == lazyJar) {
+				// Not instantiated nor discarded meanwhile
+				instantiate(descriptor, lazyJar);
+			}
+		} finally {
+			synchronized (lazyJar) {
+				claimLazyPlugin(descriptor, lazyJar);
+				releaseLazyJar(lazyJar);
+			}
+			lazyJar.instantiations.remove(descriptor, instantiation);
+			instantiation.done.complete(null);
+		}
+	}
+	
+	/**
+	 * Instantiates a plugin of a lazily scanned JAR.
+	 *
+	 * @param descriptor the descriptor of the plugin
+	 * @param lazyJar    the lazily scanned JAR of the plugin
+	 */
+	private void instantiate(PluginDescriptor descriptor, LazyJar lazyJar) {
+		try {
+			final JarClassLoader classLoader;
+			synchronized (lazyJar) {
+				if (lazyJar.classLoader == null) {
+					lazyJar.classLoader = createClassLoader(lazyJar.path.toUri().toURL(), lazyJar.classIndex, getParentClassIndex());
+				}
+				classLoader = lazyJar.classLoader;
+			}
+			
+			final T plugin = lazyJar.pluginClass.cast(Class.forName(descriptor.getClassName(), true, classLoader).getDeclaredConstructor().newInstance());
+			plugin.setPluginsPath(pluginsPath);
+			plugin.setJarPath(descriptor.getJarPath());
+			plugin.setJarHash(descriptor.getJarHash());
+			
+			if (!plugin.getName().equals(descriptor.getName()) || (plugin.getVersion() != descriptor.getVersion())) {
+				LOGGER.warn("Plugin {} does not match its descriptor {}, the {} of {} is out of date.", plugin, descriptor, PluginDescriptor.INDEX_RESOURCE, descriptor.getJarPath());
+			}
+			
+			processPlugin(plugin, classLoader);
+		} catch (Exception e) {
+			LOGGER.warn("Failed to instantiate plugin {}.", descriptor, e);
+		}
+	}
+	
+	/**
+	 * Discards the lazily scanned plugins of the given name that are matching the filter.
+	 *
+	 * @param name   the plugin's name
+	 * @param filter the filter
+	 */
+	private void discardLazyPlugins(String name, Predicate<PluginDescriptor> filter) {
+		final List<PluginDescriptor> discardedPlugins = lazyPlugins.getOrDefault(name, Collections.emptyMap()).values().stream().filter(filter).collect(Collectors.toList());
+		for (PluginDescriptor discarded : discardedPlugins) {
+			final LazyJar lazyJar = lazyJars.get(discarded);
+			if (lazyJar == null) {
+				continue;
+			}
+			
+			synchronized (lazyJar) {
+				if (claimLazyPlugin(discarded, lazyJar)) {
+					releaseLazyJar(lazyJar);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Removes a lazily scanned plugin from the pending ones, while holding the lock of its JAR.
+	 *
+	 * @param descriptor the descriptor of the plugin
+	 * @param lazyJar    the lazily scanned JAR of the plugin
+	 * @return {@code true} if the plugin was pending, {@code false} if it was instantiated or discarded meanwhile
+	 */
+	private boolean claimLazyPlugin(PluginDescriptor descriptor, LazyJar lazyJar) {
+		if (!lazyJars.remove(descriptor, lazyJar)) {
+			return false;
+		}
+		
+		lazyPlugins.computeIfPresent(descriptor.getName(), (name, versions) ->
+		{
+			versions.remove(descriptor.getJarHash());
+			return versions.isEmpty() ? null : versions;
+		});
+		lazyJar.pending.decrementAndGet();
+		return true;
+	}
+	
+	/**
+	 * Closes the class loader of a lazily scanned JAR once none of its plugins is pending nor processed, while holding the lock of the JAR.
+	 *
+	 * @param lazyJar the lazily scanned JAR
+	 */
+	private void releaseLazyJar(LazyJar lazyJar) {
+		if ((lazyJar.pending.get() > 0) || (lazyJar.classLoader == null) || classLoaders.containsValue(lazyJar.classLoader)) {
+			return;
+		}
+		
+		try {
+			lazyJar.classLoader.close();
+		} catch (IOException e) {
+			LOGGER.warn("Failed to close class loader of {}", lazyJar.path, e);
+		} finally {
+			leakDetector.track(lazyJar.classLoader, lazyJar.path.toString());
+		}
+	}
+	
+	/**
+	 * Gets the amount of plugin names known to the repository, instantiated or not.
+	 *
+	 * @return amount of plugins
+	 */
+	private int getPluginCount() {
+		final Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		names.addAll(plugins.keySet());
+		names.addAll(lazyPlugins.keySet());
+		return names.size();
+	}
+	
+	/**
+	 * Checks whether the plugin was found on the class-path instead of in a JAR, e.g. when running from an IDE, in which case its JAR hash does not identify its version.
+	 *
+	 * @param plugin the plugin
+	 * @return {@code true} if the plugin was found on the class-path
+	 */
+	public static boolean isClassPathPlugin(AbstractPlugin plugin) {
+		return IDE_MODE.equals(plugin.getJarHash());
+	}
+	
+	/**
+	 * Enables or disables lazy instantiation for plugin JARs scanned afterwards.<br>
+	 * When enabled, plugin JARs that carry a {@value PluginDescriptor#INDEX_RESOURCE} are scanned by reading only the descriptors of their plugins, without loading any class.
+	 * The plugins are instantiated on first use, e.g. by {@link #getAvailablePlugin(String)} or {@link #getAvailablePlugins(Predicate)}, so plugins that are never installed nor started never run their constructors.
+	 *
+	 * @param lazyInstantiation {@code true} to enable lazy instantiation, {@code false} to instantiate plugins while scanning
+	 */
+	public final void setLazyInstantiation(boolean lazyInstantiation) {
+		this.lazyInstantiation = lazyInstantiation;
+	}
+	
+	/**
+	 * Creates the class loader of a plugin JAR.
+	 *
+	 * @param url              the URL of the JAR
+	 * @param classIndex       the index of the JAR
+	 * @param parentClassIndex the index of the parent class path
+	 * @return class loader
+	 */
+	private JarClassLoader createClassLoader(URL url, ClassIndex classIndex, ClassIndex parentClassIndex) {
+		if (libraryClassLoader != null) {
+			if (indexedClassLoading) {
+				return new JarClassLoader(new URL[]{url}, libraryClassLoader, classIndex, ClassIndex.merge(parentClassIndex, libraryClassIndex));
+			}
+			return new JarClassLoader(new URL[]{url}, libraryClassLoader);
+		}
+		
+		final ClassLoader parent = parentClassLoader != null ? parentClassLoader : ClassLoader.getSystemClassLoader();
+		if (indexedClassLoading) {
+			return new JarClassLoader(new URL[]{url}, parent, classIndex, parentClassIndex);
 		}
+		return new JarClassLoader(new URL[]{url}, parent);
+	}
+	
+	/**
+	 * Loads the shared library JARs from the "lib" directory of the plugins path into a single class loader, which becomes the parent of all plugin class loaders.<br>
+	 * Libraries are loaded once, on the first scan. Packages provided by more than one library, or by a library and the class-path, are reported as conflicts.
+	 *
+	 * @param parentClassIndex the index of the parent class path
+	 */
+	private void loadLibraries(ClassIndex parentClassIndex) {
+		if (librariesLoaded) {
+			return;
+		}
+		librariesLoaded = true;
+		
+		final Path librariesPath = pluginsPath.resolve(LIBRARIES_DIRECTORY);
+		if (!Files.isDirectory(librariesPath)) {
+			return;
+		}
+		
+		final List<Path> libraries;
+		try (Stream<Path> stream = Files.list(librariesPath)) {
+			libraries = stream.filter(path -> path.getFileName().toString().endsWith(".jar")).sorted().collect(Collectors.toList());
+		} catch (IOException e) {
+			LOGGER.warn("Failed to list shared libraries in {}", librariesPath, e);
+			return;
+		}
+		
+		if (libraries.isEmpty()) {
+			return;
+		}
+		
+		final Set<String> parentPackages = parentClassIndex.getClassPackages();
+		final Map<String, Path> packageLibraries = new HashMap<>();
+		final List<URL> urls = new ArrayList<>();
+		final List<ClassIndex> classIndexes = new ArrayList<>();
+		for (Path library : libraries) {
+			try {
+				final ClassIndex classIndex = ClassIndex.ofJar(library);
+				final Map<Path, Set<String>> conflicts = new TreeMap<>();
+				final Set<String> classPathConflicts = new TreeSet<>();
+				for (String packageName : classIndex.getClassPackages()) {
+					if (parentPackages.contains(packageName)) {
+						classPathConflicts.add(packageName);
+					}
+					
+					final Path otherLibrary = packageLibraries.putIfAbsent(packageName, library);
+					if (otherLibrary != null) {
+						conflicts.computeIfAbsent(otherLibrary, k -> new TreeSet<>()).add(packageName);
+					}
+				}
+				
+				if (!classPathConflicts.isEmpty()) {
+					LOGGER.warn("Shared library {} conflicts with the class-path on packages {}, the class-path ones will be used.", library.getFileName(), classPathConflicts);
+				}
+				conflicts.forEach((otherLibrary, packages) -> LOGGER.warn("Shared library {} conflicts with {} on packages {}, the ones of {} will be used.", library.getFileName(), otherLibrary.getFileName(), packages, otherLibrary.getFileName()));
+				
+				urls.add(library.toUri().toURL());
+				classIndexes.add(classIndex);
+			} catch (IOException e) {
+				LOGGER.warn("Failed to load shared library {}", library, e);
+			}
+		}
+		
+		if (urls.isEmpty()) {
+			return;
+		}
+		
+		libraryClassIndex = ClassIndex.merge(classIndexes.toArray(new ClassIndex[0]));
+		libraryClassLoader = new JarClassLoader(urls.toArray(new URL[0]), parentClassLoader != null ? parentClassLoader : ClassLoader.getSystemClassLoader());
+		LOGGER.info("Loaded {} shared library JAR(s).", urls.size());
+	}
+	
+	/**
+	 * Gets the class loader of the shared libraries, which is the parent of all plugin class loaders.
+	 *
+	 * @return the shared library class loader, or {@code null} if there are no shared libraries
+	 */
+	public final ClassLoader getLibraryClassLoader() {
+		return libraryClassLoader;
+	}
+	
+	/**
+	 * Enables or disables indexed class loading for plugin JARs scanned afterwards.<br>
+	 * When enabled, classes of packages found only in the plugin JAR are loaded directly from it, and the rest directly from the parent class loader, see {@link JarClassLoader#JarClassLoader(URL[], ClassLoader, ClassIndex, ClassIndex)}.
+	 *
+	 * @param indexedClassLoading {@code true} to enable indexed class loading, {@code false} to use the default parent-first delegation
+	 */
+	public final void setIndexedClassLoading(boolean indexedClassLoading) {
+		this.indexedClassLoading = indexedClassLoading;
+	}
+	
+	/**
+	 * Gets the index of the classes known to the parent class loader, built on first use.
+	 *
+	 * @return parent class index
+	 */
+	private ClassIndex getParentClassIndex() {
+		if (parentClassIndex == null) {
+			parentClassIndex = ClassIndex.ofClassPath(parentClassLoader != null ? parentClassLoader : Thread.currentThread().getContextClassLoader());
+		}
+		return parentClassIndex;
 	}
 	
 	/**
@@ -144,8 +594,9 @@ public class PluginRepository<T extends AbstractPlugin> {
 	 *
 	 * @param plugin      the plugin
 	 * @param classLoader the class loader of the plugin
+	 * @return {@code true} if the plugin was added, {@code false} if it is unchanged
 	 */
-	private void processPlugin(T plugin, ClassLoader classLoader) {
+	private boolean processPlugin(T plugin, ClassLoader classLoader) {
 		Objects.requireNonNull(plugin);
 		Objects.requireNonNull(classLoader);
 		Objects.requireNonNull(plugin.getJarPath());
@@ -153,18 +604,58 @@ public class PluginRepository<T extends AbstractPlugin> {
 		final String jarHash = plugin.getJarHash();
 		Objects.requireNonNull(jarHash);
 		
-		final Map<String, T> plugins = this.plugins.computeIfAbsent(plugin.getName(), k -> new HashMap<>());
-		if (plugins.containsKey(jarHash)) {
+		// Ready before it becomes visible to lookups
+		classLoaders.put(plugin, classLoader);
+		plugin.setEventBus(eventBus);
+		
+		final Map<String, T> versions = plugins.compute(plugin.getName(), (name, current) ->
+		{
+			if ((current != null) && current.containsKey(jarHash)) {
+				return current;
+			}
+			
+			final List<T> updated = current != null ? new ArrayList<>(current.values()) : new ArrayList<>();
+			updated.add(plugin);
+			return sortVersions(updated);
+		});
+		
+		if (versions.get(jarHash) != plugin) {
 			// Do not process unchanged plugins.
-			return;
+			classLoaders.remove(plugin);
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Removes this version of the plugin from the lookup index.
+	 *
+	 * @param plugin the plugin version
+	 */
+	private void removeVersion(T plugin) {
+		plugins.computeIfPresent(plugin.getName(), (name, versions) -> sortVersions(versions.values().stream().filter(version -> version != plugin).collect(Collectors.toList())));
+	}
+	
+	/**
+	 * Creates the versions map of a plugin, which is never modified afterwards so lookups always see a consistent snapshot.
+	 *
+	 * @param versions the plugin versions
+	 * @param <T>      the plugin type
+	 * @return read-only map of the versions by JAR hash, ordered newest version first, or {@code null} if there are no versions
+	 */
+	private static <T extends AbstractPlugin> Map<String, T> sortVersions(Collection<T> versions) {
+		if (versions.isEmpty()) {
+			return null;
 		}
 		
-		plugins.put(jarHash, plugin);
-		classLoaders.put(plugin, classLoader);
+		final Map<String, T> sorted = new LinkedHashMap<>();
+		versions.stream().sorted(PLUGIN_VERSION_ORDER).forEach(version -> sorted.put(version.getJarHash(), version));
+		return Collections.unmodifiableMap(sorted);
 	}
 	
 	/**
-	 * Unloads the plugin from the repository, so it can be scanned again.
+	 * Unloads this version of the plugin from the repository, so it can be scanned again.<br>
+	 * Other versions of the plugin are kept, see {@link #unload(String)}.
 	 *
 	 * @param plugin the plugin that is going to be unloaded
 	 * @throws PluginException
@@ -174,10 +665,196 @@ public class PluginRepository<T extends AbstractPlugin> {
 			plugin.stop();
 		}
 		
-		plugins.remove(plugin.getName());
+		final String jarHash = plugin.getJarHash();
+		removeVersion(plugin);
+		discardLazyPlugins(plugin.getName(), descriptor -> jarHash.equals(descriptor.getJarHash()));
+		routings.computeIfPresent(plugin.getName(), (name, routing) -> routing.without(jarHash));
 		cleanupClassLoader(plugin);
 	}
 	
+	/**
+	 * Unloads all versions of the plugin from the repository, including the ones scanned lazily and not instantiated yet.
+	 *
+	 * @param name the plugin's name
+	 * @throws PluginException
+	 */
+	public void unload(String name) throws PluginException {
+		Objects.requireNonNull(name);
+		
+		for (T plugin : getAvailablePluginVersions(name).collect(Collectors.toList())) {
+			unload(plugin);
+		}
+		routings.remove(name);
+	}
+	
+	/**
+	 * Upgrades a plugin to the version in the given JAR without downtime, by swapping class loaders blue/green style.<br>
+	 * The new version is loaded into a fresh class loader, takes over the installation of the current version (see {@link #prepareUpgrade(AbstractPlugin, AbstractPlugin)}) and is started if the current version is started, while the current version keeps serving.
+	 * Then the plugin is swapped atomically in the lookup index, so lookups return the new version, and finally the current version is stopped and its class loader closed.<br>
+	 * If the new version fails before the swap, it is discarded and the current version is left untouched. Both versions are started for a short while, so plugins holding exclusive resources must release them in {@link IPluginFunction#onStop()} of the current version only.
+	 *
+	 * @param pluginClass the plugin class, see {@link #scan(Class)}
+	 * @param plugin      the current version of the plugin
+	 * @param jarPath     the JAR file containing the new version
+	 * @return the new version of the plugin, or the current one if the JAR is unchanged
+	 * @throws PluginException if the new version cannot be loaded, is older or fails to take over
+	 */
+	public T upgrade(Class<T> pluginClass, T plugin, Path jarPath) throws PluginException {
+		Objects.requireNonNull(pluginClass);
+		Objects.requireNonNull(plugin);
+		Objects.requireNonNull(jarPath);
+		
+		verifyLoaded(plugin);
+		
+		final String name = plugin.getName();
+		
+		final T upgrade;
+		try {
+			final String jarHash = FileHashUtil.getFileHash(jarPath).toString();
+			if (jarHash.equals(plugin.getJarHash())) {
+				return plugin;
+			}
+			
+			final ClassIndex parentClassIndex = getParentClassIndex();
+			loadLibraries(parentClassIndex);
+			
+			final ClassIndex classIndex = ClassIndex.ofJar(jarPath);
+			final List<PluginDescriptor> descriptors = new ArrayList<>();
+			final List<String> providers = findProviders(jarPath, classIndex, pluginClass, descriptors);
+			
+			// Only the plugin being upgraded is instantiated when the JAR is indexed.
+			descriptors.stream().filter(descriptor -> !name.equalsIgnoreCase(descriptor.getName())).forEach(descriptor -> providers.remove(descriptor.getClassName()));
+			upgrade = loadPlugin(pluginClass, name, jarPath, jarHash, providers, createClassLoader(jarPath.toUri().toURL(), classIndex, parentClassIndex));
+		} catch (IOException e) {
+			throw new PluginException(e);
+		}
+		
+		try {
+			prepareUpgrade(plugin, upgrade);
+			if (plugin.getState() == PluginState.STARTED) {
+				upgrade.start();
+			}
+		} catch (Exception e) {
+			final PluginException exception = new PluginException("Failed to upgrade plugin " + name + " to " + jarPath, e);
+			eventBus.publish(PluginEvent.failed(plugin, exception));
+			try {
+				if (upgrade.getState() == PluginState.STARTED) {
+					upgrade.stop();
+				}
+			} catch (PluginException stopException) {
+				exception.addSuppressed(stopException);
+			} finally {
+				try {
+					cleanupClassLoader(upgrade);
+				} catch (PluginException cleanupException) {
+					exception.addSuppressed(cleanupException);
+				}
+			}
+			throw exception;
+		}
+		
+		// Replace the whole map of the plugin, so lookups see either the current or the new version, never both nor none.
+		final AtomicReference<T> replaced = new AtomicReference<>();
+		plugins.compute(name, (k, versions) ->
+		{
+			final List<T> updated = new ArrayList<>();
+			replaced.set(null);
+			for (T version : versions != null ? versions.values() : Collections.<T> emptyList()) {
+				if (upgrade.getJarHash().equals(version.getJarHash())) {
+					replaced.set(version);
+				} else if (version != plugin) {
+					updated.add(version);
+				}
+			}
+			updated.add(upgrade);
+			return sortVersions(updated);
+		});
+		routings.computeIfPresent(name, (k, routing) -> routing.replace(plugin.getJarHash(), upgrade.getJarHash()));
+		discardLazyPlugins(name, descriptor -> upgrade.getJarHash().equals(descriptor.getJarHash()));
+		if (replaced.get() != null) {
+			// The JAR was scanned already, its instance is superseded by the upgraded one.
+			cleanupClassLoader(replaced.get());
+		}
+		
+		try {
+			if (plugin.getState() == PluginState.STARTED) {
+				plugin.stop();
+			}
+		} catch (PluginException e) {
+			LOGGER.warn("Failed to stop plugin {} after upgrading it", name, e);
+		} finally {
+			cleanupClassLoader(plugin);
+		}
+		
+		LOGGER.info("Upgraded plugin {} from version {} ({}) to version {} ({}).", name, plugin.getVersion(), plugin.getJarPath().getFileName(), upgrade.getVersion(), jarPath.getFileName());
+		eventBus.publish(PluginEvent.of(PluginEventType.UPGRADED, upgrade));
+		return upgrade;
+	}
+	
+	/**
+	 * Instantiates the plugin of the given name from a JAR loaded into its own class loader, which is closed if the plugin is not found.
+	 *
+	 * @param pluginClass the plugin class
+	 * @param name        the plugin's name
+	 * @param jarPath     the JAR file
+	 * @param jarHash     the hash of the JAR file
+	 * @param providers   the names of the plugin classes of the JAR
+	 * @param classLoader the class loader of the JAR
+	 * @return the plugin
+	 * @throws PluginException if the JAR does not contain the plugin
+	 */
+	private T loadPlugin(Class<T> pluginClass, String name, Path jarPath, String jarHash, List<String> providers, JarClassLoader classLoader) throws PluginException {
+		for (String provider : providers) {
+			try {
+				final Class<?> clazz = Class.forName(provider, false, classLoader);
+				if (pluginClass.isAssignableFrom(clazz)) {
+					final T plugin = pluginClass.cast(clazz.getDeclaredConstructor().newInstance());
+					if (name.equalsIgnoreCase(plugin.getName())) {
+						plugin.setPluginsPath(pluginsPath);
+						plugin.setJarPath(jarPath);
+						plugin.setJarHash(jarHash);
+						plugin.setEventBus(eventBus);
+						classLoaders.put(plugin, classLoader);
+						return plugin;
+					}
+				}
+			} catch (Exception e) {
+				LOGGER.warn("Failed to process plugin {}.", provider, e);
+			}
+		}
+		
+		try {
+			classLoader.close();
+		} catch (IOException e) {
+			LOGGER.warn("Failed to close class loader of {}", jarPath, e);
+		} finally {
+			leakDetector.track(classLoader, jarPath.toString());
+		}
+		throw new PluginException("Plugin " + name + " was not found in " + jarPath);
+	}
+	
+	/**
+	 * Prepares the new version of a plugin being upgraded to take over the installation of its current version, see {@link #upgrade(Class, AbstractPlugin, Path)}.<br>
+	 * When the current version is installed the new version is set to installed as well, and migrated from the current version when it is newer.
+	 *
+	 * @param current the current version of the plugin
+	 * @param upgrade the new version of the plugin, still initialized
+	 * @throws PluginException if the new version is older or fails to migrate
+	 */
+	protected void prepareUpgrade(T current, T upgrade) throws PluginException {
+		if (upgrade.getVersion() < current.getVersion()) {
+			throw new PluginException("Plugin " + current.getName() + " cannot be downgraded from version " + current.getVersion() + " to " + upgrade.getVersion() + "!");
+		}
+		
+		if ((current.getState() == PluginState.INITIALIZED) || !upgrade.setState(PluginState.INITIALIZED, PluginState.INSTALLED)) {
+			return;
+		}
+		
+		if (upgrade.getVersion() > current.getVersion()) {
+			upgrade.migrate(current.getVersion(), upgrade.getVersion());
+		}
+	}
+	
 	/**
 	 * Closes the classloader which isn't needed anymore, and also removes it from the map.
 	 *
@@ -185,36 +862,88 @@ public class PluginRepository<T extends AbstractPlugin> {
 	 * @throws PluginException
 	 */
 	private void cleanupClassLoader(T plugin) throws PluginException {
-		final ClassLoader classLoader = classLoaders.get(plugin);
+		final ClassLoader classLoader = classLoaders.remove(plugin);
 		if (classLoader == null) {
 			return;
 		}
 		
-		if (classLoader instanceof Closeable) {
+		// Only JAR class loaders are owned by the repository, and plugins of the same JAR share theirs.
+		if ((classLoader instanceof JarClassLoader) && !classLoaders.containsValue(classLoader) && lazyJars.values().stream().noneMatch(lazyJar -> lazyJar.classLoader == classLoader)) {
 			try {
 				((Closeable) classLoader).close();
 			} catch (IOException e) {
 				throw new PluginException(e);
+			} finally {
+				leakDetector.track(classLoader, plugin.getJarPath() + " (" + plugin.getName() + ")");
 			}
 		}
-		
-		classLoaders.remove(plugin);
 	}
 	
 	/**
-	 * Gets a {@link Map} view of all plugins.
+	 * Gets the event bus the plugins of this repository publish their state changes, installations, migrations and failures to, along with the scans and upgrades of the repository.<br>
+	 * Subscribers are notified asynchronously through a bounded queue, publishers only wait for them when they fall a whole queue behind, unless the bus is set to {@link EventOverflowPolicy#DROP}.
+	 *
+	 * @return event bus
+	 */
+	public final PluginEventBus getEventBus() {
+		return eventBus;
+	}
+	
+	/**
+	 * Replaces the event bus of this repository and of its plugins, e.g. to change the capacity or the {@link EventOverflowPolicy}.<br>
+	 * The previous bus is not closed, nor are its subscribers moved over.
+	 *
+	 * @param eventBus the event bus
+	 */
+	public final void setEventBus(PluginEventBus eventBus) {
+		this.eventBus = Objects.requireNonNull(eventBus);
+		plugins.values().forEach(versions -> versions.values().forEach(plugin -> plugin.setEventBus(eventBus)));
+	}
+	
+	/**
+	 * Gets the supervisor of the started plugins of this repository, polling their health and restarting the unhealthy ones once {@link PluginSupervisor#start(java.util.concurrent.ScheduledExecutorService, long, java.util.concurrent.TimeUnit) started}.
+	 *
+	 * @return plugin supervisor
+	 */
+	public final PluginSupervisor<T> getSupervisor() {
+		return supervisor;
+	}
+	
+	/**
+	 * Gets the detector that keeps track of the class loaders closed by this repository.
+	 *
+	 * @return class loader leak detector
+	 */
+	public final ClassLoaderLeakDetector getLeakDetector() {
+		return leakDetector;
+	}
+	
+	/**
+	 * Gets the amount of closed plugin class loaders that are still reachable after {@link ClassLoaderLeakDetector#getGcCycles()} garbage collections, reporting the newly found ones.
+	 *
+	 * @return amount of leaked class loaders
+	 */
+	public final int getLeakedClassLoaderCount() {
+		return leakDetector.getLeakCount();
+	}
+	
+	/**
+	 * Gets a read-only {@link Map} view of all instantiated plugins, keyed by case-insensitive plugin name.<br>
+	 * The versions of each plugin are read-only snapshots by JAR hash, ordered newest version first, which are replaced as a whole when versions are added, upgraded or unloaded.
+	 * So the view can no longer be modified, plugins are added and removed through {@link #scan(Class)}, {@link #upgrade(Class, AbstractPlugin, Path)} and {@link #unload(AbstractPlugin)}.
+	 * Plugins that were scanned lazily and not used yet are not included, see {@link #getPluginDescriptors()}.
 	 *
 	 * @return all plugins
 	 */
 	public final Map<String, Map<String, T>> getAllPlugins() {
-		return plugins;
+		return Collections.unmodifiableMap(plugins);
 	}
 	
 	/**
-	 * Starts all initialized plugins and setting them to installed.
+	 * Starts all initialized active plugins and setting them to installed, see {@link #getActivePlugins()}.
 	 */
 	public void startAll() {
-		getAvailablePlugins().forEach(plugin -> {
+		getActivePlugins().forEach(plugin -> {
 			try {
 				if (plugin.setState(PluginState.INITIALIZED, PluginState.INSTALLED)) {
 					plugin.start();
@@ -239,7 +968,8 @@ public class PluginRepository<T extends AbstractPlugin> {
 	}
 	
 	/**
-	 * Gets an available plugin by its name.
+	 * Gets an available plugin by its name.<br>
+	 * When more than one version of the plugin is available, the active version is returned, see {@link #setActiveVersion(AbstractPlugin)}, or else the newest one.
 	 *
 	 * @param name the plugin's name
 	 * @return available plugin
@@ -247,23 +977,308 @@ public class PluginRepository<T extends AbstractPlugin> {
 	public T getAvailablePlugin(String name) {
 		Objects.requireNonNull(name);
 		
-		return getAvailablePlugins()
-				.filter(plugin -> name.equalsIgnoreCase(plugin.getName()))
+		final PluginRouting routing = routings.get(name);
+		if (routing != null) {
+			final T plugin = getAvailablePlugin(name, routing.activeJarHash);
+			if (plugin != null) {
+				return plugin;
+			}
+		}
+		return getAvailablePluginVersions(name).findFirst().orElse(null);
+	}
+	
+	/**
+	 * Gets an available version of a plugin by the hash of its JAR.
+	 *
+	 * @param name    the plugin's name
+	 * @param jarHash the hash of the JAR containing the version
+	 * @return available plugin, or {@code null} if this version is not available
+	 */
+	public T getAvailablePlugin(String name, String jarHash) {
+		Objects.requireNonNull(name);
+		Objects.requireNonNull(jarHash);
+		
+		return getVersions(name, descriptor -> jarHash.equals(descriptor.getJarHash())).get(jarHash);
+	}
+	
+	/**
+	 * Gets an available version of a plugin by its version, the newest JAR is preferred when more than one JAR provides the same version.
+	 *
+	 * @param name    the plugin's name
+	 * @param version the plugin's version
+	 * @return available plugin, or {@code null} if this version is not available
+	 */
+	public T getAvailablePlugin(String name, int version) {
+		Objects.requireNonNull(name);
+		
+		return getVersions(name, descriptor -> version == descriptor.getVersion()).values()
+				.stream()
+				.filter(plugin -> plugin.getVersion() == version)
 				.findFirst()
 				.orElse(null);
 	}
 	
 	/**
-	 * Gets a {@link Stream} view of available plugins.
+	 * Gets a {@link Stream} view of all available versions of a plugin, newest first.
+	 *
+	 * @param name the plugin's name
+	 * @return available versions
+	 */
+	public final Stream<T> getAvailablePluginVersions(String name) {
+		Objects.requireNonNull(name);
+		
+		return getVersions(name, descriptor -> true).values().stream();
+	}
+	
+	/**
+	 * Gets the versions of a plugin, instantiating the matching ones that were scanned lazily.
+	 *
+	 * @param name   the plugin's name
+	 * @param filter the filter of the lazily scanned versions to instantiate
+	 * @return read-only map of the versions by JAR hash, ordered newest version first
+	 */
+	private Map<String, T> getVersions(String name, Predicate<PluginDescriptor> filter) {
+		final Map<String, PluginDescriptor> lazyVersions = lazyPlugins.get(name);
+		if (lazyVersions != null) {
+			lazyVersions.values().stream().filter(filter).collect(Collectors.toList()).forEach(this::instantiate);
+		}
+		return plugins.getOrDefault(name, Collections.emptyMap());
+	}
+	
+	/**
+	 * Routes a request to a version of the plugin, for canary rollouts within one JVM, see {@link #setCanaryVersion(AbstractPlugin, int)}.<br>
+	 * The routing key, e.g. a user or a session id, is hashed so the same key always reaches the same version. Keys not routed to the canary, or all keys while the canary is not started, reach {@link #getAvailablePlugin(String)}.
+	 *
+	 * @param name       the plugin's name
+	 * @param routingKey the routing key
+	 * @return the plugin version serving the request
+	 */
+	public T route(String name, Object routingKey) {
+		Objects.requireNonNull(name);
+		
+		final PluginRouting routing = routings.get(name);
+		if ((routing != null) && (routing.canaryJarHash != null) && (Math.floorMod(Hashing.murmur3_32().hashInt(Objects.hashCode(routingKey)).asInt(), 100) < routing.canaryPercent)) {
+			final T canary = getAvailablePlugin(name, routing.canaryJarHash);
+			if ((canary != null) && (canary.getState() == PluginState.STARTED)) {
+				return canary;
+			}
+		}
+		return getAvailablePlugin(name);
+	}
+	
+	/**
+	 * Makes this version of the plugin the one returned by {@link #getAvailablePlugin(String)}, and routed to by {@link #route(String, Object)} outside of the canary share.<br>
+	 * Starting and stopping the versions is up to the caller. When the version was the canary, the canary is cleared, completing its rollout.
+	 *
+	 * @param plugin the version to activate
+	 * @throws PluginException if the version is not loaded by this repository
+	 */
+	public void setActiveVersion(T plugin) throws PluginException {
+		verifyLoaded(plugin);
+		
+		routings.compute(plugin.getName(), (name, routing) -> ((routing == null) || plugin.getJarHash().equals(routing.canaryJarHash)) ? new PluginRouting(plugin.getJarHash(), null, 0) : new PluginRouting(plugin.getJarHash(), routing.canaryJarHash, routing.canaryPercent));
+	}
+	
+	/**
+	 * Routes a share of the requests to this version of the plugin, see {@link #route(String, Object)}.<br>
+	 * The canary receives requests only while it is started, so it can be started once it is set. The current active version keeps receiving the rest.
+	 *
+	 * @param plugin  the canary version
+	 * @param percent the share of the routing keys to route to the canary, from 0 to 100
+	 * @throws PluginException if the version is not loaded by this repository, or is the active version
+	 */
+	public void setCanaryVersion(T plugin, int percent) throws PluginException {
+		if ((percent < 0) || (percent > 100)) {
+			throw new IllegalArgumentException("Canary percent must be between 0 and 100, but got " + percent);
+		}
+		verifyLoaded(plugin);
+		
+		final T active = getAvailablePlugin(plugin.getName());
+		if (active == plugin) {
+			throw new PluginException("Plugin " + plugin.getName() + " version " + plugin.getVersion() + " is the active version!");
+		}
+		routings.put(plugin.getName(), new PluginRouting(active.getJarHash(), plugin.getJarHash(), percent));
+	}
+	
+	/**
+	 * Stops routing requests to the canary version of the plugin, rolling it back.
+	 *
+	 * @param name the plugin's name
+	 */
+	public void clearCanaryVersion(String name) {
+		Objects.requireNonNull(name);
+		
+		routings.computeIfPresent(name, (k, routing) -> new PluginRouting(routing.activeJarHash, null, 0));
+	}
+	
+	/**
+	 * Verifies that this version of the plugin is loaded by this repository.
+	 *
+	 * @param plugin the plugin
+	 * @throws PluginException if it is not
+	 */
+	private void verifyLoaded(T plugin) throws PluginException {
+		Objects.requireNonNull(plugin);
+		
+		if (plugins.getOrDefault(plugin.getName(), Collections.emptyMap()).get(plugin.getJarHash()) != plugin) {
+			throw new PluginException("Plugin " + plugin.getName() + " is not loaded by this repository!");
+		}
+	}
+	
+	/**
+	 * Gets a {@link Stream} view of the active version of each available plugin, see {@link #getAvailablePlugin(String)}, followed by its canary version if any.
+	 *
+	 * @return active plugins
+	 */
+	public final Stream<T> getActivePlugins() {
+		final Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		names.addAll(plugins.keySet());
+		names.addAll(lazyPlugins.keySet());
+		
+		final List<T> activePlugins = new ArrayList<>();
+		for (String name : names) {
+			final T plugin = getAvailablePlugin(name);
+			if (plugin != null) {
+				activePlugins.add(plugin);
+			}
+			
+			final PluginRouting routing = routings.get(name);
+			if ((routing != null) && (routing.canaryJarHash != null)) {
+				final T canary = getAvailablePlugin(name, routing.canaryJarHash);
+				if ((canary != null) && (canary != plugin)) {
+					activePlugins.add(canary);
+				}
+			}
+		}
+		return activePlugins.stream();
+	}
+	
+	/**
+	 * Gets a {@link Stream} view of all versions of the available plugins, sorted by name and newest version first.<br>
+	 * Plugins that were scanned lazily are instantiated.
 	 *
 	 * @return available plugins
 	 */
 	public final Stream<T> getAvailablePlugins() {
+		new ArrayList<>(lazyJars.keySet()).forEach(this::instantiate);
+		
+		return plugins.values()
+				.stream()
+				.flatMap(map -> map.values().stream());
+	}
+	
+	/**
+	 * Gets a {@link Stream} view of the available plugins whose descriptors are matching the filter, sorted by name and newest version first.<br>
+	 * Only the matching plugins that were scanned lazily are instantiated.
+	 *
+	 * @param filter the descriptor filter
+	 * @return matching available plugins
+	 */
+	public final Stream<T> getAvailablePlugins(Predicate<? super PluginDescriptor> filter) {
+		Objects.requireNonNull(filter);
+		
+		lazyJars.keySet().stream().filter(filter).collect(Collectors.toList()).forEach(this::instantiate);
+		
 		return plugins.values()
 				.stream()
 				.flatMap(map -> map.values().stream())
-				.distinct()
-				.sorted(Comparator.comparing(T::getJarHash).reversed());
+				.filter(plugin -> filter.test(PluginDescriptor.of(plugin)));
+	}
+	
+	/**
+	 * Gets a {@link Stream} view of the descriptors of all available plugins, without instantiating the plugins that were scanned lazily.
+	 *
+	 * @return plugin descriptors
+	 */
+	public final Stream<PluginDescriptor> getPluginDescriptors() {
+		return Stream.concat(plugins.values().stream().flatMap(map -> map.values().stream()).distinct().map(PluginDescriptor::of), lazyJars.keySet().stream())
+				.sorted(VERSION_ORDER);
+	}
+	
+	/**
+	 * Warms up the instantiated plugins in the background, see {@link #warmUp(Executor, Map)}.<br>
+	 * Every class of the plugin JARs is preloaded.
+	 *
+	 * @param executor the executor to run the warm-up on
+	 * @return a future completed once the warm-up is done
+	 */
+	public final CompletableFuture<Void> warmUp(Executor executor) {
+		return warmUp(executor, Collections.emptyMap());
+	}
+	
+	/**
+	 * Warms up the instantiated plugins in the background, usually right after {@link #scan(Class)} or {@link #startAll()}, so the first requests do not pay for class loading.<br>
+	 * First the classes of each plugin JAR are loaded and initialized in parallel, one task per JAR, then {@link IPluginFunction#onWarmUp()} of every started plugin is invoked in parallel.
+	 * Failures are logged and do not stop the warm-up.
+	 *
+	 * @param executor   the executor to run the warm-up on
+	 * @param hotClasses the classes to preload by JAR hash, e.g. as recorded by {@link PluginClassDataSharing#readClassList()}; all classes are preloaded for JARs missing from it
+	 * @return a future completed once the warm-up is done
+	 */
+	public final CompletableFuture<Void> warmUp(Executor executor, Map<String, Set<String>> hotClasses) {
+		Objects.requireNonNull(executor);
+		Objects.requireNonNull(hotClasses);
+		
+		final Map<JarClassLoader, T> jarPlugins = new LinkedHashMap<>();
+		final List<T> startedPlugins = new ArrayList<>();
+		plugins.values().stream().flatMap(map -> map.values().stream()).distinct().forEach(plugin -> {
+			final ClassLoader classLoader = classLoaders.get(plugin);
+			if (classLoader instanceof JarClassLoader) {
+				jarPlugins.putIfAbsent((JarClassLoader) classLoader, plugin);
+			}
+			if (plugin.getState() == PluginState.STARTED) {
+				startedPlugins.add(plugin);
+			}
+		});
+		
+		final List<CompletableFuture<Void>> preloads = new ArrayList<>();
+		jarPlugins.forEach((classLoader, plugin) -> preloads.add(CompletableFuture.runAsync(() -> preloadClasses(plugin, classLoader, hotClasses.get(plugin.getJarHash())), executor)));
+		
+		return CompletableFuture.allOf(preloads.toArray(new CompletableFuture<?>[0])).thenCompose(ignored -> {
+			final List<CompletableFuture<Void>> warmUps = new ArrayList<>();
+			for (T plugin : startedPlugins) {
+				for (IPluginFunction<?> function : plugin.getFunctions()) {
+					warmUps.add(CompletableFuture.runAsync(() -> {
+						try {
+							function.onWarmUp();
+						} catch (Exception e) {
+							LOGGER.warn("Failed to warm up function {} of plugin {}", function.getClass().getName(), plugin.getName(), e);
+						}
+					}, executor));
+				}
+			}
+			return CompletableFuture.allOf(warmUps.toArray(new CompletableFuture<?>[0]));
+		});
+	}
+	
+	/**
+	 * Loads and initializes the classes of a plugin JAR.
+	 *
+	 * @param plugin      a plugin of the JAR
+	 * @param classLoader the class loader of the JAR
+	 * @param classNames  the classes to preload, or {@code null} to preload all classes of the JAR
+	 */
+	private void preloadClasses(T plugin, JarClassLoader classLoader, Set<String> classNames) {
+		Set<String> classes = classNames;
+		if (classes == null) {
+			try {
+				classes = classLoader.getIndex() != null ? classLoader.getIndex().getClasses() : ClassIndex.ofJar(plugin.getJarPath()).getClasses();
+			} catch (IOException e) {
+				LOGGER.warn("Failed to index {} for warm-up", plugin.getJarPath(), e);
+				return;
+			}
+		}
+		
+		int loaded = 0;
+		for (String className : classes) {
+			try {
+				Class.forName(className, true, classLoader);
+				loaded++;
+			} catch (ClassNotFoundException | LinkageError e) {
+				LOGGER.debug("Failed to preload class {} of {}", className, plugin.getJarPath(), e);
+			}
+		}
+		LOGGER.debug("Preloaded {}/{} classes of {}", loaded, classes.size(), plugin.getJarPath());
 	}
 	
 	/**
@@ -276,4 +1291,70 @@ public class PluginRepository<T extends AbstractPlugin> {
 		Objects.requireNonNull(plugin);
 		return classLoaders.get(plugin);
 	}
+	
+	/**
+	 * The versions of a plugin serving its lookups, by the hashes of their JARs.
+	 */
+	private static final class PluginRouting {
+		private final String activeJarHash;
+		private final String canaryJarHash;
+		private final int canaryPercent;
+		
+		private PluginRouting(String activeJarHash, String canaryJarHash, int canaryPercent) {
+			this.activeJarHash = activeJarHash;
+			this.canaryJarHash = canaryJarHash;
+			this.canaryPercent = canaryPercent;
+		}
+		
+		/**
+		 * Gets the routing with a version replaced by another one, e.g. after an upgrade.
+		 *
+		 * @param jarHash    the hash of the replaced version
+		 * @param newJarHash the hash of the new version
+		 * @return the routing
+		 */
+		private PluginRouting replace(String jarHash, String newJarHash) {
+			return new PluginRouting(jarHash.equals(activeJarHash) ? newJarHash : activeJarHash, jarHash.equals(canaryJarHash) ? newJarHash : canaryJarHash, canaryPercent);
+		}
+		
+		/**
+		 * Gets the routing without a version, e.g. after it is unloaded.<br>
+		 * When the active version is removed, the canary version takes over.
+		 *
+		 * @param jarHash the hash of the removed version
+		 * @return the routing, or {@code null} if nothing is left of it
+		 */
+		private PluginRouting without(String jarHash) {
+			if (jarHash.equals(activeJarHash)) {
+				return canaryJarHash != null ? new PluginRouting(canaryJarHash, null, 0) : null;
+			}
+			return jarHash.equals(canaryJarHash) ? new PluginRouting(activeJarHash, null, 0) : this;
+		}
+	}
+	
+	/**
+	 * A plugin JAR that was scanned lazily, holding what is needed to instantiate its plugins later on.
+	 */
+	private final class LazyJar {
+		private final Class<T> pluginClass;
+		private final Path path;
+		private final ClassIndex classIndex;
+		private final AtomicInteger pending = new AtomicInteger();
+		private final Map<PluginDescriptor, Instantiation> instantiations = new ConcurrentHashMap<>();
+		private volatile JarClassLoader classLoader;
+		
+		private LazyJar(Class<T> pluginClass, Path path, ClassIndex classIndex) {
+			this.pluginClass = pluginClass;
+			this.path = path;
+			this.classIndex = classIndex;
+		}
+	}
+	
+	/**
+	 * The instantiation of a lazily scanned plugin, awaited by the concurrent callers.
+	 */
+	private static final class Instantiation {
+		private final Thread thread = Thread.currentThread();
+		private final CompletableFuture<Void> done = new CompletableFuture<>();
+	}
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.unafraid.plugins.events.PluginEvent;
+import com.github.unafraid.plugins.exceptions.PluginException;
+
+/**
+ * Polls the health of the started plugins of a {@link PluginRepository}, see {@link IPluginFunction#isHealthy()}, and restarts the unhealthy ones.<br>
+ * A plugin failing {@link #setFailureThreshold(int) enough} consecutive checks is stopped and started again, which re-runs the repair of its installers.
+ * Restarts of the same plugin are spaced by an exponential backoff, which is reset once the plugin stays healthy for a whole backoff.
+ * A plugin that fails to start again is retried after each backoff, plugins stopped by anyone else are left alone.
+ * @param <T> the plugin type of the repository
+ * @author UnAfraid
+ */
+public class PluginSupervisor<T extends AbstractPlugin> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PluginSupervisor.class);
+	
+	private final PluginRepository<T> repository;
+	private final Map<T, PluginHealth> health = new ConcurrentHashMap<>();
+	private volatile int failureThreshold = 3;
+	private volatile long initialBackoffNanos = TimeUnit.SECONDS.toNanos(1);
+	private volatile long maxBackoffNanos = TimeUnit.MINUTES.toNanos(5);
+	private ScheduledFuture<?> task;
+	
+	PluginSupervisor(PluginRepository<T> repository) {
+		this.repository = repository;
+	}
+	
+	/**
+	 * Starts polling the health of the started plugins, the polls never overlap.
+	 * @param executor the executor to poll on
+	 * @param period the delay between the end of a poll and the start of the next one
+	 * @param unit the time unit of the period
+	 */
+	public synchronized void start(ScheduledExecutorService executor, long period, TimeUnit unit) {
+		Objects.requireNonNull(executor);
+		Objects.requireNonNull(unit);
+		
+		if (task != null) {
+			throw new IllegalStateException("The supervisor is already started");
+		}
+		task = executor.scheduleWithFixedDelay(this::check, period, period, unit);
+	}
+	
+	/**
+	 * Stops polling, the recorded metrics are kept.
+	 */
+	public synchronized void stop() {
+		if (task != null) {
+			task.cancel(false);
+			task = null;
+		}
+	}
+	
+	/**
+	 * Sets the amount of consecutive failed health checks after which a plugin is restarted, 3 by default.
+	 * @param failureThreshold the amount of failed checks
+	 */
+	public void setFailureThreshold(int failureThreshold) {
+		if (failureThreshold <= 0) {
+			throw new IllegalArgumentException("Failure threshold must be positive, but got " + failureThreshold);
+		}
+		this.failureThreshold = failureThreshold;
+	}
+	
+	/**
+	 * Sets the backoff between restarts of the same plugin, doubled on every restart from the initial up to the maximum backoff, 1 second up to 5 minutes by default.
+	 * @param initialBackoff the backoff after the first restart
+	 * @param maxBackoff the maximum backoff
+	 * @param unit the time unit of the backoffs
+	 */
+	public void setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+		if ((initialBackoff <= 0) || (maxBackoff < initialBackoff)) {
+			throw new IllegalArgumentException("Backoff must be positive and not above its maximum, but got " + initialBackoff + " up to " + maxBackoff);
+		}
+		this.initialBackoffNanos = unit.toNanos(initialBackoff);
+		this.maxBackoffNanos = unit.toNanos(maxBackoff);
+	}
+	
+	/**
+	 * Gets the health metrics of the plugin.
+	 * @param plugin the plugin
+	 * @return the health metrics, or {@code null} if the plugin was not checked yet
+	 */
+	public PluginHealth getHealth(T plugin) {
+		return health.get(plugin);
+	}
+	
+	/**
+	 * Gets the health metrics of all supervised plugins.
+	 * @return the health metrics
+	 */
+	public Collection<PluginHealth> getHealth() {
+		return Collections.unmodifiableCollection(health.values());
+	}
+	
+	/**
+	 * Checks the health of the started plugins once, restarting the unhealthy ones, usually invoked by the scheduled poll.
+	 */
+	public void check() {
+		// Anything thrown out of here cancels the scheduled poll for good, so every failure is logged and the next poll runs as usual.
+		try {
+			// The versions of each plugin are replaced as a whole, never modified, so this is a consistent snapshot even while scanning.
+			final List<T> plugins = new ArrayList<>();
+			repository.getAllPlugins().values().forEach(versions -> plugins.addAll(versions.values()));
+			health.keySet().retainAll(plugins);
+			
+			for (T plugin : plugins) {
+				try {
+					checkPlugin(plugin);
+				}
+				catch (Throwable t) {
+					LOGGER.warn("Failed to check the health of plugin {}", plugin.getName(), t);
+				}
+			}
+		}
+		catch (Throwable t) {
+			LOGGER.warn("Failed to check the health of the plugins", t);
+		}
+	}
+	
+	/**
+	 * Checks the health of the plugin, restarting it when unhealthy.
+	 * @param plugin the plugin
+	 */
+	private void checkPlugin(T plugin) {
+		final PluginHealth pluginHealth = health.get(plugin);
+		if ((pluginHealth != null) && pluginHealth.isRestarting()) {
+			if ((plugin.getState() == PluginState.INSTALLED) && pluginHealth.isRestartAllowed()) {
+				restart(plugin, pluginHealth, false);
+			}
+			return;
+		}
+		
+		if (plugin.getState() != PluginState.STARTED) {
+			return;
+		}
+		
+		final PluginHealth checkedHealth = health.computeIfAbsent(plugin, PluginHealth::new);
+		Throwable cause = null;
+		boolean healthy = true;
+		for (IPluginFunction<?> function : plugin.getFunctions()) {
+			try {
+				healthy = function.isHealthy();
+			}
+			catch (Throwable t) {
+				// Linkage errors of a broken plugin JAR count as unhealthy too.
+				cause = t;
+				healthy = false;
+			}
+			
+			if (!healthy) {
+				break;
+			}
+		}
+		
+		if (healthy) {
+			checkedHealth.recordHealthy();
+			return;
+		}
+		
+		checkedHealth.recordUnhealthy(cause);
+		final PluginException failure = new PluginException("Plugin " + plugin.getName() + " is unhealthy, failed " + checkedHealth.getConsecutiveFailures() + " consecutive health check(s)", cause);
+		LOGGER.warn(failure.getMessage(), cause);
+		repository.getEventBus().publish(PluginEvent.failed(plugin, failure));
+		
+		if ((checkedHealth.getConsecutiveFailures() >= failureThreshold) && checkedHealth.isRestartAllowed()) {
+			restart(plugin, checkedHealth, true);
+		}
+	}
+	
+	/**
+	 * Restarts the plugin, re-running the repair of its installers.
+	 * @param plugin the plugin
+	 * @param pluginHealth the health metrics of the plugin
+	 * @param stop whether to stop the plugin first
+	 */
+	private void restart(T plugin, PluginHealth pluginHealth, boolean stop) {
+		try {
+			if (stop) {
+				plugin.stop();
+			}
+			plugin.start();
+			pluginHealth.recordRestart(true, null, initialBackoffNanos, maxBackoffNanos);
+			LOGGER.info("Restarted plugin {} after {} failed health check(s).", plugin.getName(), pluginHealth.getConsecutiveFailures());
+		}
+		catch (Throwable t) {
+			pluginHealth.recordRestart(plugin.getState() == PluginState.STARTED, t, initialBackoffNanos, maxBackoffNanos);
+			LOGGER.warn("Failed to restart plugin {}", plugin.getName(), t);
+		}
+	}
+}
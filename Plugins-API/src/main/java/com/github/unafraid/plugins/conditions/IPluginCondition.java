@@ -40,4 +40,29 @@ public interface IPluginCondition {
 	 * @return condition result
 	 */
 	ConditionResult test(AbstractPlugin plugin);
+	
+	/**
+	 * Gets how long a successful result of this condition may be reused for the same plugin and condition type, see {@link PluginConditions#testConditions(ConditionType, AbstractPlugin)}.<br>
+	 * Override it for expensive conditions, e.g. ones checking other plugins, files or database rows.
+	 * @return time to live in milliseconds, {@code 0} if the condition must be tested every time
+	 */
+	default long getCacheTtl() {
+		return 0;
+	}
+	
+	/**
+	 * Gets the relative cost of testing this condition, conditions are tested from the cheapest to the most expensive so cheap failing checks fail fast.
+	 * @return cost, {@code 0} by default
+	 */
+	default int getCost() {
+		return 0;
+	}
+	
+	/**
+	 * Whether this condition is independent of the others and may be tested concurrently with them, when {@link PluginConditions#setExecutor(java.util.concurrent.Executor)} is set.
+	 * @return {@code true} if the condition may be tested concurrently, otherwise {@code false}
+	 */
+	default boolean isConcurrent() {
+		return false;
+	}
 }
\ No newline at end of file
@@ -21,11 +21,21 @@
  */
 package com.github.unafraid.plugins.conditions;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import com.github.unafraid.plugins.AbstractPlugin;
 import com.github.unafraid.plugins.exceptions.PluginException;
@@ -35,7 +45,12 @@ import com.github.unafraid.plugins.exceptions.PluginException;
  * @author UnAfraid
  */
 public class PluginConditions {
+	private static final Comparator<IPluginCondition> COST_ORDER = Comparator.comparingInt(IPluginCondition::getCost).thenComparing(IPluginCondition::getInformation, Comparator.nullsFirst(Comparator.naturalOrder()));
+	
 	private final Map<ConditionType, Set<IPluginCondition>> conditions = new EnumMap<>(ConditionType.class);
+	private final Map<CacheKey, Long> cache = new ConcurrentHashMap<>();
+	private volatile Executor executor;
+	private volatile boolean aggregateFailures;
 	
 	/**
 	 * Registers a condition into this storage class if it isn't there already.
@@ -56,18 +71,186 @@ public class PluginConditions {
 	}
 	
 	/**
-	 * Fires conditions by type on the plugin.
+	 * Sets the executor that tests the {@link IPluginCondition#isConcurrent() concurrent} conditions in parallel.
+	 * @param executor the executor, {@code null} to test all conditions one after another (the default)
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * Sets whether all conditions are tested and their failures reported together, instead of stopping at the first failure.
+	 * @param aggregateFailures {@code true} to report all failures, {@code false} to stop at the first failure (the default)
+	 */
+	public void setAggregateFailures(boolean aggregateFailures) {
+		this.aggregateFailures = aggregateFailures;
+	}
+	
+	/**
+	 * Fires conditions by type on the plugin.<br>
+	 * Conditions are fired from the cheapest to the most expensive, see {@link IPluginCondition#getCost()}, and the concurrent ones are fired in parallel after the others when an executor is set.
+	 * Unless failures are aggregated, the first failure is thrown right away, without waiting for the other concurrent conditions.<br>
+	 * Conditions declaring a {@link IPluginCondition#getCacheTtl()} are not fired again while their last successful result for the same type and plugin is still alive, failures are never reused.
 	 * @param type the given type
 	 * @param plugin the plugin
-	 * @throws PluginException
+	 * @throws PluginException when a condition fails, or when any condition fails if failures are aggregated
 	 */
 	public void testConditions(ConditionType type, AbstractPlugin plugin) throws PluginException {
-		for (IPluginCondition condition : getConditions(type)) {
-			final ConditionResult result = condition.test(plugin);
-			if ((result == null) || !result.isSuccess()) {
-				throw new PluginException(result == null ? "ConditionResult is null!" : result.describe());
+		final List<IPluginCondition> sequential = new ArrayList<>();
+		final List<IPluginCondition> concurrent = new ArrayList<>();
+		final Executor executor = this.executor;
+		final boolean aggregateFailures = this.aggregateFailures;
+		getConditions(type).stream().sorted(COST_ORDER).forEach(condition -> ((executor != null) && condition.isConcurrent() ? concurrent : sequential).add(condition));
+		
+		final List<String> failures = new ArrayList<>();
+		for (IPluginCondition condition : sequential) {
+			final String failure = testCondition(condition, type, plugin);
+			if (failure != null) {
+				if (!aggregateFailures) {
+					throw new PluginException(failure);
+				}
+				failures.add(failure);
 			}
 		}
+		
+		if (!concurrent.isEmpty() && (aggregateFailures || failures.isEmpty())) {
+			final List<CompletableFuture<String>> futures = concurrent.stream().map(condition -> CompletableFuture.supplyAsync(() -> testCondition(condition, type, plugin), executor)).collect(Collectors.toList());
+			if (!aggregateFailures) {
+				final String failure = join(firstFailure(futures));
+				if (failure != null) {
+					// Conditions that did not start yet are skipped
+					futures.forEach(future -> future.cancel(false));
+					throw new PluginException(failure);
+				}
+			}
+			
+			for (CompletableFuture<String> future : futures) {
+				final String failure = join(future);
+				if (failure != null) {
+					failures.add(failure);
+				}
+			}
+		}
+		
+		if (failures.size() == 1) {
+			throw new PluginException(failures.get(0));
+		}
+		else if (!failures.isEmpty()) {
+			final PluginException exception = new PluginException(failures.size() + " conditions failed: " + String.join("; ", failures));
+			failures.forEach(failure -> exception.addSuppressed(new PluginException(failure)));
+			throw exception;
+		}
+	}
+	
+	/**
+	 * Combines the results of concurrently tested conditions, completing as soon as one of them fails.
+	 * @param futures the results of the conditions
+	 * @return the first failure, completed with {@code null} once all conditions are successful
+	 */
+	private static CompletableFuture<String> firstFailure(List<CompletableFuture<String>> futures) {
+		final CompletableFuture<String> firstFailure = new CompletableFuture<>();
+		for (CompletableFuture<String> future : futures) {
+			future.whenComplete((failure, e) ->
+			{
+				if (e != null) {
+					firstFailure.completeExceptionally(e);
+				}
+				else if (failure != null) {
+					firstFailure.complete(failure);
+				}
+			});
+		}
+		
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).whenComplete((result, e) ->
+		{
+			if (e != null) {
+				firstFailure.completeExceptionally(e);
+			}
+			else {
+				// All of them are done, the failure callbacks may just not have run yet
+				firstFailure.complete(futures.stream().map(CompletableFuture::join).filter(Objects::nonNull).findFirst().orElse(null));
+			}
+		});
+		return firstFailure;
+	}
+	
+	/**
+	 * Waits for the result of a concurrently tested condition, rethrowing what the condition threw.
+	 * @param future the result of the condition
+	 * @return the description of the failure, or {@code null} if the condition is successful
+	 */
+	private static String join(CompletableFuture<String> future) {
+		try {
+			return future.join();
+		}
+		catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Fires a condition on the plugin, unless its successful result is cached.
+	 * @param condition the condition
+	 * @param type the condition type
+	 * @param plugin the plugin
+	 * @return the description of the failure, or {@code null} if the condition is successful
+	 */
+	private String testCondition(IPluginCondition condition, ConditionType type, AbstractPlugin plugin) {
+		final long ttl = condition.getCacheTtl();
+		final CacheKey key = ttl > 0 ? new CacheKey(condition, type, plugin) : null;
+		if (key != null) {
+			final Long expiresAt = cache.get(key);
+			if ((expiresAt != null) && ((expiresAt - System.nanoTime()) > 0)) {
+				return null;
+			}
+		}
+		
+		final ConditionResult result = condition.test(plugin);
+		if ((result == null) || !result.isSuccess()) {
+			if (key != null) {
+				cache.remove(key);
+			}
+			return result == null ? "ConditionResult is null!" : result.describe();
+		}
+		
+		if (key != null) {
+			cache.put(key, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl));
+		}
+		return null;
+	}
+	
+	/**
+	 * Drops all cached condition results, so every condition is fired on the next test.
+	 */
+	public void invalidate() {
+		cache.clear();
+	}
+	
+	/**
+	 * Drops the cached results of the condition.
+	 * @param condition the condition
+	 */
+	public void invalidate(IPluginCondition condition) {
+		cache.keySet().removeIf(key -> key.condition == condition);
+	}
+	
+	/**
+	 * Drops the cached results of the conditions of a type.
+	 * @param type the condition type
+	 */
+	public void invalidate(ConditionType type) {
+		cache.keySet().removeIf(key -> key.type == type);
+	}
+	
+	/**
+	 * Drops the cached results of the conditions tested on the plugin.
+	 * @param plugin the plugin
+	 */
+	public void invalidate(AbstractPlugin plugin) {
+		cache.keySet().removeIf(key -> key.plugin == plugin);
 	}
 	
 	@Override
@@ -100,4 +283,41 @@ public class PluginConditions {
 		}
 		return true;
 	}
+	
+	/**
+	 * The key of a cached condition result, comparing the condition and the plugin by identity.
+	 */
+	private static final class CacheKey {
+		private final IPluginCondition condition;
+		private final ConditionType type;
+		private final AbstractPlugin plugin;
+		
+		CacheKey(IPluginCondition condition, ConditionType type, AbstractPlugin plugin) {
+			this.condition = condition;
+			this.type = type;
+			this.plugin = plugin;
+		}
+		
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = (prime * result) + System.identityHashCode(condition);
+			result = (prime * result) + type.hashCode();
+			result = (prime * result) + System.identityHashCode(plugin);
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof CacheKey)) {
+				return false;
+			}
+			final CacheKey other = (CacheKey) obj;
+			return (condition == other.condition) && (type == other.type) && (plugin == other.plugin);
+		}
+	}
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.events;
+
+import com.github.unafraid.plugins.AbstractPlugin;
+import com.github.unafraid.plugins.PluginState;
+import com.google.common.base.MoreObjects;
+
+/**
+ * An event published on a {@link PluginEventBus}.
+ * @author UnAfraid
+ */
+public class PluginEvent {
+	private final PluginEventType type;
+	private final AbstractPlugin plugin;
+	private final PluginState oldState;
+	private final PluginState newState;
+	private final Throwable cause;
+	private final long timestamp = System.currentTimeMillis();
+	
+	private PluginEvent(PluginEventType type, AbstractPlugin plugin, PluginState oldState, PluginState newState, Throwable cause) {
+		this.type = type;
+		this.plugin = plugin;
+		this.oldState = oldState;
+		this.newState = newState;
+		this.cause = cause;
+	}
+	
+	/**
+	 * Creates an event of a plugin.
+	 * @param type the type of the event
+	 * @param plugin the plugin
+	 * @return the event
+	 */
+	public static PluginEvent of(PluginEventType type, AbstractPlugin plugin) {
+		return new PluginEvent(type, plugin, null, null, null);
+	}
+	
+	/**
+	 * Creates a {@link PluginEventType#STATE_CHANGED} event.
+	 * @param plugin the plugin
+	 * @param oldState the previous state
+	 * @param newState the actual state
+	 * @return the event
+	 */
+	public static PluginEvent stateChanged(AbstractPlugin plugin, PluginState oldState, PluginState newState) {
+		return new PluginEvent(PluginEventType.STATE_CHANGED, plugin, oldState, newState, null);
+	}
+	
+	/**
+	 * Creates a {@link PluginEventType#FAILED} event.
+	 * @param plugin the plugin, or {@code null} if the failure is not related to a single plugin
+	 * @param cause the cause of the failure
+	 * @return the event
+	 */
+	public static PluginEvent failed(AbstractPlugin plugin, Throwable cause) {
+		return new PluginEvent(PluginEventType.FAILED, plugin, null, null, cause);
+	}
+	
+	/**
+	 * Gets the type of the event.
+	 * @return type
+	 */
+	public PluginEventType getType() {
+		return type;
+	}
+	
+	/**
+	 * Gets the plugin of the event.
+	 * @return plugin, or {@code null} for events not related to a single plugin
+	 */
+	public AbstractPlugin getPlugin() {
+		return plugin;
+	}
+	
+	/**
+	 * Gets the previous state of a {@link PluginEventType#STATE_CHANGED} event.
+	 * @return previous state, or {@code null} for other events
+	 */
+	public PluginState getOldState() {
+		return oldState;
+	}
+	
+	/**
+	 * Gets the actual state of a {@link PluginEventType#STATE_CHANGED} event.
+	 * @return actual state, or {@code null} for other events
+	 */
+	public PluginState getNewState() {
+		return newState;
+	}
+	
+	/**
+	 * Gets the cause of a {@link PluginEventType#FAILED} event.
+	 * @return cause, or {@code null} for other events
+	 */
+	public Throwable getCause() {
+		return cause;
+	}
+	
+	/**
+	 * Gets the time the event was published at.
+	 * @return time in milliseconds
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+	
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+			.add("type", type)
+			.add("plugin", plugin != null ? plugin.getName() : null)
+			.add("oldState", oldState)
+			.add("newState", newState)
+			.add("cause", cause)
+			.toString();
+	}
+}
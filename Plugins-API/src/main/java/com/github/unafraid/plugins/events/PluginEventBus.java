@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.events;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatches the events of a plugin repository to its subscribers asynchronously.<br>
+ * Events are queued in a bounded queue and delivered in order by a single daemon thread, started on the first event published while there are subscribers.
+ * When the queue is full the {@link EventOverflowPolicy} decides between blocking the publisher and dropping the event, publishers are blocked by default so no event is lost, plugin lifecycles only wait for subscribers that fall a whole queue behind.
+ * Events published by listeners themselves are delivered right away on the dispatcher thread, so a full queue cannot deadlock it.
+ * @author UnAfraid
+ */
+public class PluginEventBus implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PluginEventBus.class);
+	
+	/**
+	 * The capacity of the queue of buses created by {@link #PluginEventBus()}.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/** Queued by {@link #close()} behind the events left to deliver, the dispatcher stops once it reaches it. **/
+	private static final PluginEvent CLOSE = PluginEvent.of(PluginEventType.SCANNED, null);
+	
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+	private final BlockingQueue<PluginEvent> queue;
+	private final EventOverflowPolicy overflowPolicy;
+	private final AtomicLong droppedCount = new AtomicLong();
+	private volatile Thread dispatcher;
+	private volatile boolean closed;
+	
+	public PluginEventBus(int capacity, EventOverflowPolicy overflowPolicy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive, but got " + capacity);
+		}
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+	}
+	
+	public PluginEventBus() {
+		this(DEFAULT_CAPACITY, EventOverflowPolicy.BLOCK);
+	}
+	
+	/**
+	 * Subscribes the listener to all events of all plugins.
+	 * @param listener the listener
+	 */
+	public void subscribe(IPluginEventListener listener) {
+		subscribe(EnumSet.allOf(PluginEventType.class), listener);
+	}
+	
+	/**
+	 * Subscribes the listener to the events of the given types of all plugins.
+	 * @param types the event types
+	 * @param listener the listener
+	 */
+	public void subscribe(Set<PluginEventType> types, IPluginEventListener listener) {
+		Objects.requireNonNull(types);
+		Objects.requireNonNull(listener);
+		
+		subscriptions.add(new Subscription(types.isEmpty() ? Collections.emptySet() : EnumSet.copyOf(types), listener));
+	}
+	
+	/**
+	 * Unsubscribes the listener from all events it is subscribed to.
+	 * @param listener the listener
+	 */
+	public void unsubscribe(IPluginEventListener listener) {
+		subscriptions.removeIf(subscription -> subscription.listener == listener);
+	}
+	
+	/**
+	 * Publishes the event to the subscribers, nothing is queued while there are none nor once the bus is closed.
+	 * @param event the event
+	 */
+	public void publish(PluginEvent event) {
+		Objects.requireNonNull(event);
+		
+		if (closed || subscriptions.stream().noneMatch(subscription -> subscription.types.contains(event.getType()))) {
+			return;
+		}
+		
+		if (Thread.currentThread() == dispatcher) {
+			dispatch(event);
+			return;
+		}
+		
+		startDispatcher();
+		if (overflowPolicy == EventOverflowPolicy.BLOCK) {
+			try {
+				queue.put(event);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				drop(event, "the publisher was interrupted");
+				return;
+			}
+		}
+		else if (!queue.offer(event)) {
+			drop(event, "the queue is full");
+			return;
+		}
+		
+		// Closed while queueing, the dispatcher may have delivered what was left already
+		if (closed && queue.remove(event)) {
+			drop(event, "the bus was closed");
+		}
+	}
+	
+	/**
+	 * Counts a dropped event, the first drop is reported as a warning.
+	 * @param event the event
+	 * @param reason why it was dropped
+	 */
+	private void drop(PluginEvent event, String reason) {
+		final long dropped = droppedCount.incrementAndGet();
+		if (dropped == 1) {
+			LOGGER.warn("Dropped event {} because {}, further drops are only counted, see getDroppedCount().", event, reason);
+		}
+		else {
+			LOGGER.debug("Dropped event {} because {}, {} event(s) dropped so far.", event, reason, dropped);
+		}
+	}
+	
+	/**
+	 * Starts the dispatcher thread unless it is started already.
+	 */
+	private synchronized void startDispatcher() {
+		if ((dispatcher != null) || closed) {
+			return;
+		}
+		
+		final Thread thread = new Thread(() ->
+		{
+			try {
+				while (true) {
+					final PluginEvent event = queue.take();
+					if (event == CLOSE) {
+						break;
+					}
+					
+					dispatch(event);
+					if (closed && queue.isEmpty()) {
+						// Closed while the queue was full, so there was no room for the close marker
+						break;
+					}
+				}
+			}
+			catch (InterruptedException e) {
+				LOGGER.warn("Event dispatcher was interrupted, {} event(s) are left to deliver.", queue.size());
+			}
+			finally {
+				synchronized (this) {
+					if (dispatcher == Thread.currentThread()) {
+						// Started again by the next event unless closed
+						dispatcher = null;
+					}
+				}
+			}
+		}, "PluginEventBus");
+		thread.setDaemon(true);
+		// Must not inherit a plugin's class loader, it would be pinned for the bus lifetime
+		thread.setContextClassLoader(PluginEventBus.class.getClassLoader());
+		dispatcher = thread;
+		thread.start();
+	}
+	
+	/**
+	 * Delivers the event to the listeners subscribed to its type.
+	 * @param event the event
+	 */
+	private void dispatch(PluginEvent event) {
+		for (Subscription subscription : subscriptions) {
+			if (subscription.types.contains(event.getType())) {
+				try {
+					subscription.listener.onEvent(event);
+				}
+				catch (Throwable e) {
+					// Errors included, they must not kill the dispatcher thread
+					LOGGER.warn("Listener {} failed to handle event {}", subscription.listener, event, e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the amount of events waiting to be delivered.
+	 * @return queued events
+	 */
+	public int getQueuedCount() {
+		return queue.size();
+	}
+	
+	/**
+	 * Gets the amount of events dropped because the queue was full, because the publisher was interrupted while waiting for room, or because the bus was closed meanwhile.
+	 * @return dropped events
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+	
+	/**
+	 * Stops accepting events, the dispatcher thread stops once it delivered the queued ones.<br>
+	 * The dispatcher is not interrupted, so a listener handling an event at the moment completes normally.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			if (dispatcher == null) {
+				return;
+			}
+		}
+		
+		// When the queue is full, the dispatcher notices the close once it is drained.
+		queue.offer(CLOSE);
+	}
+	
+	/**
+	 * A listener with the event types it is subscribed to.
+	 */
+	private static final class Subscription {
+		private final Set<PluginEventType> types;
+		private final IPluginEventListener listener;
+		
+		private Subscription(Set<PluginEventType> types, IPluginEventListener listener) {
+			this.types = types;
+			this.listener = listener;
+		}
+	}
+}
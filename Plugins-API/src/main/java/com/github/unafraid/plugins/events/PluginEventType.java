@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.events;
+
+/**
+ * The types of the events published on a {@link PluginEventBus}.
+ * @author UnAfraid
+ */
+public enum PluginEventType {
+	/** The state of a plugin has changed. **/
+	STATE_CHANGED,
+	
+	/** The repository finished scanning for plugins, the event has no plugin. **/
+	SCANNED,
+	
+	/** A plugin was installed by its installers and functions, published before a repository records the installation, e.g. in the database. **/
+	INSTALLED,
+	
+	/** A plugin was uninstalled by its installers and functions, published before a repository forgets the installation, e.g. in the database. **/
+	UNINSTALLED,
+	
+	/** A plugin was migrated from an older version. **/
+	MIGRATED,
+	
+	/** A plugin was upgraded to another JAR, the event carries the new version. **/
+	UPGRADED,
+	
+	/** An operation on a plugin failed, the event carries the cause. **/
+	FAILED;
+}
@@ -43,4 +43,13 @@ public class PluginException extends Exception {
 	public PluginException(Throwable t) {
 		super(t);
 	}
+	
+	/**
+	 * Constructs the exception thrown by a failed plugin event.
+	 * @param cause the reason of the failure
+	 * @param t throwable reason of the failure
+	 */
+	public PluginException(String cause, Throwable t) {
+		super(cause, t);
+	}
 }
@@ -21,6 +21,9 @@
  */
 package com.github.unafraid.plugins.installers;
 
+import java.util.Collections;
+import java.util.Set;
+
 import com.github.unafraid.plugins.AbstractPlugin;
 import com.github.unafraid.plugins.exceptions.PluginException;
 
@@ -49,4 +52,12 @@ public interface IPluginInstaller {
 	 * @throws PluginException
 	 */
 	void uninstall(AbstractPlugin plugin) throws PluginException;
+	
+	/**
+	 * Gets the sources of the resources used by this installer, as recorded in the plugin index.
+	 * @return sources
+	 */
+	default Set<String> getSources() {
+		return Collections.emptySet();
+	}
 }
@@ -36,6 +36,9 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.github.unafraid.plugins.AbstractPlugin;
 import com.github.unafraid.plugins.exceptions.PluginException;
@@ -87,6 +90,11 @@ public class FileInstaller implements IPluginInstaller {
 		return directories;
 	}
 	
+	@Override
+	public Set<String> getSources() {
+		return Stream.concat(files.stream(), directories.stream()).map(PluginFile::getSource).collect(Collectors.toCollection(TreeSet::new));
+	}
+	
 	@Override
 	public void install(AbstractPlugin plugin) throws PluginException {
 		processResources(plugin, false);
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.migrations;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+
+import com.github.unafraid.plugins.AbstractPlugin;
+import com.github.unafraid.plugins.exceptions.PluginException;
+
+/**
+ * A migration journal keeping the last completed target version of each plugin in a file of its own.<br>
+ * Files are replaced atomically where the file system allows it, so a crash never leaves a partially written checkpoint.
+ * @author UnAfraid
+ */
+public class FileMigrationJournal implements IMigrationJournal {
+	/**
+	 * The suggested journal directory, relative to the plugins path.
+	 */
+	public static final String DEFAULT_DIRECTORY = ".migrations";
+	
+	private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+	
+	private final Path directory;
+	
+	public FileMigrationJournal(Path directory) {
+		this.directory = Objects.requireNonNull(directory);
+	}
+	
+	@Override
+	public int getCheckpoint(AbstractPlugin plugin) throws PluginException {
+		final Path file = getFile(plugin);
+		if (!Files.isRegularFile(file)) {
+			return NO_CHECKPOINT;
+		}
+		
+		try {
+			return Integer.parseInt(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+		}
+		catch (IOException | NumberFormatException e) {
+			throw new PluginException("Failed to read migration checkpoint " + file, e);
+		}
+	}
+	
+	@Override
+	public void checkpoint(AbstractPlugin plugin, int version) throws PluginException {
+		final Path file = getFile(plugin);
+		try {
+			Files.createDirectories(directory);
+			final Path temporaryFile = Files.createTempFile(directory, plugin.getName(), ".tmp");
+			Files.write(temporaryFile, Integer.toString(version).getBytes(StandardCharsets.UTF_8));
+			try {
+				Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e) {
+			throw new PluginException("Failed to write migration checkpoint " + file, e);
+		}
+	}
+	
+	@Override
+	public void clear(AbstractPlugin plugin) throws PluginException {
+		final Path file = getFile(plugin);
+		try {
+			Files.deleteIfExists(file);
+		}
+		catch (IOException e) {
+			throw new PluginException("Failed to delete migration checkpoint " + file, e);
+		}
+	}
+	
+	/**
+	 * @param plugin the plugin
+	 * @return the checkpoint file of the plugin
+	 */
+	private Path getFile(AbstractPlugin plugin) {
+		return directory.resolve(plugin.getName() + CHECKPOINT_SUFFIX);
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.migrations;
+
+import com.github.unafraid.plugins.AbstractPlugin;
+import com.github.unafraid.plugins.exceptions.PluginException;
+
+/**
+ * A journal of the migration progress of plugins, so an interrupted migration can resume from the last completed version.
+ * @author UnAfraid
+ */
+public interface IMigrationJournal {
+	/**
+	 * Returned by {@link #getCheckpoint(AbstractPlugin)} when the plugin has no unfinished migration.
+	 */
+	int NO_CHECKPOINT = -1;
+	
+	/**
+	 * Gets the last completed target version of the unfinished migration of the plugin.
+	 * @param plugin the plugin
+	 * @return the last completed target version, or {@link #NO_CHECKPOINT}
+	 * @throws PluginException
+	 */
+	int getCheckpoint(AbstractPlugin plugin) throws PluginException;
+	
+	/**
+	 * Records that the migrations of a target version are completed.
+	 * @param plugin the plugin
+	 * @param version the completed target version
+	 * @throws PluginException
+	 */
+	void checkpoint(AbstractPlugin plugin, int version) throws PluginException;
+	
+	/**
+	 * Drops the recorded progress of the plugin, once its migration is finished or when the progress is out of date.
+	 * @param plugin the plugin
+	 * @throws PluginException
+	 */
+	void clear(AbstractPlugin plugin) throws PluginException;
+}
@@ -21,27 +21,44 @@
  */
 package com.github.unafraid.plugins.migrations;
 
-import java.util.Comparator;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.github.unafraid.plugins.AbstractPlugin;
 import com.github.unafraid.plugins.exceptions.PluginException;
 
 /**
  * A class that stores a set of migrations.<br>
- * Migration happens whenever you upgrade your plugin from an older version to a newer.
+ * Migration happens whenever you upgrade your plugin from an older version to a newer.<br>
+ * Migrations are indexed by their target version, so a migration plan is a range query over the index and needs no sorting.
  * @author UnAfraid
  */
 public class PluginMigrations {
-	private final Set<IPluginMigration> migrations = new HashSet<>();
+	private static final Logger LOGGER = LoggerFactory.getLogger(PluginMigrations.class);
+	
+	private final Set<IPluginMigration> migrations = new LinkedHashSet<>();
+	private final NavigableMap<Integer, List<IPluginMigration>> index = new TreeMap<>();
+	private IMigrationJournal journal;
 	
 	/**
-	 * Registers a migration into this storage class.
+	 * Registers a migration into this storage class.<br>
+	 * Migrations of the same target version are applied in the order they are registered.
 	 * @param migration
 	 */
 	public void addMigration(IPluginMigration migration) {
-		migrations.add(migration);
+		if (migrations.add(migration)) {
+			index.computeIfAbsent(migration.getTargetVersion(), k -> new ArrayList<>()).add(migration);
+		}
 	}
 	
 	/**
@@ -49,11 +66,43 @@ public class PluginMigrations {
 	 * @return migrations
 	 */
 	public Set<IPluginMigration> getMigrations() {
-		return migrations;
+		return Collections.unmodifiableSet(migrations);
+	}
+	
+	/**
+	 * Gets the migrations that upgrade a plugin from a version to another, those targeting a version in {@code (from, to]}, ordered by target version.<br>
+	 * The plan does not depend on the plugin, so it may be applied to any plugin of the same kind with {@link #migrate(List, AbstractPlugin)}.
+	 * @param from the older version
+	 * @param to the newer version
+	 * @return migration plan
+	 */
+	public List<IPluginMigration> getPlan(int from, int to) {
+		final Collection<List<IPluginMigration>> steps = index.subMap(from, false, to, true).values();
+		final List<IPluginMigration> plan = new ArrayList<>();
+		steps.forEach(plan::addAll);
+		return Collections.unmodifiableList(plan);
 	}
 	
 	/**
-	 * A method to start all possible applicable migrations.
+	 * Sets the journal that records the migration progress, there is none by default so every migration starts over from the version migrated from.<br>
+	 * A journal is keyed by plugin name, so it should only be shared by plugins of distinct names, e.g. a {@link FileMigrationJournal} per plugins path.
+	 * @param journal the journal, {@code null} for none
+	 */
+	public void setJournal(IMigrationJournal journal) {
+		this.journal = journal;
+	}
+	
+	/**
+	 * Gets the journal that records the migration progress.
+	 * @return the journal, or {@code null} if there is none
+	 */
+	public IMigrationJournal getJournal() {
+		return journal;
+	}
+	
+	/**
+	 * A method to start all migrations applicable to an upgrade from a version to another, see {@link #getPlan(int, int)}.<br>
+	 * When a {@link #setJournal(IMigrationJournal) journal} is set, the progress is recorded after each target version, so when a previous attempt failed halfway the migration resumes after its last completed version.
 	 * @param from the older version
 	 * @param to the newer version
 	 * @param plugin the plugin
@@ -64,14 +113,42 @@ public class PluginMigrations {
 			throw new PluginException("Cannot migrate from " + from + " >= to" + to + "!");
 		}
 		
-		//@formatter:off
-		migrations.stream()
-			.sorted(Comparator.comparingInt(IPluginMigration::getTargetVersion))
-			.filter(migration -> migration.getTargetVersion() >= from)
-			.forEach(migration -> migration.migrate(plugin));
-		//@formatter:off
+		final IMigrationJournal journal = this.journal;
+		int start = from;
+		if (journal != null) {
+			final int checkpoint = journal.getCheckpoint(plugin);
+			if ((checkpoint > from) && (checkpoint <= to)) {
+				LOGGER.info("Resuming migration of plugin {} from version {} to {} after completed version {}", plugin.getName(), from, to, checkpoint);
+				start = checkpoint;
+			}
+			else if (checkpoint != IMigrationJournal.NO_CHECKPOINT) {
+				journal.clear(plugin);
+			}
+		}
+		
+		for (Map.Entry<Integer, List<IPluginMigration>> step : index.subMap(start, false, to, true).entrySet()) {
+			migrate(step.getValue(), plugin);
+			if (journal != null) {
+				journal.checkpoint(plugin, step.getKey());
+			}
+		}
+		
+		if (journal != null) {
+			journal.clear(plugin);
+		}
 	}
-
+	
+	/**
+	 * Applies a migration plan to the plugin.
+	 * @param plan the migration plan, see {@link #getPlan(int, int)}
+	 * @param plugin the plugin
+	 */
+	public static void migrate(List<IPluginMigration> plan, AbstractPlugin plugin) {
+		for (IPluginMigration migration : plan) {
+			migration.migrate(plugin);
+		}
+	}
+	
 	
 	@Override
 	public int hashCode()
@@ -81,7 +158,7 @@ public class PluginMigrations {
 		result = (prime * result) + ((migrations == null) ? 0 : migrations.hashCode());
 		return result;
 	}
-
+	
 	
 	@Override
 	public boolean equals(Object obj)
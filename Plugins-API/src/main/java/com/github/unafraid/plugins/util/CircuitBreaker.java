@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.unafraid.plugins.exceptions.CircuitOpenException;
+import com.github.unafraid.plugins.exceptions.PluginRuntimeException;
+
+/**
+ * A circuit breaker, failing invocations fast once too many of the recent ones failed or were slow.<br>
+ * The outcomes of the last {@link #setWindow(int, int) window} invocations are recorded, slow invocations count as failures.
+ * Once the failure rate of at least the minimum amount of invocations reaches the {@link #setFailureRateThreshold(int) threshold} the circuit opens, rejecting invocations with {@link CircuitOpenException}.
+ * After the {@link #setOpenDuration(long, TimeUnit) open duration} a single probe invocation is let through, closing the circuit when it succeeds and opening it again when it fails or outlives the {@link #setProbeTimeout(long, TimeUnit) probe timeout}.
+ * Only outcomes of invocations let through in the current state are recorded, e.g. a slow invocation from before the circuit opened cannot close it.
+ * @author UnAfraid
+ */
+public class CircuitBreaker {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+	
+	/** Returned by {@link #tryAcquire()} when the invocation is rejected. **/
+	private static final long REJECTED = -1;
+	
+	private final String name;
+	private final LongSupplier clock;
+	private int failureRateThreshold = 50;
+	private int minimumCalls = 10;
+	private long slowCallNanos;
+	private long openNanos = TimeUnit.SECONDS.toNanos(30);
+	private long probeTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+	private boolean[] failures = new boolean[20];
+	private long[] latencies = new long[20];
+	private int index;
+	private int calls;
+	private int failureCount;
+	private long latencySum;
+	private CircuitState state = CircuitState.CLOSED;
+	private long openedAt;
+	private long generation;
+	private boolean probing;
+	private long probeStartedAt;
+	private long rejectedCount;
+	
+	public CircuitBreaker(String name) {
+		this(name, System::nanoTime);
+	}
+	
+	/**
+	 * Creates a circuit breaker measuring time with the given clock.
+	 * @param name the name
+	 * @param clock the clock in nanoseconds, see {@link System#nanoTime()}
+	 */
+	CircuitBreaker(String name, LongSupplier clock) {
+		this.name = Objects.requireNonNull(name);
+		this.clock = Objects.requireNonNull(clock);
+	}
+	
+	/**
+	 * Creates a proxy of the target, invoking it through the circuit breaker.<br>
+	 * Only the methods declared by {@link Object} bypass the circuit breaker.
+	 * @param <R> the type of the proxy
+	 * @param type the interface of the target to proxy
+	 * @param target the target
+	 * @param circuitBreaker the circuit breaker
+	 * @return the guarded proxy
+	 */
+	public static <R> R guard(Class<R> type, R target, CircuitBreaker circuitBreaker) {
+		Objects.requireNonNull(target);
+		Objects.requireNonNull(circuitBreaker);
+		if (!type.isInterface()) {
+			throw new IllegalArgumentException("Only interfaces can be guarded, but got " + type.getName());
+		}
+		
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> circuitBreaker.invoke(target, method, args)));
+	}
+	
+	/**
+	 * Invokes the method of the target through the circuit breaker.
+	 * @param target the target
+	 * @param method the method
+	 * @param args the arguments
+	 * @return the result of the method
+	 * @throws Throwable the exception thrown by the method, or {@link CircuitOpenException} when rejected
+	 */
+	private Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			return method.invoke(target, args);
+		}
+		
+		return execute(() ->
+		{
+			try {
+				return method.invoke(target, args);
+			}
+			catch (InvocationTargetException e) {
+				throw new ThrownException(e.getCause());
+			}
+		});
+	}
+	
+	/**
+	 * Invokes the callable through the circuit breaker.
+	 * @param <V> the type of the result
+	 * @param callable the callable
+	 * @return the result of the callable
+	 * @throws Exception the exception thrown by the callable, or {@link CircuitOpenException} when rejected
+	 */
+	public <V> V call(Callable<V> callable) throws Exception {
+		try {
+			return execute(callable);
+		}
+		catch (Exception | Error e) {
+			throw e;
+		}
+		catch (Throwable t) {
+			throw new PluginRuntimeException(t);
+		}
+	}
+	
+	/**
+	 * Invokes the callable through the circuit breaker, unwrapping the exceptions thrown by proxied methods.
+	 * @param <V> the type of the result
+	 * @param callable the callable
+	 * @return the result of the callable
+	 * @throws Throwable the exception thrown by the callable, or {@link CircuitOpenException} when rejected
+	 */
+	private <V> V execute(Callable<V> callable) throws Throwable {
+		final long permit = tryAcquire();
+		if (permit == REJECTED) {
+			throw new CircuitOpenException("Circuit breaker of " + name + " is open");
+		}
+		
+		final long start = clock.getAsLong();
+		try {
+			final V result = callable.call();
+			onResult(permit, clock.getAsLong() - start, false);
+			return result;
+		}
+		catch (ThrownException e) {
+			onResult(permit, clock.getAsLong() - start, true);
+			throw e.getCause();
+		}
+		catch (Throwable t) {
+			onResult(permit, clock.getAsLong() - start, true);
+			throw t;
+		}
+	}
+	
+	/**
+	 * Checks whether an invocation may pass, moving an open circuit to half-open once the open duration elapsed.
+	 * @return the permit of the invocation, the generation of the state it passed in, or {@link #REJECTED} if it is rejected
+	 */
+	private synchronized long tryAcquire() {
+		if (state == CircuitState.CLOSED) {
+			return generation;
+		}
+		
+		final long now = clock.getAsLong();
+		if ((state == CircuitState.HALF_OPEN) && probing && ((now - probeStartedAt) >= probeTimeoutNanos)) {
+			LOGGER.warn("Circuit breaker of {} probe did not complete within {} ms.", name, TimeUnit.NANOSECONDS.toMillis(probeTimeoutNanos));
+			open();
+		}
+		
+		if (state == CircuitState.OPEN) {
+			if ((now - openedAt) < openNanos) {
+				rejectedCount++;
+				return REJECTED;
+			}
+			transition(CircuitState.HALF_OPEN);
+			LOGGER.info("Circuit breaker of {} is half-open, probing.", name);
+		}
+		else if (probing) {
+			rejectedCount++;
+			return REJECTED;
+		}
+		probing = true;
+		probeStartedAt = now;
+		return generation;
+	}
+	
+	/**
+	 * Records the outcome of an invocation, ignored when the circuit changed state since the invocation passed.
+	 * @param permit the permit of the invocation, see {@link #tryAcquire()}
+	 * @param latencyNanos the duration of the invocation
+	 * @param failed whether the invocation threw
+	 */
+	private synchronized void onResult(long permit, long latencyNanos, boolean failed) {
+		if (permit != generation) {
+			return;
+		}
+		
+		final boolean failure = failed || ((slowCallNanos > 0) && (latencyNanos >= slowCallNanos));
+		if (state == CircuitState.HALF_OPEN) {
+			if (failure) {
+				open();
+			}
+			else {
+				reset();
+				transition(CircuitState.CLOSED);
+				LOGGER.info("Circuit breaker of {} is closed.", name);
+			}
+			return;
+		}
+		
+		if (calls == failures.length) {
+			failureCount -= failures[index] ? 1 : 0;
+			latencySum -= latencies[index];
+		}
+		else {
+			calls++;
+		}
+		failures[index] = failure;
+		latencies[index] = latencyNanos;
+		failureCount += failure ? 1 : 0;
+		latencySum += latencyNanos;
+		index = (index + 1) % failures.length;
+		
+		if ((state == CircuitState.CLOSED) && (calls >= minimumCalls) && ((failureCount * 100L) >= (failureRateThreshold * (long) calls))) {
+			open();
+		}
+	}
+	
+	/**
+	 * Opens the circuit.
+	 */
+	private void open() {
+		transition(CircuitState.OPEN);
+		openedAt = clock.getAsLong();
+		LOGGER.warn("Circuit breaker of {} is open for {} ms, failure rate {}% of {} call(s).", name, TimeUnit.NANOSECONDS.toMillis(openNanos), getFailureRate(), calls);
+	}
+	
+	/**
+	 * Moves the circuit to the state, invalidating the permits of the invocations still running.
+	 * @param newState the new state
+	 */
+	private void transition(CircuitState newState) {
+		state = newState;
+		generation++;
+		probing = false;
+	}
+	
+	/**
+	 * Forgets the recorded outcomes.
+	 */
+	private void reset() {
+		failures = new boolean[failures.length];
+		latencies = new long[latencies.length];
+		index = 0;
+		calls = 0;
+		failureCount = 0;
+		latencySum = 0;
+	}
+	
+	/**
+	 * Sets the amount of the recent invocations whose outcomes are recorded, 20 by default, and the minimum amount of them needed to open the circuit, 10 by default.<br>
+	 * The recorded outcomes are reset.
+	 * @param size the amount of recorded invocations
+	 * @param minimumCalls the minimum amount of recorded invocations to open the circuit
+	 */
+	public synchronized void setWindow(int size, int minimumCalls) {
+		if ((size <= 0) || (minimumCalls <= 0) || (minimumCalls > size)) {
+			throw new IllegalArgumentException("Window size and minimum calls must be positive and minimum calls not above the size, but got " + size + " and " + minimumCalls);
+		}
+		this.minimumCalls = minimumCalls;
+		failures = new boolean[size];
+		latencies = new long[size];
+		reset();
+	}
+	
+	/**
+	 * Sets the failure rate of the recorded invocations that opens the circuit, 50% by default.
+	 * @param percent the failure rate in percent, from 1 to 100
+	 */
+	public synchronized void setFailureRateThreshold(int percent) {
+		if ((percent <= 0) || (percent > 100)) {
+			throw new IllegalArgumentException("Failure rate threshold must be between 1 and 100, but got " + percent);
+		}
+		this.failureRateThreshold = percent;
+	}
+	
+	/**
+	 * Sets the duration after which an invocation counts as failed even if it succeeds, disabled by default.
+	 * @param duration the duration, or 0 to disable
+	 * @param unit the time unit of the duration
+	 */
+	public synchronized void setSlowCallDuration(long duration, TimeUnit unit) {
+		this.slowCallNanos = unit.toNanos(duration);
+	}
+	
+	/**
+	 * Sets how long the circuit stays open before probing, 30 seconds by default.
+	 * @param duration the duration
+	 * @param unit the time unit of the duration
+	 */
+	public synchronized void setOpenDuration(long duration, TimeUnit unit) {
+		this.openNanos = unit.toNanos(duration);
+	}
+	
+	/**
+	 * Sets how long the probe invocation of a half-open circuit may run before it counts as failed and the circuit opens again, 30 seconds by default.<br>
+	 * The outcome of a probe that times out is ignored when it eventually completes.
+	 * @param timeout the timeout
+	 * @param unit the time unit of the timeout
+	 */
+	public synchronized void setProbeTimeout(long timeout, TimeUnit unit) {
+		if (timeout <= 0) {
+			throw new IllegalArgumentException("Probe timeout must be positive, but got " + timeout);
+		}
+		this.probeTimeoutNanos = unit.toNanos(timeout);
+	}
+	
+	/**
+	 * Gets the name of the circuit breaker, used in the logs and in the rejections.
+	 * @return name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Gets the state of the circuit.
+	 * @return state
+	 */
+	public synchronized CircuitState getState() {
+		return state;
+	}
+	
+	/**
+	 * Gets the failure rate of the recorded invocations.
+	 * @return failure rate in percent
+	 */
+	public synchronized int getFailureRate() {
+		return calls == 0 ? 0 : (int) ((failureCount * 100L) / calls);
+	}
+	
+	/**
+	 * Gets the average latency of the recorded invocations.
+	 * @return average latency in nanoseconds
+	 */
+	public synchronized long getAverageLatencyNanos() {
+		return calls == 0 ? 0 : latencySum / calls;
+	}
+	
+	/**
+	 * Gets the amount of the recorded invocations.
+	 * @return recorded invocations
+	 */
+	public synchronized int getRecordedCalls() {
+		return calls;
+	}
+	
+	/**
+	 * Gets the amount of invocations rejected while the circuit was not closed.
+	 * @return rejected invocations
+	 */
+	public synchronized long getRejectedCount() {
+		return rejectedCount;
+	}
+	
+	/**
+	 * Carries the exception thrown by a proxied method through {@link #execute(Callable)}.
+	 */
+	private static final class ThrownException extends Exception {
+		private static final long serialVersionUID = 1L;
+		
+		private ThrownException(Throwable cause) {
+			super(cause);
+		}
+	}
+}
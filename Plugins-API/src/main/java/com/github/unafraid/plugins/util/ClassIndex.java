@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An index of the classes, packages and service providers of JARs and class directories.<br>
+ * JARs are indexed from their central directory, so nothing is loaded or defined while building the index.
+ * @author UnAfraid
+ */
+public final class ClassIndex {
+	private static final String CLASS_SUFFIX = ".class";
+	private static final String SERVICES_PREFIX = "META-INF/services/";
+	
+	private final Set<String> resources = new HashSet<>();
+	private final Set<String> packages = new HashSet<>();
+	private final Map<String, List<String>> services = new HashMap<>();
+	
+	private ClassIndex() {
+		// use the factory methods
+	}
+	
+	/**
+	 * Indexes the JAR file by reading its central directory.
+	 * @param jar the JAR file
+	 * @return the index
+	 * @throws IOException
+	 */
+	public static ClassIndex ofJar(Path jar) throws IOException {
+		final ClassIndex index = new ClassIndex();
+		index.addJar(jar);
+		return index;
+	}
+	
+	/**
+	 * Indexes the class directory or JAR file.
+	 * @param path the class directory or the JAR file
+	 * @return the index
+	 * @throws IOException
+	 */
+	public static ClassIndex of(Path path) throws IOException {
+		final ClassIndex index = new ClassIndex();
+		index.add(path);
+		return index;
+	}
+	
+	/**
+	 * Merges the indexes into a new one.
+	 * @param indexes the indexes to be merged
+	 * @return the merged index
+	 */
+	public static ClassIndex merge(ClassIndex... indexes) {
+		final ClassIndex index = new ClassIndex();
+		for (ClassIndex other : indexes) {
+			index.resources.addAll(other.resources);
+			index.packages.addAll(other.packages);
+			other.services.forEach((service, providers) -> providers.forEach(provider ->
+			{
+				final List<String> merged = index.services.computeIfAbsent(service, k -> new ArrayList<>());
+				if (!merged.contains(provider)) {
+					merged.add(provider);
+				}
+			}));
+		}
+		return index;
+	}
+	
+	/**
+	 * Indexes the class path visible to the class loader, that is the URLs of the {@link URLClassLoader}s in its hierarchy and the application class path.<br>
+	 * Class path entries that cannot be read are skipped.
+	 * @param classLoader the class loader, {@code null} for the application class path only
+	 * @return the index
+	 */
+	public static ClassIndex ofClassPath(ClassLoader classLoader) {
+		final Set<Path> paths = new LinkedHashSet<>();
+		for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+			if (loader instanceof URLClassLoader) {
+				for (URL url : ((URLClassLoader) loader).getURLs()) {
+					if ("file".equals(url.getProtocol())) {
+						try {
+							paths.add(Paths.get(url.toURI()));
+						}
+						catch (URISyntaxException | IllegalArgumentException e) {
+							// not a local class path entry
+						}
+					}
+				}
+			}
+		}
+		
+		for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+			if (!entry.isEmpty()) {
+				paths.add(Paths.get(entry));
+			}
+		}
+		
+		final ClassIndex index = new ClassIndex();
+		for (Path path : paths) {
+			try {
+				index.add(path);
+			}
+			catch (IOException e) {
+				// unreadable class path entries can't provide classes either
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Adds the class directory or JAR file to this index.
+	 * @param path the class directory or the JAR file
+	 * @throws IOException
+	 */
+	private void add(Path path) throws IOException {
+		if (Files.isDirectory(path)) {
+			addDirectory(path);
+		}
+		else if (Files.isRegularFile(path)) {
+			addJar(path);
+		}
+	}
+	
+	/**
+	 * Adds the entries of the JAR's central directory to this index.
+	 * @param jar the JAR file
+	 * @throws IOException
+	 */
+	private void addJar(Path jar) throws IOException {
+		try (JarFile jarFile = new JarFile(jar.toFile(), false)) {
+			final Enumeration<JarEntry> entries = jarFile.entries();
+			while (entries.hasMoreElements()) {
+				final JarEntry entry = entries.nextElement();
+				if (entry.isDirectory()) {
+					continue;
+				}
+				
+				addResource(entry.getName());
+				if (entry.getName().startsWith(SERVICES_PREFIX) && (entry.getName().length() > SERVICES_PREFIX.length())) {
+					try (InputStream inputStream = jarFile.getInputStream(entry)) {
+						addServices(entry.getName().substring(SERVICES_PREFIX.length()), inputStream);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds the files of the class directory to this index.
+	 * @param directory the class directory
+	 * @throws IOException
+	 */
+	private void addDirectory(Path directory) throws IOException {
+		final List<Path> files;
+		try (Stream<Path> stream = Files.walk(directory)) {
+			files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+		
+		for (Path file : files) {
+			final String name = directory.relativize(file).toString().replace(File.separatorChar, '/');
+			addResource(name);
+			if (name.startsWith(SERVICES_PREFIX) && (name.indexOf('/', SERVICES_PREFIX.length()) < 0)) {
+				try (InputStream inputStream = Files.newInputStream(file)) {
+					addServices(name.substring(SERVICES_PREFIX.length()), inputStream);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds the resource and its package to this index.
+	 * @param name the resource name, with {@code /} separators
+	 */
+	private void addResource(String name) {
+		resources.add(name);
+		
+		final int lastSlash = name.lastIndexOf('/');
+		if (lastSlash > 0) {
+			packages.add(name.substring(0, lastSlash).replace('/', '.'));
+		}
+	}
+	
+	/**
+	 * Adds the service providers declared in a provider-configuration file to this index.
+	 * @param service the service name
+	 * @param inputStream the content of the provider-configuration file
+	 * @throws IOException
+	 */
+	private void addServices(String service, InputStream inputStream) throws IOException {
+		final List<String> providers = services.computeIfAbsent(service, k -> new ArrayList<>());
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final int comment = line.indexOf('#');
+				if (comment >= 0) {
+					line = line.substring(0, comment);
+				}
+				
+				line = line.trim();
+				if (!line.isEmpty() && !providers.contains(line)) {
+					providers.add(line);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @param name the full name of the class
+	 * @return {@code true} if the class is indexed, {@code false} otherwise
+	 */
+	public boolean containsClass(String name) {
+		return resources.contains(name.replace('.', '/') + CLASS_SUFFIX);
+	}
+	
+	/**
+	 * @param name the resource name, with {@code /} separators and without leading {@code /}
+	 * @return {@code true} if the resource is indexed, {@code false} otherwise
+	 */
+	public boolean containsResource(String name) {
+		return resources.contains(name);
+	}
+	
+	/**
+	 * @param name the full name of the package
+	 * @return {@code true} if the package contains any indexed resource, {@code false} otherwise
+	 */
+	public boolean containsPackage(String name) {
+		return packages.contains(name);
+	}
+	
+	/**
+	 * Gets the full names of the indexed classes.
+	 * @return classes
+	 */
+	public Set<String> getClasses() {
+		//@formatter:off
+		return resources.stream()
+			.filter(name -> name.endsWith(CLASS_SUFFIX))
+			.map(name -> name.substring(0, name.length() - CLASS_SUFFIX.length()).replace('/', '.'))
+			.collect(Collectors.toSet());
+		//@formatter:on
+	}
+	
+	/**
+	 * Gets the names of the indexed packages.
+	 * @return packages
+	 */
+	public Set<String> getPackages() {
+		return Collections.unmodifiableSet(packages);
+	}
+	
+	/**
+	 * Gets the names of the packages that contain indexed classes.
+	 * @return class packages
+	 */
+	public Set<String> getClassPackages() {
+		//@formatter:off
+		return resources.stream()
+			.filter(name -> name.endsWith(CLASS_SUFFIX) && (name.lastIndexOf('/') > 0))
+			.map(name -> name.substring(0, name.lastIndexOf('/')).replace('/', '.'))
+			.collect(Collectors.toSet());
+		//@formatter:on
+	}
+	
+	/**
+	 * Gets the providers of the service, as declared in {@code META-INF/services}.
+	 * @param service the service class
+	 * @return the full names of the provider classes
+	 */
+	public List<String> getProviders(Class<?> service) {
+		return Collections.unmodifiableList(services.getOrDefault(service.getName(), Collections.emptyList()));
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of closed class loaders and reports the ones that are still reachable after a number of garbage collections.<br>
+ * A class loader that survives is pinned by something, usually a thread, a static cache or a listener registration, and leaks its classes.
+ * @author UnAfraid
+ */
+public class ClassLoaderLeakDetector {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ClassLoaderLeakDetector.class);
+	
+	/** The default amount of garbage collections a closed class loader may survive. **/
+	public static final int DEFAULT_GC_CYCLES = 10;
+	
+	/** Shared by all detectors, drained by a single daemon thread. **/
+	private static final ReferenceQueue<ClassLoader> QUEUE = new ReferenceQueue<>();
+	
+	static {
+		final Thread thread = new Thread(ClassLoaderLeakDetector::expunge, "ClassLoaderLeakDetector");
+		thread.setDaemon(true);
+		// Must not inherit a plugin's class loader, it would be pinned for the JVM's lifetime
+		thread.setContextClassLoader(ClassLoaderLeakDetector.class.getClassLoader());
+		thread.start();
+	}
+	
+	private final Set<ClassLoaderReference> references = ConcurrentHashMap.newKeySet();
+	private volatile int gcCycles;
+	
+	public ClassLoaderLeakDetector(int gcCycles) {
+		setGcCycles(gcCycles);
+	}
+	
+	public ClassLoaderLeakDetector() {
+		this(DEFAULT_GC_CYCLES);
+	}
+	
+	/**
+	 * Sets the amount of garbage collections a closed class loader may survive before it is reported as leaked.<br>
+	 * Every collection counts, including young ones that never unload classes, so keep it well above the amount of young collections between two full ones.
+	 * @param gcCycles amount of garbage collections
+	 */
+	public void setGcCycles(int gcCycles) {
+		if (gcCycles < 1) {
+			throw new IllegalArgumentException("GC cycles must be positive, but got " + gcCycles);
+		}
+		this.gcCycles = gcCycles;
+	}
+	
+	/**
+	 * Gets the amount of garbage collections a closed class loader may survive before it is reported as leaked.
+	 * @return amount of garbage collections
+	 */
+	public int getGcCycles() {
+		return gcCycles;
+	}
+	
+	/**
+	 * Starts tracking the closed class loader.
+	 * @param classLoader the closed class loader
+	 * @param description what the class loader belonged to, used when reporting
+	 */
+	public void track(ClassLoader classLoader, String description) {
+		Objects.requireNonNull(classLoader);
+		
+		references.add(new ClassLoaderReference(classLoader, references, description, getGcCount()));
+	}
+	
+	/**
+	 * Gets the amount of tracked class loaders that are still reachable, leaked or not yet.
+	 * @return amount of tracked class loaders
+	 */
+	public int getTrackedCount() {
+		return references.size();
+	}
+	
+	/**
+	 * Gets the amount of leaked class loaders, reporting the newly found ones.
+	 * @return amount of leaked class loaders
+	 */
+	public int getLeakCount() {
+		return getLeaks().size();
+	}
+	
+	/**
+	 * Gets the descriptions of the leaked class loaders, reporting the newly found ones.
+	 * @return leaked class loader descriptions
+	 */
+	public List<String> getLeaks() {
+		final long gcCount = getGcCount();
+		final int cycles = gcCycles;
+		//@formatter:off
+		return references.stream()
+			.filter(reference -> (gcCount - reference.gcCount) >= cycles)
+			.peek(reference ->
+			{
+				if (!reference.reported) {
+					reference.reported = true;
+					LOGGER.warn("Class loader of {} is still reachable after {} garbage collections, it is most likely leaked.", reference.description, gcCount - reference.gcCount);
+				}
+			})
+			.map(reference -> reference.description)
+			.collect(Collectors.toList());
+		//@formatter:on
+	}
+	
+	/**
+	 * Stops tracking the class loaders as soon as they become unreachable.<br>
+	 * Each reference is cleared right away, phantom referents are not released before that on Java 8.
+	 */
+	private static void expunge() {
+		try {
+			while (true) {
+				final ClassLoaderReference reference = (ClassLoaderReference) QUEUE.remove();
+				reference.clear();
+				reference.owner.remove(reference);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * @return the total amount of garbage collections since the JVM started
+	 */
+	private static long getGcCount() {
+		long gcCount = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcCount += Math.max(0, bean.getCollectionCount());
+		}
+		return gcCount;
+	}
+	
+	/**
+	 * A phantom reference to a closed class loader, enqueued once the class loader is unreachable.
+	 */
+	private static final class ClassLoaderReference extends PhantomReference<ClassLoader> {
+		private final Set<ClassLoaderReference> owner;
+		private final String description;
+		private final long gcCount;
+		private volatile boolean reported;
+		
+		ClassLoaderReference(ClassLoader classLoader, Set<ClassLoaderReference> owner, String description, long gcCount) {
+			super(classLoader, QUEUE);
+			this.owner = owner;
+			this.description = description;
+			this.gcCount = gcCount;
+		}
+	}
+}
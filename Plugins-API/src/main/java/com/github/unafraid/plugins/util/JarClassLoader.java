@@ -21,60 +21,156 @@
  */
 package com.github.unafraid.plugins.util;
 
-import java.io.Closeable;
-import java.io.IOException;
-import java.lang.reflect.Field;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author UnAfraid
  */
 public class JarClassLoader extends URLClassLoader {
-	private final ObservableClassLoader parent;
+	/**
+	 * Package prefixes of the Java platform, these are never owned by a plugin even if it bundles them.
+	 */
+	private static final String[] PLATFORM_PACKAGES =
+	{
+		"java",
+		"javax",
+		"jdk",
+		"sun",
+		"com.sun",
+		"org.ietf.jgss",
+		"org.omg",
+		"org.w3c.dom",
+		"org.xml.sax",
+	};
+	
+	private final ClassIndex index;
+	private final ClassIndex parentIndex;
+	private final Set<String> definedClasses = ConcurrentHashMap.newKeySet();
 	
 	public JarClassLoader(URL[] urls, ClassLoader parent) {
-		super(urls, parent);
-		this.parent = new ObservableClassLoader(parent);
+		this(urls, parent, null, null);
 	}
 	
 	public JarClassLoader(URL[] urls) {
 		super(urls);
-		this.parent = new ObservableClassLoader(getParent());
+		this.index = null;
+		this.parentIndex = null;
+	}
+	
+	/**
+	 * Creates a class loader that routes lookups by the given indexes instead of walking the parent chain first.<br>
+	 * Packages found in the index but not in the parent index are owned by this class loader and are looked up here only,
+	 * packages not found in the index are looked up in the parent only, and shared packages use the default parent-first delegation.<br>
+	 * Java platform packages are never owned, they use the default parent-first delegation even when bundled.
+	 * @param urls the URLs to load classes and resources from
+	 * @param parent the parent class loader
+	 * @param index the index of the URLs, {@code null} to use the default parent-first delegation
+	 * @param parentIndex the index of the parent class path, {@code null} if unknown
+	 */
+	public JarClassLoader(URL[] urls, ClassLoader parent, ClassIndex index, ClassIndex parentIndex) {
+		super(urls, parent);
+		this.index = index;
+		this.parentIndex = parentIndex;
 	}
 	
 	@Override
-	public void close() throws IOException {
-		try {
-			final Field ucpField = getClass().getDeclaredField("ucp");
-			ucpField.setAccessible(true);
-			
-			final Object classPath = ucpField.get(this);
-			final Field loadersField = classPath.getClass().getDeclaredField("loaders");
-			loadersField.setAccessible(true);
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		final ClassLoader parentLoader = getParent();
+		if ((index == null) || (parentLoader == null) || name.startsWith("java.")) {
+			return super.loadClass(name, resolve);
+		}
+		
+		final String packageName = getPackageName(name);
+		final boolean ownedPackage = isOwnedPackage(packageName);
+		if (!ownedPackage && index.containsPackage(packageName)) {
+			// Package is shared with the parent class path
+			return super.loadClass(name, resolve);
+		}
+		
+		synchronized (getClassLoadingLock(name)) {
+			Class<?> c = findLoadedClass(name);
+			if (c == null) {
+				c = ownedPackage ? findClass(name) : parentLoader.loadClass(name);
+			}
 			
-			final Object loadersCollection = loadersField.get(classPath);
-			if (loadersCollection instanceof Collection) {
-				for (Object jarClassLoader : ((Collection) loadersCollection)) {
-					try {
-						final Field jarField = jarClassLoader.getClass().getDeclaredField("jar");
-						jarField.setAccessible(true);
-						
-						final Object jarFile = jarField.get(jarClassLoader);
-						if (jarFile instanceof Closeable) {
-							((Closeable) jarFile).close();
-						}
-					} catch (Exception e) {
-						// ignore
-					}
-				}
+			if (resolve) {
+				resolveClass(c);
 			}
-		} catch (Exception e) {
-			// ignore
+			return c;
+		}
+	}
+	
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		final Class<?> c = super.findClass(name);
+		definedClasses.add(name);
+		return c;
+	}
+	
+	/**
+	 * @return the names of the classes defined by this class loader so far
+	 */
+	public Set<String> getDefinedClasses() {
+		return Collections.unmodifiableSet(definedClasses);
+	}
+	
+	@Override
+	public URL getResource(String name) {
+		final ClassLoader parentLoader = getParent();
+		if ((index == null) || (parentLoader == null)) {
+			return super.getResource(name);
 		}
 		
-		super.close();
+		final int lastSlash = name.lastIndexOf('/');
+		final String packageName = lastSlash > 0 ? name.substring(0, lastSlash).replace('/', '.') : "";
+		if (isOwnedPackage(packageName)) {
+			return index.containsResource(name) ? findResource(name) : null;
+		}
+		else if (!index.containsResource(name)) {
+			return parentLoader.getResource(name);
+		}
+		return super.getResource(name);
+	}
+	
+	/**
+	 * @param packageName the name of the package
+	 * @return {@code true} if the package is found only in this class loader's index and is not a platform package, {@code false} otherwise
+	 */
+	private boolean isOwnedPackage(String packageName) {
+		return index.containsPackage(packageName) && !isPlatformPackage(packageName) && ((parentIndex == null) || !parentIndex.containsPackage(packageName));
+	}
+	
+	/**
+	 * @param packageName the name of the package
+	 * @return {@code true} if the package belongs to the Java platform, {@code false} otherwise
+	 */
+	private static boolean isPlatformPackage(String packageName) {
+		for (String platformPackage : PLATFORM_PACKAGES) {
+			if (packageName.equals(platformPackage) || packageName.startsWith(platformPackage + '.')) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @param name the full name of the class
+	 * @return the package name of the class, empty for the default package
+	 */
+	private static String getPackageName(String name) {
+		final int lastDot = name.lastIndexOf('.');
+		return lastDot > 0 ? name.substring(0, lastDot) : "";
+	}
+	
+	/**
+	 * @return the index this class loader routes lookups by, or {@code null} if it uses the default parent-first delegation
+	 */
+	public ClassIndex getIndex() {
+		return index;
 	}
 	
 	/**
@@ -96,16 +192,21 @@ public class JarClassLoader extends URLClassLoader {
 	/**
 	 * @param name the full name of the class
 	 * @return the class if parent ClassLoader contains the class, null otherwise.
+	 * @deprecated only sees classes loaded by a parent {@link JarClassLoader}, use {@link ClassIndex} instead
 	 */
+	@Deprecated
 	public Class<?> getParentLoadedClass(String name) {
-		return parent.getLoadedClass(name);
+		final ClassLoader parentLoader = getParent();
+		return parentLoader instanceof JarClassLoader ? ((JarClassLoader) parentLoader).getLoadedClass(name) : null;
 	}
 	
 	/**
 	 * @param name the full name of the class
 	 * @return {@code true} if parent ClassLoader contains the class, {@code false} otherwise.
+	 * @deprecated only sees classes loaded by a parent {@link JarClassLoader}, use {@link ClassIndex} instead
 	 */
+	@Deprecated
 	public boolean hasParentLoadedClass(String name) {
-		return parent.hasLoadedClass(name);
+		return getParentLoadedClass(name) != null;
 	}
 }
@@ -3,7 +3,9 @@ package com.github.unafraid.plugins.util;
 /**
  * Simple ClassLoader that allows looking up loaded class by name
  * @author UnAfraid
+ * @deprecated only sees classes defined by itself, use {@link ClassIndex} instead
  */
+@Deprecated
 public class ObservableClassLoader extends ClassLoader {
 	public ObservableClassLoader(ClassLoader parent) {
 		super(parent);
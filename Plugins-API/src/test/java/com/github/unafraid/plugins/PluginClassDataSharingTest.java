@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author UnAfraid
+ */
+public class PluginClassDataSharingTest {
+	private Path pluginsPath;
+	
+	@Before
+	public void createPluginsPath() throws Exception {
+		pluginsPath = Files.createTempDirectory("plugins");
+	}
+	
+	@After
+	public void deletePluginsPath() throws Exception {
+		PluginJarBuilder.delete(pluginsPath);
+	}
+	
+	@Test
+	public void parsesJavaVersions() {
+		Assert.assertEquals(8, PluginClassDataSharing.getJavaVersion("1.8"));
+		Assert.assertEquals(9, PluginClassDataSharing.getJavaVersion("9"));
+		Assert.assertEquals(11, PluginClassDataSharing.getJavaVersion("11"));
+		Assert.assertEquals(17, PluginClassDataSharing.getJavaVersion("17.0"));
+	}
+	
+	@Test
+	public void noOptionsBeforeJava13() throws Exception {
+		final PluginClassDataSharing classDataSharing = new PluginClassDataSharing(pluginsPath);
+		Assert.assertEquals(Collections.emptyList(), classDataSharing.getJvmOptions(8));
+		Assert.assertEquals(Collections.emptyList(), classDataSharing.getJvmOptions(12));
+	}
+	
+	@Test
+	public void createsArchiveAtExitUntilItExists() throws Exception {
+		final PluginClassDataSharing classDataSharing = new PluginClassDataSharing(pluginsPath);
+		final Path archiveFile = classDataSharing.getArchiveFile().toAbsolutePath();
+		Assert.assertEquals(Collections.singletonList("-XX:ArchiveClassesAtExit=" + archiveFile), classDataSharing.getJvmOptions(13));
+		Assert.assertEquals(Collections.singletonList("-XX:ArchiveClassesAtExit=" + archiveFile), classDataSharing.getJvmOptions(18));
+		
+		Files.createDirectories(archiveFile.getParent());
+		Files.createFile(archiveFile);
+		Assert.assertEquals(Collections.singletonList("-XX:SharedArchiveFile=" + archiveFile), classDataSharing.getJvmOptions(13));
+		Assert.assertEquals(Collections.singletonList("-XX:SharedArchiveFile=" + archiveFile), classDataSharing.getJvmOptions(18));
+	}
+	
+	@Test
+	public void autoCreatesArchiveSinceJava19() throws Exception {
+		final PluginClassDataSharing classDataSharing = new PluginClassDataSharing(pluginsPath);
+		final Path archiveFile = classDataSharing.getArchiveFile().toAbsolutePath();
+		Assert.assertEquals(Arrays.asList("-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=" + archiveFile), classDataSharing.getJvmOptions(19));
+		
+		Files.createDirectories(archiveFile.getParent());
+		Files.createFile(archiveFile);
+		Assert.assertEquals(Arrays.asList("-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=" + archiveFile), classDataSharing.getJvmOptions(21));
+	}
+	
+	@Test
+	public void fingerprintChangesWithTheJars() throws Exception {
+		final Path jar = pluginsPath.resolve("plugin.jar");
+		Files.write(jar, "first".getBytes(StandardCharsets.UTF_8));
+		final PluginClassDataSharing classDataSharing = new PluginClassDataSharing(pluginsPath);
+		final String fingerprint = classDataSharing.getFingerprint();
+		Assert.assertEquals(fingerprint, new PluginClassDataSharing(pluginsPath).getFingerprint());
+		
+		Files.write(jar, "second".getBytes(StandardCharsets.UTF_8));
+		Assert.assertNotEquals(fingerprint, new PluginClassDataSharing(pluginsPath).getFingerprint());
+		// Computed once per instance
+		Assert.assertEquals(fingerprint, classDataSharing.getFingerprint());
+		
+		Files.write(jar, "first".getBytes(StandardCharsets.UTF_8));
+		Files.createDirectories(pluginsPath.resolve(PluginRepository.LIBRARIES_DIRECTORY));
+		Files.write(pluginsPath.resolve(PluginRepository.LIBRARIES_DIRECTORY).resolve("library.jar"), "library".getBytes(StandardCharsets.UTF_8));
+		Assert.assertNotEquals(fingerprint, new PluginClassDataSharing(pluginsPath).getFingerprint());
+	}
+	
+	@Test
+	public void deletesArchivesOfOtherFingerprints() throws Exception {
+		final PluginClassDataSharing classDataSharing = new PluginClassDataSharing(pluginsPath);
+		Assert.assertEquals(0, classDataSharing.deleteStaleArchives());
+		
+		final Path archivePath = classDataSharing.getArchiveFile().getParent();
+		Files.createDirectories(archivePath);
+		for (String file : Arrays.asList("plugins-0123456789abcdef.jsa", "plugins-0123456789abcdef.classlist", "plugins-other.txt", "readme.jsa")) {
+			Files.createFile(archivePath.resolve(file));
+		}
+		Files.createFile(classDataSharing.getArchiveFile());
+		Files.createFile(classDataSharing.getClassListFile());
+		
+		Assert.assertEquals(2, classDataSharing.deleteStaleArchives());
+		
+		final Set<String> files = new TreeSet<>();
+		try (Stream<Path> stream = Files.list(archivePath)) {
+			stream.forEach(file -> files.add(file.getFileName().toString()));
+		}
+		Assert.assertEquals(new TreeSet<>(Arrays.asList(classDataSharing.getArchiveFile().getFileName().toString(), classDataSharing.getClassListFile().getFileName().toString(), "plugins-other.txt", "readme.jsa")), files);
+	}
+	
+	@Test
+	public void classListRoundTrip() throws Exception {
+		//@formatter:off
+		new PluginJarBuilder()
+			.addClass("test.cds.Helper", "package test.cds; public class Helper { }")
+			.addClass("test.cds.Unused", "package test.cds; public class Unused { }")
+			.addPlugin("test.cds.CdsPlugin", "CdsPlugin", 1, "public CdsPlugin() { new Helper(); init(); }")
+			.build(pluginsPath.resolve("cds.jar"));
+		//@formatter:on
+		
+		final PluginRepository<AbstractPlugin> repository = new PluginRepository<>(pluginsPath, null);
+		repository.scan(AbstractPlugin.class);
+		final AbstractPlugin plugin = repository.getAvailablePlugin("CdsPlugin");
+		Assert.assertNotNull(plugin);
+		
+		final PluginClassDataSharing classDataSharing = new PluginClassDataSharing(pluginsPath);
+		Assert.assertEquals(Collections.emptyMap(), classDataSharing.readClassList());
+		classDataSharing.writeClassList(repository);
+		
+		final Map<String, Set<String>> classes = classDataSharing.readClassList();
+		Assert.assertEquals(Collections.singleton(plugin.getJarHash()), classes.keySet());
+		Assert.assertEquals(new TreeSet<>(Arrays.asList("test.cds.CdsPlugin", "test.cds.Helper")), classes.get(plugin.getJarHash()));
+		
+		repository.unload(plugin);
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+import com.github.unafraid.plugins.conditions.PluginConditions;
+import com.github.unafraid.plugins.installers.file.FileInstaller;
+import com.github.unafraid.plugins.migrations.PluginMigrations;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author UnAfraid
+ */
+public class PluginIndexGeneratorTest {
+	@Test
+	public void generatesIndexOfCompiledPlugins() throws Exception {
+		final Path classes = Paths.get(IndexedPlugin.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		final Path output = Files.createTempDirectory("plugin-index");
+		try {
+			PluginIndexGenerator.main(new String[]{output.toString(), classes.toString()});
+			
+			final List<PluginDescriptor> descriptors;
+			try (InputStream input = Files.newInputStream(output.resolve(PluginDescriptor.INDEX_RESOURCE))) {
+				descriptors = PluginDescriptor.read(input);
+			}
+			
+			final Optional<PluginDescriptor> descriptor = descriptors.stream().filter(d -> d.getClassName().equals(IndexedPlugin.class.getName())).findFirst();
+			Assert.assertTrue(descriptor.isPresent());
+			Assert.assertEquals("IndexedPlugin", descriptor.get().getName());
+			Assert.assertEquals(3, descriptor.get().getVersion());
+			Assert.assertTrue(descriptor.get().isInstanceOf(AbstractPlugin.class));
+			Assert.assertTrue(descriptor.get().isInstanceOf(IndexedPlugin.class));
+			Assert.assertFalse(descriptor.get().isInstanceOf(Runnable.class));
+		}
+		finally {
+			Files.deleteIfExists(output.resolve(PluginDescriptor.INDEX_RESOURCE));
+			Files.deleteIfExists(output.resolve(PluginDescriptor.INDEX_RESOURCE).getParent());
+			Files.delete(output);
+		}
+	}
+	
+	@Test
+	public void lazyScanSkipsOtherPluginTypes() throws Exception {
+		final Path pluginsPath = Files.createTempDirectory("plugins");
+		final Path jar = pluginsPath.resolve("plugins.jar");
+		try {
+			final PluginDescriptor plugin = new PluginDescriptor("test.MatchingPlugin", "MatchingPlugin", null, null, null, 1, 0, Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), Collections.singleton(AbstractPlugin.class.getName()));
+			final PluginDescriptor otherPlugin = new PluginDescriptor("test.OtherPlugin", "OtherPlugin", null, null, null, 1, 0, Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), Collections.singleton("test.OtherPluginBase"));
+			try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+				out.putNextEntry(new JarEntry(PluginDescriptor.INDEX_RESOURCE));
+				PluginDescriptor.write(Arrays.asList(plugin, otherPlugin), out);
+				out.closeEntry();
+			}
+			
+			final PluginRepository<AbstractPlugin> repository = new PluginRepository<>(pluginsPath, null);
+			repository.setLazyInstantiation(true);
+			repository.scan(AbstractPlugin.class);
+			
+			final List<String> names = repository.getPluginDescriptors().map(PluginDescriptor::getName).collect(Collectors.toList());
+			Assert.assertTrue(names.contains("MatchingPlugin"));
+			Assert.assertFalse(names.contains("OtherPlugin"));
+		}
+		finally {
+			Files.deleteIfExists(jar);
+			Files.delete(pluginsPath);
+		}
+	}
+	
+	public static class IndexedPlugin extends AbstractPlugin {
+		@Override
+		public String getName() {
+			return "IndexedPlugin";
+		}
+		
+		@Override
+		public String getAuthor() {
+			return "UnAfraid";
+		}
+		
+		@Override
+		public String getCreatedAt() {
+			return "19.10.2026";
+		}
+		
+		@Override
+		public String getDescription() {
+			return "Plugin indexed by the test";
+		}
+		
+		@Override
+		public int getVersion() {
+			return 3;
+		}
+		
+		@Override
+		protected void setup(FileInstaller fileInstaller, PluginMigrations migrations, PluginConditions pluginConditions) {
+			// nothing to set up
+		}
+	}
+}
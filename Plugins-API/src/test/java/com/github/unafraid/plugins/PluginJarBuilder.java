@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Builds plugin JARs for the tests, out of sources compiled on the fly, so their classes are not on the class-path and get loaded by the plugin class loaders.
+ * @author UnAfraid
+ */
+final class PluginJarBuilder {
+	private final Map<String, String> sources = new LinkedHashMap<>();
+	private final Map<String, String> resources = new LinkedHashMap<>();
+	private boolean indexed;
+	
+	/**
+	 * Adds a class.
+	 * @param className the fully qualified class name
+	 * @param source the source code
+	 * @return this builder
+	 */
+	PluginJarBuilder addClass(String className, String source) {
+		sources.put(className, source);
+		return this;
+	}
+	
+	/**
+	 * Adds a plugin class, registered as a {@link java.util.ServiceLoader} provider of {@link AbstractPlugin}.
+	 * @param className the fully qualified class name
+	 * @param name the plugin's name
+	 * @param version the plugin's version
+	 * @param members additional members of the class, e.g. a constructor
+	 * @return this builder
+	 */
+	PluginJarBuilder addPlugin(String className, String name, int version, String members) {
+		final int dot = className.lastIndexOf('.');
+		//@formatter:off
+		addClass(className, "package " + className.substring(0, dot) + ";\n"
+			+ "public class " + className.substring(dot + 1) + " extends com.github.unafraid.plugins.AbstractPlugin {\n"
+			+ members + "\n"
+			+ "public String getName() { return \"" + name + "\"; }\n"
+			+ "public String getAuthor() { return \"UnAfraid\"; }\n"
+			+ "public String getCreatedAt() { return \"19.10.2026\"; }\n"
+			+ "public String getDescription() { return \"Plugin built by the test\"; }\n"
+			+ "public int getVersion() { return " + version + "; }\n"
+			+ "protected void setup(com.github.unafraid.plugins.installers.file.FileInstaller fileInstaller, com.github.unafraid.plugins.migrations.PluginMigrations migrations, com.github.unafraid.plugins.conditions.PluginConditions pluginConditions) { }\n"
+			+ "}\n");
+		//@formatter:on
+		final String service = "META-INF/services/" + AbstractPlugin.class.getName();
+		resources.merge(service, className + "\n", String::concat);
+		return this;
+	}
+	
+	/**
+	 * Adds a resource.
+	 * @param name the resource name
+	 * @param content the content
+	 * @return this builder
+	 */
+	PluginJarBuilder addResource(String name, String content) {
+		resources.put(name, content);
+		return this;
+	}
+	
+	/**
+	 * Generates the {@value PluginDescriptor#INDEX_RESOURCE} of the plugins with {@link PluginIndexGenerator}, so the JAR can be scanned lazily.
+	 * @return this builder
+	 */
+	PluginJarBuilder indexed() {
+		indexed = true;
+		return this;
+	}
+	
+	/**
+	 * Compiles the classes and writes the JAR.
+	 * @param jar the JAR file
+	 * @return the JAR file
+	 * @throws Exception
+	 */
+	Path build(Path jar) throws Exception {
+		final Path classes = Files.createTempDirectory("plugin-classes");
+		try {
+			compile(classes);
+			
+			final Map<String, byte[]> entries = new LinkedHashMap<>();
+			try (Stream<Path> stream = Files.walk(classes)) {
+				for (Path file : stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+					entries.put(classes.relativize(file).toString().replace(File.separatorChar, '/'), Files.readAllBytes(file));
+				}
+			}
+			resources.forEach((name, content) -> entries.put(name, content.getBytes(StandardCharsets.UTF_8)));
+			
+			if (indexed) {
+				final List<PluginDescriptor> descriptors;
+				try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, AbstractPlugin.class.getClassLoader())) {
+					descriptors = PluginIndexGenerator.generate(Collections.singleton(classes), classLoader);
+				}
+				
+				final Path index = Files.createTempFile("plugin-index", null);
+				try {
+					try (OutputStream output = Files.newOutputStream(index)) {
+						PluginDescriptor.write(descriptors, output);
+					}
+					entries.put(PluginDescriptor.INDEX_RESOURCE, Files.readAllBytes(index));
+				}
+				finally {
+					Files.delete(index);
+				}
+			}
+			
+			Files.createDirectories(jar.toAbsolutePath().getParent());
+			try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+				for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+					out.putNextEntry(new JarEntry(entry.getKey()));
+					out.write(entry.getValue());
+					out.closeEntry();
+				}
+			}
+			return jar;
+		}
+		finally {
+			delete(classes);
+		}
+	}
+	
+	/**
+	 * Compiles the classes against the class-path of the tests.
+	 * @param output the class output directory
+	 * @throws IOException
+	 */
+	private void compile(Path output) throws IOException {
+		if (sources.isEmpty()) {
+			return;
+		}
+		
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IllegalStateException("The tests have to run on a JDK to compile plugins");
+		}
+		
+		final List<JavaFileObject> units = new ArrayList<>();
+		sources.forEach((className, source) -> units.add(new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE)
+		{
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return source;
+			}
+		}));
+		
+		final String classPath = getCodeSource(AbstractPlugin.class) + File.pathSeparator + System.getProperty("java.class.path");
+		try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+			final List<String> options = new ArrayList<>();
+			options.add("-classpath");
+			options.add(classPath);
+			options.add("-d");
+			options.add(output.toString());
+			if (!compiler.getTask(null, fileManager, null, options, null, units).call()) {
+				throw new IllegalStateException("Failed to compile " + sources.keySet());
+			}
+		}
+	}
+	
+	/**
+	 * @param clazz the class
+	 * @return the class directory or JAR the class was loaded from
+	 */
+	private static String getCodeSource(Class<?> clazz) {
+		try {
+			return Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+		}
+		catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Deletes a file or a directory along with its content.
+	 * @param path the file or directory
+	 * @throws IOException
+	 */
+	static void delete(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			return;
+		}
+		
+		try (Stream<Path> stream = Files.walk(path)) {
+			for (Path file : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(file);
+			}
+		}
+	}
+}
@@ -0,0 +1,503 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.unafraid.plugins.exceptions.PluginException;
+import com.github.unafraid.plugins.util.JarClassLoader;
+
+/**
+ * @author UnAfraid
+ */
+public class PluginRepositoryTest {
+	/** The constructor of the plugins built by the tests, reporting to {@link #onConstruct(String)}. **/
+	private static final String CONSTRUCTOR = "{ com.github.unafraid.plugins.PluginRepositoryTest.onConstruct(getName()); init(); }";
+	private static final List<String> CONSTRUCTED = Collections.synchronizedList(new ArrayList<>());
+	private static final Map<String, Runnable> CONSTRUCTOR_HOOKS = new ConcurrentHashMap<>();
+	private static final List<String> EVENTS = Collections.synchronizedList(new ArrayList<>());
+	//@formatter:off
+	private static final String WARM_PLUGIN = "public WarmPlugin() { registerFunction(new Function(\"working\")); registerFunction(new Function(\"broken\")); init(); }\n"
+		+ "public class Function implements com.github.unafraid.plugins.IPluginFunction<WarmPlugin> {\n"
+		+ "private final String name;\n"
+		+ "Function(String name) { this.name = name; }\n"
+		+ "public void onStart() { }\n"
+		+ "public void onStop() { }\n"
+		+ "public void onWarmUp() { if (name.equals(\"broken\")) { throw new IllegalStateException(name); } com.github.unafraid.plugins.PluginRepositoryTest.onEvent(\"warmed up \" + name); }\n"
+		+ "public WarmPlugin getPlugin() { return WarmPlugin.this; }\n"
+		+ "}";
+	//@formatter:on
+	private static final String SHARED_CLASS = "public Class<?> getShared() throws Exception { return Class.forName(\"test.lib.Shared\"); }";
+	
+	private Path pluginsPath;
+	
+	@Before
+	public void createPluginsPath() throws Exception {
+		pluginsPath = Files.createTempDirectory("plugins");
+	}
+	
+	@After
+	public void deletePluginsPath() throws Exception {
+		CONSTRUCTED.clear();
+		CONSTRUCTOR_HOOKS.clear();
+		EVENTS.clear();
+		PluginJarBuilder.delete(pluginsPath);
+	}
+	
+	@Test
+	public void pluginsShareLibraryClasses() throws Exception {
+		new PluginJarBuilder().addClass("test.lib.Shared", "package test.lib; public class Shared { }").build(pluginsPath.resolve(PluginRepository.LIBRARIES_DIRECTORY).resolve("shared.jar"));
+		new PluginJarBuilder().addPlugin("test.first.FirstPlugin", "FirstPlugin", 1, SHARED_CLASS).build(pluginsPath.resolve("first.jar"));
+		new PluginJarBuilder().addPlugin("test.second.SecondPlugin", "SecondPlugin", 1, SHARED_CLASS).build(pluginsPath.resolve("second.jar"));
+		
+		final PluginRepository<AbstractPlugin> repository = new PluginRepository<>(pluginsPath, null);
+		repository.scan(AbstractPlugin.class);
+		
+		final ClassLoader libraryClassLoader = repository.getLibraryClassLoader();
+		Assert.assertNotNull(libraryClassLoader);
+		
+		final AbstractPlugin first = repository.getAvailablePlugin("FirstPlugin");
+		final AbstractPlugin second = repository.getAvailablePlugin("SecondPlugin");
+		Assert.assertNotSame(repository.getClassLoader(first), repository.getClassLoader(second));
+		Assert.assertSame(libraryClassLoader, repository.getClassLoader(first).getParent());
+		Assert.assertSame(libraryClassLoader, repository.getClassLoader(second).getParent());
+		
+		final Class<?> shared = getShared(first);
+		Assert.assertSame(libraryClassLoader, shared.getClassLoader());
+		Assert.assertSame(shared, getShared(second));
+		
+		// Libraries are loaded once, rescanning keeps the same class loader
+		repository.scan(AbstractPlugin.class);
+		Assert.assertSame(libraryClassLoader, repository.getLibraryClassLoader());
+		
+		repository.unload("FirstPlugin");
+		repository.unload("SecondPlugin");
+	}
+	
+	@Test
+	public void noLibraryClassLoaderWithoutLibraries() throws Exception {
+		new PluginJarBuilder().addPlugin("test.first.FirstPlugin", "FirstPlugin", 1, "").build(pluginsPath.resolve("first.jar"));
+		
+		final PluginRepository<AbstractPlugin> repository = new PluginRepository<>(pluginsPath, null);
+		repository.scan(AbstractPlugin.class);
+		
+		Assert.assertNull(repository.getLibraryClassLoader());
+		final AbstractPlugin first = repository.getAvailablePlugin("FirstPlugin");
+		Assert.assertSame(ClassLoader.getSystemClassLoader(), repository.getClassLoader(first).getParent());
+		repository.unload(first);
+	}
+	
+	@Test
+	public void lazyScanInstantiatesOnFirstUse() throws Exception {
+		//@formatter:off
+		new PluginJarBuilder()
+			.addPlugin("test.lazy.FirstPlugin", "LazyFirst", 1, "public FirstPlugin() " + CONSTRUCTOR)
+			.addPlugin("test.lazy.SecondPlugin", "LazySecond", 1, "public SecondPlugin() " + CONSTRUCTOR)
+			.indexed()
+			.build(pluginsPath.resolve("lazy.jar"));
+		//@formatter:on
+		CONSTRUCTED.clear();
+		
+		final PluginRepository<AbstractPlugin> repository = new PluginRepository<>(pluginsPath, null);
+		repository.setLazyInstantiation(true);
+		final AtomicReference<AbstractPlugin> ownLookup = new AtomicReference<>();
+		CONSTRUCTOR_HOOKS.put("LazyFirst", () -> ownLookup.set(repository.getAvailablePlugin("LazyFirst")));
+		repository.scan(AbstractPlugin.class);
+		
+		Assert.assertEquals(Collections.emptyList(), CONSTRUCTED);
+		Assert.assertEquals(Arrays.asList("LazyFirst", "LazySecond"), repository.getPluginDescriptors().map(PluginDescriptor::getName).collect(Collectors.toList()));
+		Assert.assertTrue(repository.getAllPlugins().isEmpty());
+		
+		final AbstractPlugin first = repository.getAvailablePlugin("LazyFirst");
+		Assert.assertNotNull(first);
+		Assert.assertEquals("test.lazy.FirstPlugin", first.getClass().getName());
+		Assert.assertEquals(Collections.singletonList("LazyFirst"), CONSTRUCTED);
+		// Looked up by its own constructor, before it is registered
+		Assert.assertNull(ownLookup.get());
+		
+		Assert.assertSame(first, repository.getAvailablePlugin("LazyFirst"));
+		Assert.assertEquals(Collections.singletonList("LazyFirst"), CONSTRUCTED);
+		
+		final AbstractPlugin second = repository.getAvailablePlugin("LazySecond");
+		Assert.assertSame(repository.getClassLoader(first), repository.getClassLoader(second));
+		Assert.assertEquals(Arrays.asList("LazyFirst", "LazySecond"), CONSTRUCTED);
+		
+		repository.unload(first);
+		repository.unload(second);
+	}
+	
+	@Test
+	public void concurrentLookupsWaitForTheInstantiation() throws Exception {
+		new PluginJarBuilder().addPlugin("test.lazy.SlowPlugin", "LazySlow", 1, "public SlowPlugin() " + CONSTRUCTOR).indexed().build(pluginsPath.resolve("slow.jar"));
+		CONSTRUCTED.clear();
+		
+		final PluginRepository<AbstractPlugin> repository = new PluginRepository<>(pluginsPath, null);
+		repository.setLazyInstantiation(true);
+		repository.scan(AbstractPlugin.class);
+		
+		final CountDownLatch constructing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		CONSTRUCTOR_HOOKS.put("LazySlow", () ->
+		{
+			constructing.countDown();
+			try {
+				release.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<AbstractPlugin>> lookups = new ArrayList<>();
+			lookups.add(executor.submit(() -> repository.getAvailablePlugin("LazySlow")));
+			Assert.assertTrue(constructing.await(10, TimeUnit.SECONDS));
+			for (int i = 0; i < 3; i++) {
+				lookups.add(executor.submit(() -> repository.getAvailablePlugin("LazySlow")));
+			}
+			
+			// The other lookups wait for the constructor instead of missing the plugin
+			Thread.sleep(100);
+			for (Future<AbstractPlugin> lookup : lookups) {
+				Assert.assertFalse(lookup.isDone());
+			}
+			release.countDown();
+			
+			final AbstractPlugin plugin = lookups.get(0).get(10, TimeUnit.SECONDS);
+			Assert.assertNotNull(plugin);
+			for (Future<AbstractPlugin> lookup : lookups) {
+				Assert.assertSame(plugin, lookup.get(10, TimeUnit.SECONDS));
+			}
+			Assert.assertEquals(Collections.singletonList("LazySlow"), CONSTRUCTED);
+			repository.unload(plugin);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void constructorsLookUpPluginsOfOtherJars() throws Exception {
+		//@formatter:off
+		new PluginJarBuilder()
+			.addPlugin("test.first.FirstPlugin", "CrossFirst", 1, "public FirstPlugin() " + CONSTRUCTOR)
+			.addPlugin("test.first.OtherPlugin", "CrossFirstOther", 1, "public OtherPlugin() " + CONSTRUCTOR)
+			.indexed()
+			.build(pluginsPath.resolve("first.jar"));
+		new PluginJarBuilder()
+			.addPlugin("test.second.SecondPlugin", "CrossSecond", 1, "public SecondPlugin() " + CONSTRUCTOR)
+			.addPlugin("test.second.OtherPlugin", "CrossSecondOther", 1, "public OtherPlugin() " + CONSTRUCTOR)
+			.indexed()
+			.build(pluginsPath.resolve("second.jar"));
+		//@formatter:on
+		
+		final PluginRepository<AbstractPlugin> repository = new PluginRepository<>(pluginsPath, null);
+		repository.setLazyInstantiation(true);
+		repository.scan(AbstractPlugin.class);
+		
+		// Both constructors run at once, each looking up a plugin of the other one's JAR
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+		final Map<String, AbstractPlugin> lookups = new ConcurrentHashMap<>();
+		CONSTRUCTOR_HOOKS.put("CrossFirst", () -> lookups.put("CrossFirst", crossLookup(barrier, repository, "CrossSecondOther")));
+		CONSTRUCTOR_HOOKS.put("CrossSecond", () -> lookups.put("CrossSecond", crossLookup(barrier, repository, "CrossFirstOther")));
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(2, runnable ->
+		{
+			final Thread thread = new Thread(runnable);
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			final CompletableFuture<AbstractPlugin> first = CompletableFuture.supplyAsync(() -> repository.getAvailablePlugin("CrossFirst"), executor);
+			final CompletableFuture<AbstractPlugin> second = CompletableFuture.supplyAsync(() -> repository.getAvailablePlugin("CrossSecond"), executor);
+			Assert.assertNotNull(first.get(10, TimeUnit.SECONDS));
+			Assert.assertNotNull(second.get(10, TimeUnit.SECONDS));
+			Assert.assertEquals("CrossSecondOther", lookups.get("CrossFirst").getName());
+			Assert.assertEquals("CrossFirstOther", lookups.get("CrossSecond").getName());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		
+		repository.unload("CrossFirst");
+		repository.unload("CrossFirstOther");
+		repository.unload("CrossSecond");
+		repository.unload("CrossSecondOther");
+	}
+	
+	@Test
+	public void warmUpPreloadsHotClassesAndWarmsUpStartedPlugins() throws Exception {
+		final PluginRepository<AbstractPlugin> repository = scanWarmPlugin();
+		final AbstractPlugin plugin = repository.getAvailablePlugin("WarmPlugin");
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			repository.warmUp(executor, Collections.singletonMap(plugin.getJarHash(), Collections.singleton("test.warm.Hot"))).get(10, TimeUnit.SECONDS);
+			Assert.assertEquals(Collections.singletonList("initialized Hot"), EVENTS);
+			
+			EVENTS.clear();
+			repository.startAll();
+			// The broken function does not stop the warm-up
+			repository.warmUp(executor, Collections.singletonMap(plugin.getJarHash(), Collections.emptySet())).get(10, TimeUnit.SECONDS);
+			Assert.assertEquals(Collections.singletonList("warmed up working"), EVENTS);
+		}
+		finally {
+			executor.shutdownNow();
+			repository.unload(plugin);
+		}
+	}
+	
+	@Test
+	public void warmUpPreloadsAllClassesOfUnrecordedJars() throws Exception {
+		final PluginRepository<AbstractPlugin> repository = scanWarmPlugin();
+		final AbstractPlugin plugin = repository.getAvailablePlugin("WarmPlugin");
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			// Not started, so only the classes are preloaded
+			repository.warmUp(executor).get(10, TimeUnit.SECONDS);
+			Assert.assertEquals(Arrays.asList("initialized Cold", "initialized Hot"), EVENTS.stream().sorted().collect(Collectors.toList()));
+			
+			final JarClassLoader classLoader = (JarClassLoader) repository.getClassLoader(plugin);
+			Assert.assertTrue(classLoader.getDefinedClasses().containsAll(Arrays.asList("test.warm.Cold", "test.warm.Hot", "test.warm.WarmPlugin$Function")));
+		}
+		finally {
+			executor.shutdownNow();
+			repository.unload(plugin);
+		}
+	}
+	
+	private PluginRepository<AbstractPlugin> scanWarmPlugin() throws Exception {
+		//@formatter:off
+		new PluginJarBuilder()
+			.addClass("test.warm.Hot", "package test.warm; public class Hot { static { com.github.unafraid.plugins.PluginRepositoryTest.onEvent(\"initialized Hot\"); } }")
+			.addClass("test.warm.Cold", "package test.warm; public class Cold { static { com.github.unafraid.plugins.PluginRepositoryTest.onEvent(\"initialized Cold\"); } }")
+			.addPlugin("test.warm.WarmPlugin", "WarmPlugin", 1, WARM_PLUGIN)
+			.build(pluginsPath.resolve("warm.jar"));
+		//@formatter:on
+		
+		final PluginRepository<AbstractPlugin> repository = new PluginRepository<>(pluginsPath, null);
+		repository.scan(AbstractPlugin.class);
+		Assert.assertNotNull(repository.getAvailablePlugin("WarmPlugin"));
+		Assert.assertEquals(Collections.emptyList(), EVENTS);
+		return repository;
+	}
+	
+	/**
+	 * Invoked by the classes built by the tests.
+	 * @param event what happened
+	 */
+	public static void onEvent(String event) {
+		EVENTS.add(event);
+	}
+	
+	@Test
+	public void looksUpVersionsByVersionAndJarHash() throws Exception {
+		final PluginRepository<AbstractPlugin> repository = scanRoutedPlugins(1, 2, 3);
+		final List<AbstractPlugin> versions = repository.getAvailablePluginVersions("routed").collect(Collectors.toList());
+		Assert.assertEquals(Arrays.asList(3, 2, 1), versions.stream().map(AbstractPlugin::getVersion).collect(Collectors.toList()));
+		Assert.assertSame(versions.get(0), repository.getAvailablePlugin("Routed"));
+		
+		for (AbstractPlugin version : versions) {
+			Assert.assertSame(version, repository.getAvailablePlugin("Routed", version.getVersion()));
+			Assert.assertSame(version, repository.getAvailablePlugin("ROUTED", version.getJarHash()));
+		}
+		Assert.assertNull(repository.getAvailablePlugin("Routed", 4));
+		Assert.assertNull(repository.getAvailablePlugin("Routed", "unknown"));
+		
+		final Map<String, AbstractPlugin> allVersions = repository.getAllPlugins().get("routed");
+		Assert.assertEquals(3, allVersions.size());
+		try {
+			allVersions.remove(versions.get(0).getJarHash());
+			Assert.fail();
+		}
+		catch (UnsupportedOperationException e) {
+			// expected, versions are replaced as a whole
+		}
+		unloadAll(repository);
+	}
+	
+	@Test
+	public void routesCanaryShareOnceStarted() throws Exception {
+		final PluginRepository<AbstractPlugin> repository = scanRoutedPlugins(1, 2);
+		final AbstractPlugin active = repository.getAvailablePlugin("Routed", 1);
+		final AbstractPlugin canary = repository.getAvailablePlugin("Routed", 2);
+		repository.setActiveVersion(active);
+		Assert.assertSame(active, repository.getAvailablePlugin("Routed"));
+		
+		try {
+			repository.setCanaryVersion(active, 50);
+			Assert.fail();
+		}
+		catch (PluginException e) {
+			// expected, the active version cannot be its own canary
+		}
+		
+		repository.setCanaryVersion(canary, 50);
+		Assert.assertEquals(Collections.singleton(active), routeKeys(repository));
+		
+		canary.setState(PluginState.INITIALIZED, PluginState.INSTALLED);
+		canary.start();
+		Assert.assertEquals(new HashSet<>(Arrays.asList(active, canary)), routeKeys(repository));
+		for (int key = 0; key < 100; key++) {
+			Assert.assertSame(repository.route("Routed", key), repository.route("Routed", key));
+		}
+		Assert.assertSame(active, repository.getAvailablePlugin("Routed"));
+		Assert.assertEquals(Arrays.asList(active, canary), repository.getActivePlugins().collect(Collectors.toList()));
+		
+		repository.setCanaryVersion(canary, 100);
+		Assert.assertEquals(Collections.singleton(canary), routeKeys(repository));
+		
+		repository.clearCanaryVersion("Routed");
+		Assert.assertEquals(Collections.singleton(active), routeKeys(repository));
+		
+		// Activating the canary completes its rollout
+		repository.setCanaryVersion(canary, 10);
+		repository.setActiveVersion(canary);
+		Assert.assertSame(canary, repository.getAvailablePlugin("Routed"));
+		Assert.assertEquals(Collections.singleton(canary), routeKeys(repository));
+		unloadAll(repository);
+	}
+	
+	@Test
+	public void unloadingActiveVersionPromotesCanary() throws Exception {
+		final PluginRepository<AbstractPlugin> repository = scanRoutedPlugins(1, 2, 3);
+		final AbstractPlugin active = repository.getAvailablePlugin("Routed", 1);
+		final AbstractPlugin canary = repository.getAvailablePlugin("Routed", 2);
+		repository.setActiveVersion(active);
+		repository.setCanaryVersion(canary, 10);
+		
+		repository.unload(active);
+		Assert.assertNull(repository.getAvailablePlugin("Routed", 1));
+		// Not the newest version
+		Assert.assertSame(canary, repository.getAvailablePlugin("Routed"));
+		Assert.assertEquals(Collections.singleton(canary), routeKeys(repository));
+		
+		repository.unload(canary);
+		Assert.assertSame(repository.getAvailablePlugin("Routed", 3), repository.getAvailablePlugin("Routed"));
+		unloadAll(repository);
+	}
+	
+	@Test
+	public void upgradeReplacesRoutedVersion() throws Exception {
+		final PluginRepository<AbstractPlugin> repository = scanRoutedPlugins(1, 2);
+		final AbstractPlugin active = repository.getAvailablePlugin("Routed", 1);
+		repository.setActiveVersion(active);
+		active.setState(PluginState.INITIALIZED, PluginState.INSTALLED);
+		active.start();
+		
+		final Path jar = new PluginJarBuilder().addPlugin("test.route.RoutedPlugin", "Routed", 4, "public RoutedPlugin() { init(); }").build(pluginsPath.resolve("upgrades").resolve("routed-4.jar"));
+		final AbstractPlugin upgrade = repository.upgrade(AbstractPlugin.class, active, jar);
+		Assert.assertEquals(4, upgrade.getVersion());
+		Assert.assertEquals(PluginState.STARTED, upgrade.getState());
+		Assert.assertEquals(PluginState.INSTALLED, active.getState());
+		
+		// The upgrade takes over the routing of the version it replaces, rather than the newest one being picked
+		Assert.assertSame(upgrade, repository.getAvailablePlugin("Routed"));
+		Assert.assertSame(upgrade, repository.getAvailablePlugin("Routed", upgrade.getJarHash()));
+		Assert.assertNull(repository.getAvailablePlugin("Routed", active.getJarHash()));
+		Assert.assertNull(repository.getClassLoader(active));
+		Assert.assertEquals(Arrays.asList(4, 2), repository.getAvailablePluginVersions("Routed").map(AbstractPlugin::getVersion).collect(Collectors.toList()));
+		
+		try {
+			repository.upgrade(AbstractPlugin.class, active, jar);
+			Assert.fail();
+		}
+		catch (PluginException e) {
+			// expected, the replaced version is no longer loaded
+		}
+		unloadAll(repository);
+	}
+	
+	private PluginRepository<AbstractPlugin> scanRoutedPlugins(int... versions) throws Exception {
+		for (int version : versions) {
+			new PluginJarBuilder().addPlugin("test.route.RoutedPlugin", "Routed", version, "public RoutedPlugin() { init(); }").build(pluginsPath.resolve("routed-" + version + ".jar"));
+		}
+		
+		final PluginRepository<AbstractPlugin> repository = new PluginRepository<>(pluginsPath, null);
+		repository.scan(AbstractPlugin.class);
+		Assert.assertEquals(versions.length, repository.getAvailablePluginVersions("Routed").count());
+		return repository;
+	}
+	
+	private static Set<AbstractPlugin> routeKeys(PluginRepository<AbstractPlugin> repository) {
+		final Set<AbstractPlugin> routed = new HashSet<>();
+		for (int key = 0; key < 100; key++) {
+			routed.add(repository.route("Routed", key));
+		}
+		return routed;
+	}
+	
+	private static void unloadAll(PluginRepository<AbstractPlugin> repository) throws PluginException {
+		for (String name : new ArrayList<>(repository.getAllPlugins().keySet())) {
+			repository.unload(name);
+		}
+	}
+	
+	/**
+	 * Invoked by the constructors of the plugins built by the tests.
+	 * @param name the plugin's name
+	 */
+	public static void onConstruct(String name) {
+		CONSTRUCTED.add(name);
+		final Runnable hook = CONSTRUCTOR_HOOKS.get(name);
+		if (hook != null) {
+			hook.run();
+		}
+	}
+	
+	private static AbstractPlugin crossLookup(CyclicBarrier barrier, PluginRepository<AbstractPlugin> repository, String name) {
+		try {
+			barrier.await(10, TimeUnit.SECONDS);
+		}
+		catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		return repository.getAvailablePlugin(name);
+	}
+	
+	private static Class<?> getShared(AbstractPlugin plugin) throws Exception {
+		return (Class<?>) plugin.getClass().getMethod("getShared").invoke(plugin);
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author UnAfraid
+ */
+public class PluginSupervisorTest {
+	//@formatter:off
+	private static final String SUPERVISED_PLUGIN = "public SupervisedPlugin() { registerFunction(new Function()); init(); }\n"
+		+ "public class Function implements com.github.unafraid.plugins.IPluginFunction<SupervisedPlugin> {\n"
+		+ "public void onStart() { }\n"
+		+ "public void onStop() { }\n"
+		+ "public boolean isHealthy() { return com.github.unafraid.plugins.PluginSupervisorTest.isHealthy(); }\n"
+		+ "public SupervisedPlugin getPlugin() { return SupervisedPlugin.this; }\n"
+		+ "}";
+	//@formatter:on
+	private static final AtomicInteger HEALTH_CHECKS = new AtomicInteger();
+	private static volatile BooleanSupplier health = () -> true;
+	
+	private Path pluginsPath;
+	private PluginRepository<AbstractPlugin> repository;
+	private ScheduledExecutorService executor;
+	
+	/**
+	 * Invoked by the health check of the plugins built by the tests.
+	 * @return whether the plugin is healthy
+	 */
+	public static boolean isHealthy() {
+		HEALTH_CHECKS.incrementAndGet();
+		return health.getAsBoolean();
+	}
+	
+	@Before
+	public void startPlugin() throws Exception {
+		executor = Executors.newSingleThreadScheduledExecutor();
+		pluginsPath = Files.createTempDirectory("plugins");
+		new PluginJarBuilder().addPlugin("test.supervised.SupervisedPlugin", "SupervisedPlugin", 1, SUPERVISED_PLUGIN).build(pluginsPath.resolve("supervised.jar"));
+		
+		repository = new PluginRepository<>(pluginsPath, null);
+		repository.scan(AbstractPlugin.class);
+		repository.startAll();
+	}
+	
+	@After
+	public void stopPlugin() throws Exception {
+		executor.shutdownNow();
+		if (repository != null) {
+			repository.getSupervisor().stop();
+			repository.unload("SupervisedPlugin");
+		}
+		HEALTH_CHECKS.set(0);
+		health = () -> true;
+		PluginJarBuilder.delete(pluginsPath);
+	}
+	
+	@Test
+	public void errorInHealthCheckIsUnhealthy() throws Exception {
+		final NoClassDefFoundError error = new NoClassDefFoundError("test/supervised/Missing");
+		health = () ->
+		{
+			throw error;
+		};
+		
+		final PluginSupervisor<AbstractPlugin> supervisor = repository.getSupervisor();
+		supervisor.check();
+		
+		final PluginHealth pluginHealth = supervisor.getHealth(repository.getAvailablePlugin("SupervisedPlugin"));
+		Assert.assertEquals(1, pluginHealth.getFailures());
+		Assert.assertSame(error, pluginHealth.getLastFailure());
+	}
+	
+	@Test
+	public void pollingSurvivesErrors() throws Exception {
+		health = () ->
+		{
+			throw new NoClassDefFoundError("test/supervised/Missing");
+		};
+		
+		final PluginSupervisor<AbstractPlugin> supervisor = repository.getSupervisor();
+		supervisor.setFailureThreshold(1);
+		supervisor.setBackoff(1, 1, TimeUnit.MILLISECONDS);
+		supervisor.start(executor, 1, TimeUnit.MILLISECONDS);
+		
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while ((HEALTH_CHECKS.get() < 5) && ((System.nanoTime() - deadline) < 0)) {
+			Thread.sleep(1);
+		}
+		Assert.assertTrue("Polling stopped after " + HEALTH_CHECKS.get() + " health check(s)", HEALTH_CHECKS.get() >= 5);
+		
+		final PluginHealth pluginHealth = supervisor.getHealth(repository.getAvailablePlugin("SupervisedPlugin"));
+		Assert.assertTrue(pluginHealth.getRestarts() > 0);
+		Assert.assertTrue(pluginHealth.getLastFailure() instanceof NoClassDefFoundError);
+	}
+}
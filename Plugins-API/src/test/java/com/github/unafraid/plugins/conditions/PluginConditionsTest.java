@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.conditions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.unafraid.plugins.AbstractPlugin;
+import com.github.unafraid.plugins.exceptions.PluginException;
+import com.github.unafraid.plugins.installers.file.FileInstaller;
+import com.github.unafraid.plugins.migrations.PluginMigrations;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author UnAfraid
+ */
+public class PluginConditionsTest {
+	private final List<String> tested = new CopyOnWriteArrayList<>();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+	
+	@After
+	public void tearDown() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void cachesSuccessfulResultsPerPlugin() throws Exception {
+		final PluginConditions conditions = new PluginConditions();
+		final TestCondition condition = new TestCondition("cached", 0, true);
+		condition.ttl = TimeUnit.HOURS.toMillis(1);
+		conditions.addCondition(ConditionType.START, condition);
+		
+		final TestPlugin plugin = new TestPlugin();
+		conditions.testConditions(ConditionType.START, plugin);
+		conditions.testConditions(ConditionType.START, plugin);
+		Assert.assertEquals(1, condition.calls.get());
+		
+		// Cached per condition type and plugin instance
+		conditions.addCondition(ConditionType.STOP, condition);
+		conditions.testConditions(ConditionType.STOP, plugin);
+		conditions.testConditions(ConditionType.START, new TestPlugin());
+		Assert.assertEquals(3, condition.calls.get());
+	}
+	
+	@Test
+	public void doesNotCacheFailures() throws Exception {
+		final PluginConditions conditions = new PluginConditions();
+		final TestCondition condition = new TestCondition("failing", 0, false);
+		condition.ttl = TimeUnit.HOURS.toMillis(1);
+		conditions.addCondition(ConditionType.START, condition);
+		
+		final TestPlugin plugin = new TestPlugin();
+		for (int i = 0; i < 2; i++) {
+			try {
+				conditions.testConditions(ConditionType.START, plugin);
+				Assert.fail();
+			}
+			catch (PluginException e) {
+				Assert.assertEquals("failing failed", e.getMessage());
+			}
+		}
+		Assert.assertEquals(2, condition.calls.get());
+	}
+	
+	@Test
+	public void cachedResultsExpire() throws Exception {
+		final PluginConditions conditions = new PluginConditions();
+		final TestCondition condition = new TestCondition("expiring", 0, true);
+		condition.ttl = 1;
+		conditions.addCondition(ConditionType.START, condition);
+		
+		final TestPlugin plugin = new TestPlugin();
+		conditions.testConditions(ConditionType.START, plugin);
+		Thread.sleep(20);
+		conditions.testConditions(ConditionType.START, plugin);
+		Assert.assertEquals(2, condition.calls.get());
+	}
+	
+	@Test
+	public void invalidateDropsCachedResults() throws Exception {
+		final PluginConditions conditions = new PluginConditions();
+		final TestCondition condition = new TestCondition("cached", 0, true);
+		condition.ttl = TimeUnit.HOURS.toMillis(1);
+		conditions.addCondition(ConditionType.START, condition);
+		
+		final TestPlugin plugin = new TestPlugin();
+		conditions.testConditions(ConditionType.START, plugin);
+		conditions.invalidate(ConditionType.STOP);
+		conditions.invalidate(new TestPlugin());
+		conditions.testConditions(ConditionType.START, plugin);
+		Assert.assertEquals(1, condition.calls.get());
+		
+		conditions.invalidate(condition);
+		conditions.testConditions(ConditionType.START, plugin);
+		conditions.invalidate(ConditionType.START);
+		conditions.testConditions(ConditionType.START, plugin);
+		conditions.invalidate(plugin);
+		conditions.testConditions(ConditionType.START, plugin);
+		conditions.invalidate();
+		conditions.testConditions(ConditionType.START, plugin);
+		Assert.assertEquals(5, condition.calls.get());
+	}
+	
+	@Test
+	public void testsCheapestFirstAndStopsAtFirstFailure() {
+		final PluginConditions conditions = new PluginConditions();
+		conditions.addCondition(ConditionType.START, new TestCondition("expensive", 10, true));
+		conditions.addCondition(ConditionType.START, new TestCondition("failing", 5, false));
+		conditions.addCondition(ConditionType.START, new TestCondition("cheap", 1, true));
+		
+		try {
+			conditions.testConditions(ConditionType.START, new TestPlugin());
+			Assert.fail();
+		}
+		catch (PluginException e) {
+			Assert.assertEquals("failing failed", e.getMessage());
+		}
+		Assert.assertEquals(Arrays.asList("cheap", "failing"), tested);
+	}
+	
+	@Test
+	public void aggregatesAllFailures() {
+		final PluginConditions conditions = new PluginConditions();
+		conditions.setAggregateFailures(true);
+		conditions.setExecutor(executor);
+		conditions.addCondition(ConditionType.START, new TestCondition("sequential", 1, false));
+		conditions.addCondition(ConditionType.START, new TestCondition("successful", 1, true).concurrent());
+		conditions.addCondition(ConditionType.START, new TestCondition("concurrent", 2, false).concurrent());
+		
+		try {
+			conditions.testConditions(ConditionType.START, new TestPlugin());
+			Assert.fail();
+		}
+		catch (PluginException e) {
+			Assert.assertEquals(2, e.getSuppressed().length);
+			Assert.assertEquals("sequential failed", e.getSuppressed()[0].getMessage());
+			Assert.assertEquals("concurrent failed", e.getSuppressed()[1].getMessage());
+		}
+		Assert.assertEquals(3, tested.size());
+	}
+	
+	@Test(timeout = 10000)
+	public void concurrentConditionsFailFast() {
+		final PluginConditions conditions = new PluginConditions();
+		conditions.setExecutor(executor);
+		conditions.addCondition(ConditionType.START, new TestCondition("blocking", 1, true).concurrent().blocking());
+		conditions.addCondition(ConditionType.START, new TestCondition("failing", 2, false).concurrent());
+		
+		try {
+			conditions.testConditions(ConditionType.START, new TestPlugin());
+			Assert.fail();
+		}
+		catch (PluginException e) {
+			Assert.assertEquals("failing failed", e.getMessage());
+			Assert.assertEquals(0, e.getSuppressed().length);
+		}
+	}
+	
+	private final class TestCondition implements IPluginCondition {
+		private final String information;
+		private final int cost;
+		private final boolean success;
+		private final AtomicInteger calls = new AtomicInteger();
+		private long ttl;
+		private boolean concurrent;
+		private boolean blocking;
+		
+		TestCondition(String information, int cost, boolean success) {
+			this.information = information;
+			this.cost = cost;
+			this.success = success;
+		}
+		
+		TestCondition concurrent() {
+			concurrent = true;
+			return this;
+		}
+		
+		TestCondition blocking() {
+			blocking = true;
+			return this;
+		}
+		
+		@Override
+		public String getInformation() {
+			return information;
+		}
+		
+		@Override
+		public ConditionResult test(AbstractPlugin plugin) {
+			calls.incrementAndGet();
+			tested.add(information);
+			if (blocking) {
+				try {
+					release.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return new ConditionResult(success, information + " failed");
+		}
+		
+		@Override
+		public long getCacheTtl() {
+			return ttl;
+		}
+		
+		@Override
+		public int getCost() {
+			return cost;
+		}
+		
+		@Override
+		public boolean isConcurrent() {
+			return concurrent;
+		}
+	}
+	
+	public static class TestPlugin extends AbstractPlugin {
+		@Override
+		public String getName() {
+			return "TestPlugin";
+		}
+		
+		@Override
+		public String getAuthor() {
+			return "UnAfraid";
+		}
+		
+		@Override
+		public String getCreatedAt() {
+			return "19.10.2026";
+		}
+		
+		@Override
+		public String getDescription() {
+			return "Plugin the conditions are tested on";
+		}
+		
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+		
+		@Override
+		protected void setup(FileInstaller fileInstaller, PluginMigrations migrations, PluginConditions pluginConditions) {
+			// nothing to set up
+		}
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.events;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author UnAfraid
+ */
+public class PluginEventBusTest {
+	private final List<PluginEvent> received = Collections.synchronizedList(new ArrayList<>());
+	private final CountDownLatch handling = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private PluginEventBus bus;
+	
+	@After
+	public void closeBus() {
+		release.countDown();
+		if (bus != null) {
+			bus.close();
+		}
+	}
+	
+	@Test
+	public void deliversEventsInOrderOnTheDispatcherThread() throws Exception {
+		bus = new PluginEventBus();
+		final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch delivered = new CountDownLatch(3);
+		bus.subscribe(event ->
+		{
+			threads.add(Thread.currentThread().getName());
+			received.add(event);
+			delivered.countDown();
+		});
+		
+		final List<PluginEvent> events = Arrays.asList(event("first"), event("second"), event("third"));
+		events.forEach(bus::publish);
+		Assert.assertTrue(delivered.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(events, received);
+		Assert.assertEquals(Arrays.asList("PluginEventBus", "PluginEventBus", "PluginEventBus"), threads);
+	}
+	
+	@Test
+	public void queuesNothingWithoutSubscribers() throws Exception {
+		bus = new PluginEventBus(1, EventOverflowPolicy.DROP);
+		bus.publish(event("unheard"));
+		bus.subscribe(EnumSet.of(PluginEventType.UPGRADED), received::add);
+		bus.publish(event("unheard"));
+		bus.publish(event("unheard"));
+		
+		Assert.assertEquals(0, bus.getQueuedCount());
+		Assert.assertEquals(0, bus.getDroppedCount());
+		Assert.assertEquals(Collections.emptyList(), received);
+	}
+	
+	@Test
+	public void dropsEventsWhenTheQueueIsFull() throws Exception {
+		bus = new PluginEventBus(1, EventOverflowPolicy.DROP);
+		bus.subscribe(this::blockOnFirstEvent);
+		
+		final PluginEvent first = event("first");
+		final PluginEvent second = event("second");
+		bus.publish(first);
+		Assert.assertTrue(handling.await(10, TimeUnit.SECONDS));
+		bus.publish(second);
+		bus.publish(event("dropped"));
+		bus.publish(event("dropped"));
+		Assert.assertEquals(1, bus.getQueuedCount());
+		Assert.assertEquals(2, bus.getDroppedCount());
+		
+		release.countDown();
+		awaitReceived(2);
+		Assert.assertEquals(Arrays.asList(first, second), received);
+	}
+	
+	@Test
+	public void blocksPublishersWhenTheQueueIsFull() throws Exception {
+		bus = new PluginEventBus(1, EventOverflowPolicy.BLOCK);
+		bus.subscribe(this::blockOnFirstEvent);
+		
+		final PluginEvent first = event("first");
+		final PluginEvent second = event("second");
+		final PluginEvent third = event("third");
+		bus.publish(first);
+		Assert.assertTrue(handling.await(10, TimeUnit.SECONDS));
+		bus.publish(second);
+		
+		final Thread publisher = new Thread(() -> bus.publish(third));
+		publisher.start();
+		awaitState(publisher, Thread.State.WAITING);
+		Assert.assertEquals(1, bus.getQueuedCount());
+		
+		release.countDown();
+		publisher.join(TimeUnit.SECONDS.toMillis(10));
+		awaitReceived(3);
+		Assert.assertEquals(Arrays.asList(first, second, third), received);
+		Assert.assertEquals(0, bus.getDroppedCount());
+	}
+	
+	@Test
+	public void listenerErrorsDoNotStopTheDispatcher() throws Exception {
+		bus = new PluginEventBus();
+		final PluginEvent failing = event("failing");
+		final PluginEvent next = event("next");
+		bus.subscribe(event ->
+		{
+			received.add(event);
+			if (event == failing) {
+				throw new NoClassDefFoundError("Failing on purpose");
+			}
+		});
+		
+		bus.publish(failing);
+		awaitReceived(1);
+		bus.publish(next);
+		awaitReceived(2);
+		Assert.assertEquals(Arrays.asList(failing, next), received);
+	}
+	
+	@Test
+	public void closeDeliversQueuedEventsWithoutInterruptingTheListener() throws Exception {
+		bus = new PluginEventBus();
+		final AtomicBoolean interrupted = new AtomicBoolean();
+		final AtomicReference<Thread> dispatcher = new AtomicReference<>();
+		bus.subscribe(event ->
+		{
+			dispatcher.set(Thread.currentThread());
+			received.add(event);
+			if (handling.getCount() > 0) {
+				handling.countDown();
+				try {
+					release.await();
+				}
+				catch (InterruptedException e) {
+					interrupted.set(true);
+				}
+			}
+		});
+		
+		final PluginEvent first = event("first");
+		final PluginEvent second = event("second");
+		final PluginEvent third = event("third");
+		bus.publish(first);
+		Assert.assertTrue(handling.await(10, TimeUnit.SECONDS));
+		bus.publish(second);
+		bus.publish(third);
+		
+		bus.close();
+		bus.publish(event("after close"));
+		release.countDown();
+		
+		dispatcher.get().join(TimeUnit.SECONDS.toMillis(10));
+		Assert.assertFalse(dispatcher.get().isAlive());
+		Assert.assertFalse(interrupted.get());
+		Assert.assertEquals(Arrays.asList(first, second, third), received);
+		Assert.assertEquals(0, bus.getQueuedCount());
+	}
+	
+	@Test
+	public void listenersPublishWithoutQueueing() throws Exception {
+		bus = new PluginEventBus(1, EventOverflowPolicy.BLOCK);
+		final List<String> order = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch delivered = new CountDownLatch(1);
+		bus.subscribe(EnumSet.of(PluginEventType.FAILED), event -> order.add("failed " + event.getCause().getMessage()));
+		bus.subscribe(EnumSet.of(PluginEventType.SCANNED), event ->
+		{
+			order.add("scanned");
+			// The queue is full behind this event, queueing these would never return
+			bus.publish(event("nested"));
+			bus.publish(event("nested again"));
+			order.add("scanned done");
+			delivered.countDown();
+		});
+		
+		bus.publish(PluginEvent.of(PluginEventType.SCANNED, null));
+		Assert.assertTrue(delivered.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(Arrays.asList("scanned", "failed nested", "failed nested again", "scanned done"), order);
+	}
+	
+	private void blockOnFirstEvent(PluginEvent event) {
+		received.add(event);
+		if (handling.getCount() > 0) {
+			handling.countDown();
+			try {
+				release.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	private void awaitReceived(int count) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (received.size() < count) {
+			Assert.assertTrue("Events were not delivered in time", System.nanoTime() < deadline);
+			Thread.sleep(10);
+		}
+	}
+	
+	private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (thread.getState() != state) {
+			Assert.assertTrue("Thread did not reach " + state + " in time", System.nanoTime() < deadline);
+			Thread.sleep(10);
+		}
+	}
+	
+	private static PluginEvent event(String name) {
+		return PluginEvent.failed(null, new Exception(name));
+	}
+}
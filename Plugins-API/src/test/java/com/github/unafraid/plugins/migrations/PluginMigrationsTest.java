@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.migrations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.github.unafraid.plugins.AbstractPlugin;
+import com.github.unafraid.plugins.conditions.PluginConditions;
+import com.github.unafraid.plugins.installers.file.FileInstaller;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author UnAfraid
+ */
+public class PluginMigrationsTest {
+	private final List<String> applied = new ArrayList<>();
+	private final Set<String> failing = new HashSet<>();
+	private final TestPlugin plugin = new TestPlugin();
+	private Path journalDirectory;
+	private IMigrationJournal journal;
+	
+	@Before
+	public void setUp() throws Exception {
+		journalDirectory = Files.createTempDirectory("migrations");
+		journal = new FileMigrationJournal(journalDirectory);
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		try (Stream<Path> files = Files.list(journalDirectory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(journalDirectory);
+	}
+	
+	@Test
+	public void planExcludesFromVersion() {
+		final PluginMigrations migrations = new PluginMigrations();
+		migrations.addMigration(new TestMigration("to 1", 1));
+		migrations.addMigration(new TestMigration("to 2", 2));
+		migrations.addMigration(new TestMigration("to 3", 3));
+		
+		Assert.assertEquals(Arrays.asList("to 2", "to 3"), describe(migrations.getPlan(1, 3)));
+	}
+	
+	@Test
+	public void planExcludesVersionsPastTo() {
+		final PluginMigrations migrations = new PluginMigrations();
+		migrations.addMigration(new TestMigration("to 4", 4));
+		migrations.addMigration(new TestMigration("to 2", 2));
+		migrations.addMigration(new TestMigration("to 3", 3));
+		
+		Assert.assertEquals(Arrays.asList("to 2", "to 3"), describe(migrations.getPlan(1, 3)));
+		Assert.assertTrue(migrations.getPlan(4, 5).isEmpty());
+	}
+	
+	@Test
+	public void planKeepsRegistrationOrderOfTies() {
+		final PluginMigrations migrations = new PluginMigrations();
+		migrations.addMigration(new TestMigration("to 2 first", 2));
+		migrations.addMigration(new TestMigration("to 1", 1));
+		migrations.addMigration(new TestMigration("to 2 second", 2));
+		migrations.addMigration(new TestMigration("to 2 third", 2));
+		
+		Assert.assertEquals(Arrays.asList("to 1", "to 2 first", "to 2 second", "to 2 third"), describe(migrations.getPlan(0, 2)));
+	}
+	
+	@Test
+	public void failedMigrationResumesAfterCheckpoint() throws Exception {
+		final PluginMigrations migrations = newMigrations();
+		failing.add("to 3");
+		try {
+			migrations.migrate(0, 4, plugin);
+			Assert.fail();
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		Assert.assertEquals(Arrays.asList("to 1", "to 2", "to 3"), applied);
+		Assert.assertEquals(2, journal.getCheckpoint(plugin));
+		
+		applied.clear();
+		failing.clear();
+		migrations.migrate(0, 4, plugin);
+		Assert.assertEquals(Arrays.asList("to 3", "to 4"), applied);
+		Assert.assertEquals(IMigrationJournal.NO_CHECKPOINT, journal.getCheckpoint(plugin));
+	}
+	
+	@Test
+	public void outOfRangeCheckpointIsCleared() throws Exception {
+		final PluginMigrations migrations = newMigrations();
+		
+		journal.checkpoint(plugin, 7);
+		migrations.migrate(1, 4, plugin);
+		Assert.assertEquals(Arrays.asList("to 2", "to 3", "to 4"), applied);
+		Assert.assertEquals(IMigrationJournal.NO_CHECKPOINT, journal.getCheckpoint(plugin));
+		
+		// A checkpoint at the version migrated from is out of date as well
+		applied.clear();
+		journal.checkpoint(plugin, 1);
+		failing.add("to 2");
+		try {
+			migrations.migrate(1, 4, plugin);
+			Assert.fail();
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		Assert.assertEquals(Collections.singletonList("to 2"), applied);
+		Assert.assertEquals(IMigrationJournal.NO_CHECKPOINT, journal.getCheckpoint(plugin));
+	}
+	
+	@Test
+	public void migrationWithoutJournalStartsOver() throws Exception {
+		final PluginMigrations migrations = newMigrations();
+		migrations.setJournal(null);
+		failing.add("to 3");
+		try {
+			migrations.migrate(0, 4, plugin);
+			Assert.fail();
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		
+		applied.clear();
+		failing.clear();
+		migrations.migrate(0, 4, plugin);
+		Assert.assertEquals(Arrays.asList("to 1", "to 2", "to 3", "to 4"), applied);
+		Assert.assertNull(new PluginMigrations().getJournal());
+	}
+	
+	private PluginMigrations newMigrations() {
+		final PluginMigrations migrations = new PluginMigrations();
+		migrations.setJournal(journal);
+		for (int version = 1; version <= 4; version++) {
+			migrations.addMigration(new TestMigration("to " + version, version));
+		}
+		return migrations;
+	}
+	
+	private static List<String> describe(List<IPluginMigration> plan) {
+		return plan.stream().map(IPluginMigration::getDescription).collect(Collectors.toList());
+	}
+	
+	private class TestMigration implements IPluginMigration {
+		private final String description;
+		private final int targetVersion;
+		
+		TestMigration(String description, int targetVersion) {
+			this.description = description;
+			this.targetVersion = targetVersion;
+		}
+		
+		@Override
+		public String getDescription() {
+			return description;
+		}
+		
+		@Override
+		public int getTargetVersion() {
+			return targetVersion;
+		}
+		
+		@Override
+		public void migrate(AbstractPlugin plugin) {
+			applied.add(description);
+			if (failing.contains(description)) {
+				throw new IllegalStateException(description + " failed");
+			}
+		}
+	}
+	
+	public static class TestPlugin extends AbstractPlugin {
+		@Override
+		public String getName() {
+			return "TestPlugin";
+		}
+		
+		@Override
+		public String getAuthor() {
+			return "UnAfraid";
+		}
+		
+		@Override
+		public String getCreatedAt() {
+			return "19.10.2026";
+		}
+		
+		@Override
+		public String getDescription() {
+			return "Plugin the migrations are applied to";
+		}
+		
+		@Override
+		public int getVersion() {
+			return 4;
+		}
+		
+		@Override
+		protected void setup(FileInstaller fileInstaller, PluginMigrations migrations, PluginConditions pluginConditions) {
+			// nothing to set up
+		}
+	}
+}
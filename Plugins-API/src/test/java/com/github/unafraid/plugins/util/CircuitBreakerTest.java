@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.unafraid.plugins.exceptions.CircuitOpenException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author UnAfraid
+ */
+public class CircuitBreakerTest {
+	private final AtomicLong clock = new AtomicLong();
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private CircuitBreaker circuitBreaker;
+	
+	@Before
+	public void setUp() {
+		circuitBreaker = new CircuitBreaker("test", clock::get);
+		circuitBreaker.setWindow(4, 2);
+		circuitBreaker.setOpenDuration(10, TimeUnit.SECONDS);
+		circuitBreaker.setProbeTimeout(5, TimeUnit.SECONDS);
+	}
+	
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void successfulProbeClosesCircuit() throws Exception {
+		trip();
+		Assert.assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+		assertRejected();
+		
+		advance(10);
+		Assert.assertEquals("probe", circuitBreaker.call(() -> "probe"));
+		Assert.assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+		Assert.assertEquals(0, circuitBreaker.getRecordedCalls());
+		Assert.assertEquals(1, circuitBreaker.getRejectedCount());
+	}
+	
+	@Test
+	public void failedProbeReopensCircuit() throws Exception {
+		trip();
+		advance(10);
+		try {
+			fail();
+			Assert.fail("Probe failure was swallowed");
+		}
+		catch (IllegalStateException e) {
+			// Expected, the probe failure opens the circuit again.
+		}
+		Assert.assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+		
+		advance(9);
+		assertRejected();
+		advance(1);
+		circuitBreaker.call(() -> null);
+		Assert.assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+	}
+	
+	@Test
+	public void onlyOneProbePassesWhileHalfOpen() throws Exception {
+		trip();
+		advance(10);
+		circuitBreaker.call(() ->
+		{
+			Assert.assertEquals(CircuitState.HALF_OPEN, circuitBreaker.getState());
+			assertRejected();
+			return null;
+		});
+		Assert.assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+	}
+	
+	@Test(timeout = 10000)
+	public void staleResultDoesNotCloseHalfOpenCircuit() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Future<Object> stale = executor.submit(() -> circuitBreaker.call(() ->
+		{
+			started.countDown();
+			release.await();
+			return null;
+		}));
+		started.await();
+		trip();
+		advance(10);
+		
+		try {
+			circuitBreaker.call(() ->
+			{
+				release.countDown();
+				stale.get();
+				throw new IllegalStateException("probe");
+			});
+			Assert.fail("Probe failure was swallowed");
+		}
+		catch (IllegalStateException e) {
+			Assert.assertEquals("probe", e.getMessage());
+		}
+		Assert.assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+	}
+	
+	@Test
+	public void probeTimeoutReopensCircuit() throws Exception {
+		trip();
+		advance(10);
+		circuitBreaker.call(() ->
+		{
+			advance(5);
+			assertRejected();
+			Assert.assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+			return null;
+		});
+		Assert.assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+		
+		advance(10);
+		circuitBreaker.call(() -> null);
+		Assert.assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+	}
+	
+	private void trip() throws Exception {
+		for (int i = 0; i < 2; i++) {
+			try {
+				fail();
+			}
+			catch (IllegalStateException e) {
+				// Expected, the failures open the circuit.
+			}
+		}
+	}
+	
+	private void fail() throws Exception {
+		circuitBreaker.call(() ->
+		{
+			throw new IllegalStateException("failure");
+		});
+	}
+	
+	private void assertRejected() throws Exception {
+		try {
+			circuitBreaker.call(() -> null);
+			Assert.fail("Invocation passed through the open circuit");
+		}
+		catch (CircuitOpenException e) {
+			// Expected.
+		}
+	}
+	
+	private void advance(long seconds) {
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+	}
+}
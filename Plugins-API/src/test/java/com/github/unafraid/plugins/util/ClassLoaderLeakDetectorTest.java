@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author UnAfraid
+ */
+public class ClassLoaderLeakDetectorTest {
+	private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+	
+	@Test
+	public void reportsReachableClassLoaders() throws Exception {
+		final ClassLoaderLeakDetector detector = new ClassLoaderLeakDetector(2);
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[0], null)) {
+			detector.track(classLoader, "leaked");
+			Assert.assertEquals(1, detector.getTrackedCount());
+			Assert.assertEquals(0, detector.getLeakCount());
+			
+			final long gcCount = getGcCount();
+			final long deadline = System.nanoTime() + TIMEOUT;
+			while ((getGcCount() - gcCount) < 2) {
+				Assert.assertTrue("Garbage collections did not happen in time", System.nanoTime() < deadline);
+				System.gc();
+			}
+			
+			// Still referenced here
+			Assert.assertEquals(Collections.singletonList("leaked"), detector.getLeaks());
+			Assert.assertEquals(1, detector.getLeakCount());
+			Assert.assertEquals(1, detector.getTrackedCount());
+		}
+	}
+	
+	@Test
+	public void stopsTrackingUnreachableClassLoaders() throws Exception {
+		final ClassLoaderLeakDetector detector = new ClassLoaderLeakDetector(1);
+		trackClosedClassLoader(detector);
+		Assert.assertEquals(1, detector.getTrackedCount());
+		
+		final long deadline = System.nanoTime() + TIMEOUT;
+		while (detector.getTrackedCount() > 0) {
+			Assert.assertTrue("Class loader was not expunged in time", System.nanoTime() < deadline);
+			System.gc();
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(0, detector.getLeakCount());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNonPositiveGcCycles() {
+		new ClassLoaderLeakDetector(0);
+	}
+	
+	/**
+	 * Tracks a class loader that is not referenced by the caller.
+	 * @param detector the detector
+	 * @throws Exception
+	 */
+	private static void trackClosedClassLoader(ClassLoaderLeakDetector detector) throws Exception {
+		final URLClassLoader classLoader = new URLClassLoader(new URL[0], null);
+		classLoader.close();
+		detector.track(classLoader, "released");
+	}
+	
+	private static long getGcCount() {
+		long gcCount = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcCount += Math.max(0, bean.getCollectionCount());
+		}
+		return gcCount;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * @author UnAfraid
+ */
+public class JarClassLoaderTest {
+	private static final Path FILE_DESCRIPTORS = Paths.get("/proc/self/fd");
+	
+	@Test
+	public void closeReleasesJarFile() throws Exception {
+		Assume.assumeTrue("Open file descriptors can't be listed on this platform", Files.isDirectory(FILE_DESCRIPTORS));
+		
+		final Path jar = Files.createTempFile("plugin", ".jar");
+		try {
+			try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+				out.putNextEntry(new JarEntry("test/resource.txt"));
+				out.write("content".getBytes(StandardCharsets.UTF_8));
+				out.closeEntry();
+			}
+			
+			final JarClassLoader classLoader = new JarClassLoader(new URL[]{jar.toUri().toURL()}, null);
+			try (InputStream inputStream = classLoader.getResourceAsStream("test/resource.txt")) {
+				Assert.assertNotNull(inputStream);
+			}
+			
+			try {
+				classLoader.loadClass("test.Missing");
+				Assert.fail();
+			}
+			catch (ClassNotFoundException e) {
+				// expected, but makes sure the JAR is looked up
+			}
+			Assert.assertTrue(isOpen(jar));
+			
+			classLoader.close();
+			Assert.assertFalse(isOpen(jar));
+		}
+		finally {
+			Files.delete(jar);
+		}
+	}
+	
+	@Test
+	public void bundledPlatformPackagesAreLoadedFromParent() throws Exception {
+		final Path jar = Files.createTempFile("plugin", ".jar");
+		try {
+			try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+				// Not a valid class file, defining it would fail
+				out.putNextEntry(new JarEntry("org/w3c/dom/Node.class"));
+				out.write("invalid".getBytes(StandardCharsets.UTF_8));
+				out.closeEntry();
+			}
+			
+			final ClassLoader parent = getClass().getClassLoader();
+			try (JarClassLoader classLoader = new JarClassLoader(new URL[]{jar.toUri().toURL()}, parent, ClassIndex.ofJar(jar), ClassIndex.ofClassPath(parent))) {
+				Assert.assertSame(org.w3c.dom.Node.class, classLoader.loadClass("org.w3c.dom.Node"));
+				Assert.assertFalse(classLoader.getDefinedClasses().contains("org.w3c.dom.Node"));
+			}
+		}
+		finally {
+			Files.delete(jar);
+		}
+	}
+	
+	private static boolean isOpen(Path file) throws IOException {
+		final Path realFile = file.toRealPath();
+		try (Stream<Path> descriptors = Files.list(FILE_DESCRIPTORS)) {
+			return descriptors.anyMatch(descriptor ->
+			{
+				try {
+					return Files.readSymbolicLink(descriptor).equals(realFile);
+				}
+				catch (IOException | UnsupportedOperationException e) {
+					// descriptor closed meanwhile
+					return false;
+				}
+			});
+		}
+	}
+}
@@ -21,14 +21,32 @@
  */
 package com.github.unafraid.plugins;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.github.unafraid.plugins.db.DatabaseProvider;
 import com.github.unafraid.plugins.db.dao.PluginsDAO;
 import com.github.unafraid.plugins.db.dao.dto.Plugin;
 import com.github.unafraid.plugins.exceptions.PluginException;
+import com.github.unafraid.plugins.installers.db.PluginDatabaseScripts;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,36 +59,214 @@ import org.slf4j.LoggerFactory;
 public class DBPluginRepository<T extends AbstractPlugin> extends PluginRepository<T> {
 	private static final Logger LOGGER = LoggerFactory.getLogger(DBPluginRepository.class);
 	
+	private boolean autoMigrate;
+	
+	/**
+	 * Enables or disables automatic migration in {@link #startAll()}.<br>
+	 * When enabled, installed plugins whose JAR version is newer than the version stored in the database are migrated from the stored version to the JAR version before they are started.
+	 * @param autoMigrate {@code true} to migrate outdated plugins on start, {@code false} to leave them stopped (the default)
+	 */
+	public final void setAutoMigrate(boolean autoMigrate) {
+		this.autoMigrate = autoMigrate;
+	}
+	
 	/**
 	 * First sets all DB installed plugin's state to installed (to avoid already installed plugin exception),<br>
+	 * plugins that were scanned lazily and are not installed are not instantiated,<br>
+	 * when {@link #setAutoMigrate(boolean) auto migration} is enabled, outdated plugins are migrated concurrently and their stored versions updated in a single batch,<br>
 	 * then starts all plugins which are marked by autoStart {@code true} in DB.
 	 */
 	@Override
 	public void startAll() {
+		final Map<String, Plugin> dbPlugins = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
 		try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
-			final List<Plugin> installedPlugins = pluginsDao.findAll();
-			
-			//@formatter:off
-			getAvailablePlugins().filter(plugin -> installedPlugins.stream().anyMatch(dbPlugin -> 
-				dbPlugin.getName().equalsIgnoreCase(plugin.getName())
-				&& (dbPlugin.getVersion() == plugin.getVersion()))).forEach(plugin ->
-			//@formatter:on
-			{
+			pluginsDao.findAll().forEach(dbPlugin -> dbPlugins.put(dbPlugin.getName(), dbPlugin));
+		}
+		
+		// Outdated plugins are migrated to their newest available version, unless the stored version is still available
+		final Set<String> currentNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		final Map<String, Integer> newestVersions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		getPluginDescriptors().filter(descriptor -> dbPlugins.containsKey(descriptor.getName())).forEach(descriptor ->
+		{
+			if (descriptor.getVersion() == dbPlugins.get(descriptor.getName()).getVersion()) {
+				currentNames.add(descriptor.getName());
+			}
+			newestVersions.merge(descriptor.getName(), descriptor.getVersion(), Math::max);
+		});
+		
+		final List<T> plugins = getAvailablePlugins(descriptor ->
+		{
+			final Plugin dbPlugin = dbPlugins.get(descriptor.getName());
+			if (dbPlugin == null) {
+				return false;
+			}
+			else if (dbPlugin.getVersion() == descriptor.getVersion()) {
+				return true;
+			}
+			return autoMigrate && !currentNames.contains(descriptor.getName()) && (descriptor.getVersion() > dbPlugin.getVersion()) && (descriptor.getVersion() == newestVersions.get(descriptor.getName()));
+		}).collect(Collectors.toList());
+		
+		final List<T> readyPlugins = new ArrayList<>();
+		final Map<String, T> outdatedPlugins = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for (T plugin : plugins) {
+			if (dbPlugins.get(plugin.getName()).getVersion() == plugin.getVersion()) {
 				if (plugin.setState(PluginState.INITIALIZED, PluginState.INSTALLED)) {
-					final Plugin dbPlugin = pluginsDao.findByName(plugin.getName());
-					if ((dbPlugin != null) && dbPlugin.isAutoStart()) {
-						try {
-							plugin.start();
-						}
-						catch (PluginException e) {
-							LOGGER.warn("Failed to start plugin {}", plugin.getName(), e);
-						}
-					}
+					readyPlugins.add(plugin);
+				}
+			}
+			else if (!outdatedPlugins.containsKey(plugin.getName()) && plugin.setState(PluginState.INITIALIZED, PluginState.INSTALLED)) {
+				outdatedPlugins.put(plugin.getName(), plugin);
+			}
+		}
+		readyPlugins.addAll(migratePlugins(outdatedPlugins, dbPlugins));
+		
+		for (T plugin : readyPlugins) {
+			if (dbPlugins.get(plugin.getName()).isAutoStart()) {
+				try {
+					plugin.start();
 				}
-			});
+				catch (PluginException e) {
+					LOGGER.warn("Failed to start plugin {}", plugin.getName(), e);
+				}
+			}
 		}
 	}
 	
+	/**
+	 * Migrates the outdated plugins from their stored versions to their JAR versions concurrently, each after its {@link AbstractPlugin#getDependencies() dependencies} among the outdated plugins.<br>
+	 * The stored versions of the migrated plugins are updated in a single batch, plugins failing to migrate are set back to initialized.
+	 * @param plugins the outdated plugins mapped by their names, already set to installed
+	 * @param dbPlugins the database entries mapped by plugin names
+	 * @return the migrated plugins
+	 */
+	private List<T> migratePlugins(Map<String, T> plugins, Map<String, Plugin> dbPlugins) {
+		if (plugins.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		final Map<String, CompletableFuture<T>> tasks = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		final ExecutorService executor = newExecutor("Migrate", plugins.size());
+		try {
+			for (T plugin : plugins.values()) {
+				scheduleMigration(plugin, plugins, dbPlugins, tasks, new HashSet<>(), executor);
+			}
+			CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture<?>[0])).handle((result, t) -> null).join();
+		}
+		finally {
+			executor.shutdown();
+		}
+		
+		final List<T> migratedPlugins = new ArrayList<>();
+		tasks.forEach((name, task) ->
+		{
+			final T plugin = plugins.get(name);
+			try {
+				migratedPlugins.add(task.join());
+			}
+			catch (CompletionException e) {
+				LOGGER.warn("Failed to migrate plugin {}", name, e.getCause());
+				plugin.setState(PluginState.INSTALLED, PluginState.INITIALIZED);
+			}
+		});
+		
+		if (!migratedPlugins.isEmpty()) {
+			try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+				pluginsDao.updateVersionByNames(migratedPlugins.stream().map(AbstractPlugin::getVersion).collect(Collectors.toList()), migratedPlugins.stream().map(AbstractPlugin::getName).collect(Collectors.toList()));
+			}
+			LOGGER.info("Migrated {} of {} outdated plugin(s).", migratedPlugins.size(), plugins.size());
+		}
+		return migratedPlugins;
+	}
+	
+	/**
+	 * Schedules the migration of the plugin after the migration of its outdated dependencies.
+	 * @param plugin the plugin to be migrated
+	 * @param plugins the outdated plugins mapped by their names
+	 * @param dbPlugins the database entries mapped by plugin names
+	 * @param tasks the already scheduled migrations mapped by plugin names
+	 * @param visiting the names of the plugins whose dependencies are being scheduled, used to detect circular dependencies
+	 * @param executor the executor that runs the migrations
+	 * @return the migration of the plugin
+	 */
+	private CompletableFuture<T> scheduleMigration(T plugin, Map<String, T> plugins, Map<String, Plugin> dbPlugins, Map<String, CompletableFuture<T>> tasks, Set<String> visiting, Executor executor) {
+		final CompletableFuture<T> scheduled = tasks.get(plugin.getName());
+		if (scheduled != null) {
+			return scheduled;
+		}
+		
+		if (!visiting.add(plugin.getName())) {
+			return failedTask(tasks, plugin, new PluginException("Plugin " + plugin.getName() + " has circular dependencies!"));
+		}
+		
+		final List<CompletableFuture<T>> dependencies = new ArrayList<>();
+		for (String dependency : plugin.getDependencies()) {
+			final T dependencyPlugin = plugins.get(dependency);
+			if (dependencyPlugin != null) {
+				dependencies.add(scheduleMigration(dependencyPlugin, plugins, dbPlugins, tasks, visiting, executor));
+			}
+		}
+		visiting.remove(plugin.getName());
+		
+		// The plugin may have been scheduled as failed while resolving circular dependencies
+		if (tasks.containsKey(plugin.getName())) {
+			return tasks.get(plugin.getName());
+		}
+		
+		final int from = dbPlugins.get(plugin.getName()).getVersion();
+		final CompletableFuture<T> task = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0])).handleAsync((result, t) ->
+		{
+			if (t != null) {
+				throw new CompletionException(new PluginException("Plugin " + plugin.getName() + " dependencies failed to migrate!", t.getCause()));
+			}
+			
+			try {
+				plugin.migrate(from, plugin.getVersion());
+				return plugin;
+			}
+			catch (Exception e) {
+				throw new CompletionException(new PluginException("Plugin " + plugin.getName() + " failed to migrate from version " + from + " to " + plugin.getVersion() + "!", e));
+			}
+		}, executor);
+		tasks.put(plugin.getName(), task);
+		return task;
+	}
+	
+	/**
+	 * Unloads the plugin from the repository and drops the SQL statements cached for its JAR.
+	 * @param plugin the plugin that is going to be unloaded
+	 * @throws PluginException
+	 */
+	@Override
+	public void unload(T plugin) throws PluginException {
+		super.unload(plugin);
+		
+		PluginDatabaseScripts.evict(plugin.getJarHash());
+	}
+	
+	/**
+	 * Upgrades the plugin without downtime, see {@link PluginRepository#upgrade(Class, AbstractPlugin, Path)}, then stores the version of an installed upgrade and drops the SQL statements cached for the replaced JAR.
+	 * @param pluginClass the plugin class
+	 * @param plugin the current version of the plugin
+	 * @param jarPath the JAR file containing the new version
+	 * @return the new version of the plugin, or the current one if the JAR is unchanged
+	 * @throws PluginException
+	 */
+	@Override
+	public T upgrade(Class<T> pluginClass, T plugin, Path jarPath) throws PluginException {
+		final T upgrade = super.upgrade(pluginClass, plugin, jarPath);
+		if (upgrade == plugin) {
+			return upgrade;
+		}
+		
+		if ((upgrade.getState() != PluginState.INITIALIZED) && (upgrade.getVersion() != plugin.getVersion())) {
+			try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+				pluginsDao.updateVersionByNames(Collections.singletonList(upgrade.getVersion()), Collections.singletonList(upgrade.getName()));
+			}
+		}
+		PluginDatabaseScripts.evict(plugin.getJarHash());
+		return upgrade;
+	}
+	
 	/**
 	 * Stops all running plugins.
 	 */
@@ -111,8 +307,7 @@ public class DBPluginRepository<T extends AbstractPlugin> extends PluginReposito
 			final List<Plugin> installedPlugins = pluginsDao.findAll();
 			
 			//@formatter:off
-			return getAvailablePlugins()
-				.filter(plugin -> installedPlugins.stream().anyMatch(dbPlugin -> dbPlugin.getName().equalsIgnoreCase(plugin.getName()) && (dbPlugin.getVersion() == plugin.getVersion())));
+			return getAvailablePlugins(descriptor -> installedPlugins.stream().anyMatch(dbPlugin -> dbPlugin.getName().equalsIgnoreCase(descriptor.getName()) && (dbPlugin.getVersion() == descriptor.getVersion())));
 			//@formatter:on	
 		}
 	}
@@ -137,6 +332,178 @@ public class DBPluginRepository<T extends AbstractPlugin> extends PluginReposito
 		}
 	}
 	
+	/**
+	 * Installs the plugins concurrently and stores them into the database, see {@link #installPlugins(Collection, Executor)}.
+	 * @param plugins the plugins to be installed
+	 * @throws PluginException if any of the plugins failed to install
+	 */
+	public void installPlugins(Collection<? extends AbstractDBPlugin> plugins) throws PluginException {
+		Objects.requireNonNull(plugins);
+		
+		if (plugins.isEmpty()) {
+			return;
+		}
+		
+		final ExecutorService executor = newExecutor("Install", plugins.size());
+		try {
+			installPlugins(plugins, executor);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Installs the plugins concurrently and stores them into the database.<br>
+	 * Each plugin is installed on its own connection and transaction, but only after its {@link AbstractPlugin#getDependencies() dependencies} among the given plugins are installed.<br>
+	 * Dependencies that aren't among the given plugins must already be installed. The successfully installed plugins are stored in a single batch at the end.
+	 * @param plugins the plugins to be installed
+	 * @param executor the executor that runs the installations
+	 * @throws PluginException if any of the plugins failed to install, the successfully installed plugins are stored regardless, the failed ones are set back to initialized
+	 */
+	public void installPlugins(Collection<? extends AbstractDBPlugin> plugins, Executor executor) throws PluginException {
+		Objects.requireNonNull(plugins);
+		Objects.requireNonNull(executor);
+		
+		if (plugins.isEmpty()) {
+			return;
+		}
+		
+		final Map<String, AbstractDBPlugin> pluginsByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		final Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		plugins.forEach(plugin ->
+		{
+			pluginsByName.put(plugin.getName(), plugin);
+			names.add(plugin.getName());
+			names.addAll(plugin.getDependencies());
+		});
+		
+		final Set<String> installedNames;
+		try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+			installedNames = findDatabaseEntries(pluginsDao, names).keySet();
+		}
+		
+		final Map<String, CompletableFuture<AbstractDBPlugin>> tasks = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for (AbstractDBPlugin plugin : pluginsByName.values()) {
+			scheduleInstall(plugin, pluginsByName, installedNames, tasks, new HashSet<>(), executor);
+		}
+		
+		final List<AbstractDBPlugin> installedPlugins = new ArrayList<>();
+		final List<Throwable> failures = new ArrayList<>();
+		for (CompletableFuture<AbstractDBPlugin> task : tasks.values()) {
+			try {
+				installedPlugins.add(task.join());
+			}
+			catch (CompletionException e) {
+				failures.add(e.getCause());
+			}
+		}
+		
+		if (!installedPlugins.isEmpty()) {
+			try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+				//@formatter:off
+				pluginsDao.insertAll(
+					installedPlugins.stream().map(AbstractPlugin::getName).collect(Collectors.toList()),
+					installedPlugins.stream().map(AbstractPlugin::getVersion).collect(Collectors.toList()),
+					System.currentTimeMillis(), 0);
+				//@formatter:on
+			}
+		}
+		
+		throwIfFailed("install", failures, tasks.size());
+	}
+	
+	/**
+	 * Schedules the installation of the plugin after the installation of its dependencies.
+	 * @param plugin the plugin to be installed
+	 * @param plugins the plugins being installed mapped by their names
+	 * @param installedNames the names of the plugins that are already installed
+	 * @param tasks the already scheduled installations mapped by plugin names
+	 * @param visiting the names of the plugins whose dependencies are being scheduled, used to detect circular dependencies
+	 * @param executor the executor that runs the installations
+	 * @return the installation of the plugin
+	 */
+	private static CompletableFuture<AbstractDBPlugin> scheduleInstall(AbstractDBPlugin plugin, Map<String, AbstractDBPlugin> plugins, Set<String> installedNames, Map<String, CompletableFuture<AbstractDBPlugin>> tasks, Set<String> visiting, Executor executor) {
+		final CompletableFuture<AbstractDBPlugin> scheduled = tasks.get(plugin.getName());
+		if (scheduled != null) {
+			return scheduled;
+		}
+		
+		if (installedNames.contains(plugin.getName())) {
+			return failedTask(tasks, plugin, new PluginException("Plugin " + plugin.getName() + " is already installed!"));
+		}
+		
+		if (!visiting.add(plugin.getName())) {
+			return failedTask(tasks, plugin, new PluginException("Plugin " + plugin.getName() + " has circular dependencies!"));
+		}
+		
+		final List<CompletableFuture<AbstractDBPlugin>> dependencies = new ArrayList<>();
+		for (String dependency : plugin.getDependencies()) {
+			final AbstractDBPlugin dependencyPlugin = plugins.get(dependency);
+			if (dependencyPlugin != null) {
+				dependencies.add(scheduleInstall(dependencyPlugin, plugins, installedNames, tasks, visiting, executor));
+			}
+			else if (!installedNames.contains(dependency)) {
+				visiting.remove(plugin.getName());
+				return failedTask(tasks, plugin, new PluginException("Plugin " + plugin.getName() + " depends on " + dependency + " which is not installed!"));
+			}
+		}
+		visiting.remove(plugin.getName());
+		
+		// The plugin may have been scheduled as failed while resolving circular dependencies
+		if (tasks.containsKey(plugin.getName())) {
+			return tasks.get(plugin.getName());
+		}
+		
+		final CompletableFuture<AbstractDBPlugin> task = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0])).handleAsync((result, t) ->
+		{
+			if (t != null) {
+				throw new CompletionException(new PluginException("Plugin " + plugin.getName() + " dependencies failed to install!", t.getCause()));
+			}
+			
+			final PluginState state = plugin.getState();
+			try {
+				plugin.install();
+				return plugin;
+			}
+			catch (Exception e) {
+				if (state == PluginState.INITIALIZED) {
+					// The plugin is not stored, so it must not look installed either
+					plugin.setState(PluginState.INSTALLED, PluginState.INITIALIZED);
+				}
+				throw new CompletionException(new PluginException("Plugin " + plugin.getName() + " failed to install!", e));
+			}
+		}, executor);
+		tasks.put(plugin.getName(), task);
+		return task;
+	}
+	
+	/**
+	 * Creates the executor running a batch of plugin operations, with as many threads as operations but no more than the available processors.<br>
+	 * Its threads are named after the operation and are daemons, so they never keep the application alive.
+	 * @param operation the name of the operation
+	 * @param size the amount of operations
+	 * @return the executor, to be shut down by the caller
+	 */
+	private static ExecutorService newExecutor(String operation, int size) {
+		return Executors.newFixedThreadPool(Math.min(size, Runtime.getRuntime().availableProcessors()), new ThreadFactoryBuilder().setNameFormat("Plugin" + operation + "-%d").setDaemon(true).build());
+	}
+	
+	/**
+	 * Registers an already failed task of the plugin.
+	 * @param <P> the plugin type
+	 * @param tasks the already scheduled tasks mapped by plugin names
+	 * @param plugin the plugin
+	 * @param exception the reason of the failure
+	 * @return the failed task
+	 */
+	private static <P extends AbstractPlugin> CompletableFuture<P> failedTask(Map<String, CompletableFuture<P>> tasks, P plugin, PluginException exception) {
+		final CompletableFuture<P> task = new CompletableFuture<>();
+		task.completeExceptionally(exception);
+		tasks.put(plugin.getName(), task);
+		return task;
+	}
+	
 	/**
 	 * Uninstalls the plugin and removes it from the database.
 	 * @param plugin the plugin itself
@@ -157,6 +524,56 @@ public class DBPluginRepository<T extends AbstractPlugin> extends PluginReposito
 		}
 	}
 	
+	/**
+	 * Uninstalls the plugins and removes them from the database in a single batch.<br>
+	 * Plugins are uninstalled before their {@link AbstractPlugin#getDependencies() dependencies} among the given plugins, a dependency is kept installed if any of its dependents failed to uninstall.
+	 * @param plugins the plugins to be uninstalled
+	 * @throws PluginException if any of the plugins failed to uninstall, the successfully uninstalled plugins are removed regardless
+	 */
+	public void uninstallPlugins(Collection<? extends AbstractDBPlugin> plugins) throws PluginException {
+		Objects.requireNonNull(plugins);
+		
+		if (plugins.isEmpty()) {
+			return;
+		}
+		
+		final List<AbstractDBPlugin> sortedPlugins = sortByDependencies(plugins);
+		Collections.reverse(sortedPlugins);
+		
+		try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+			final Map<String, Plugin> dbPlugins = findDatabaseEntries(pluginsDao, sortedPlugins.stream().map(AbstractPlugin::getName).collect(Collectors.toList()));
+			final Set<String> failedNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+			final List<Integer> uninstalledIds = new ArrayList<>();
+			final List<Throwable> failures = new ArrayList<>();
+			for (AbstractDBPlugin plugin : sortedPlugins) {
+				try {
+					final Plugin dbPlugin = dbPlugins.get(plugin.getName());
+					if (dbPlugin == null) {
+						throw new PluginException("Plugin " + plugin.getName() + " is not installed yet!");
+					}
+					
+					final Optional<? extends AbstractDBPlugin> failedDependent = sortedPlugins.stream().filter(dependent -> failedNames.contains(dependent.getName()) && dependent.getDependencies().stream().anyMatch(plugin.getName()::equalsIgnoreCase)).findFirst();
+					if (failedDependent.isPresent()) {
+						throw new PluginException("Plugin " + plugin.getName() + " is still required by " + failedDependent.get().getName() + "!");
+					}
+					
+					plugin.uninstall();
+					uninstalledIds.add(dbPlugin.getId());
+				}
+				catch (Exception e) {
+					failedNames.add(plugin.getName());
+					failures.add(e);
+				}
+			}
+			
+			if (!uninstalledIds.isEmpty()) {
+				pluginsDao.deleteAll(uninstalledIds);
+			}
+			
+			throwIfFailed("uninstall", failures, sortedPlugins.size());
+		}
+	}
+	
 	/**
 	 * Update plugin's auto start state.
 	 * @param plugin the plugin itself
@@ -175,4 +592,96 @@ public class DBPluginRepository<T extends AbstractPlugin> extends PluginReposito
 			pluginsDao.updateAutoStartByName(autoStart ? 1 : 0, plugin.getName());
 		}
 	}
+	
+	/**
+	 * Update the auto start state of the plugins in a single batch.
+	 * @param plugins the plugins
+	 * @param autoStart if {@code true}, the plugins will start on application boot, if {@code false} the plugins won't
+	 * @throws PluginException if any of the plugins is not installed yet, in which case none of them is updated
+	 */
+	public void updateAutoStart(Collection<? extends AbstractDBPlugin> plugins, boolean autoStart) throws PluginException {
+		Objects.requireNonNull(plugins);
+		
+		if (plugins.isEmpty()) {
+			return;
+		}
+		
+		final List<String> names = plugins.stream().map(AbstractPlugin::getName).collect(Collectors.toList());
+		try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+			final Map<String, Plugin> dbPlugins = findDatabaseEntries(pluginsDao, names);
+			final List<String> notInstalled = names.stream().filter(name -> !dbPlugins.containsKey(name)).collect(Collectors.toList());
+			if (!notInstalled.isEmpty()) {
+				throw new PluginException("Plugins " + notInstalled + " are not installed yet!");
+			}
+			
+			pluginsDao.updateAutoStartByNames(autoStart ? 1 : 0, names);
+		}
+	}
+	
+	/**
+	 * Gets the database entries of the plugins with the given names in a single query.
+	 * @param pluginsDao the plugins DAO
+	 * @param names the names of the plugins
+	 * @return the database entries mapped by case insensitive plugin names
+	 */
+	private static Map<String, Plugin> findDatabaseEntries(PluginsDAO pluginsDao, Collection<String> names) {
+		final Map<String, Plugin> dbPlugins = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		if (!names.isEmpty()) {
+			pluginsDao.findByNames(names).forEach(dbPlugin -> dbPlugins.put(dbPlugin.getName(), dbPlugin));
+		}
+		return dbPlugins;
+	}
+	
+	/**
+	 * Sorts the plugins so that each plugin comes after its {@link AbstractPlugin#getDependencies() dependencies} among the given plugins.
+	 * @param plugins the plugins
+	 * @return sorted plugins
+	 */
+	private static List<AbstractDBPlugin> sortByDependencies(Collection<? extends AbstractDBPlugin> plugins) {
+		final Map<String, AbstractDBPlugin> pluginsByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		plugins.forEach(plugin -> pluginsByName.put(plugin.getName(), plugin));
+		
+		final Set<String> visited = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		final List<AbstractDBPlugin> sortedPlugins = new ArrayList<>();
+		for (AbstractDBPlugin plugin : pluginsByName.values()) {
+			sortByDependencies(plugin, pluginsByName, visited, sortedPlugins);
+		}
+		return sortedPlugins;
+	}
+	
+	/**
+	 * Adds the plugin to the sorted plugins after its dependencies.
+	 * @param plugin the plugin
+	 * @param plugins the plugins being sorted mapped by their names
+	 * @param visited the names of the already visited plugins
+	 * @param sortedPlugins the sorted plugins
+	 */
+	private static void sortByDependencies(AbstractDBPlugin plugin, Map<String, AbstractDBPlugin> plugins, Set<String> visited, List<AbstractDBPlugin> sortedPlugins) {
+		if (!visited.add(plugin.getName())) {
+			return;
+		}
+		
+		for (String dependency : plugin.getDependencies()) {
+			final AbstractDBPlugin dependencyPlugin = plugins.get(dependency);
+			if (dependencyPlugin != null) {
+				sortByDependencies(dependencyPlugin, plugins, visited, sortedPlugins);
+			}
+		}
+		sortedPlugins.add(plugin);
+	}
+	
+	/**
+	 * Throws a single exception that holds the failures of a bulk operation as suppressed exceptions.
+	 * @param action the name of the bulk operation
+	 * @param failures the failures
+	 * @param total the amount of processed plugins
+	 * @throws PluginException if there are any failures
+	 */
+	private static void throwIfFailed(String action, List<Throwable> failures, int total) throws PluginException {
+		if (!failures.isEmpty()) {
+			final PluginException exception = new PluginException("Failed to " + action + " " + failures.size() + " of " + total + " plugin(s)!");
+			failures.forEach(exception::addSuppressed);
+			throw exception;
+		}
+	}
 }
\ No newline at end of file
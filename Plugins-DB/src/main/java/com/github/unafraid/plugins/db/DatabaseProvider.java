@@ -22,6 +22,7 @@
 package com.github.unafraid.plugins.db;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
@@ -43,7 +44,7 @@ import org.slf4j.LoggerFactory;
  */
 public class DatabaseProvider {
 	private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseProvider.class);
-	private static final String TABLE_NAME = "plugins";
+	private static final String[] TABLE_NAMES = {"plugins", "plugin_migrations"};
 	public static final IDatabaseFactory DATABASE_FACTORY;
 	public static final DBI DBI;
 	
@@ -68,33 +69,41 @@ public class DatabaseProvider {
 			throw new RuntimeException(e);
 		}
 		
-		try (
-			Connection con = DATABASE_FACTORY.getConnection();
-			ResultSet rs = con.getMetaData().getTables(null, null, TABLE_NAME, null)) {
-			boolean hasTable = false;
-			while (rs.next()) {
-				final String tableName = rs.getString("TABLE_NAME");
-				if ((tableName != null) && TABLE_NAME.equals(tableName)) {
-					hasTable = true;
-					break;
-				}
+		try (Connection con = DATABASE_FACTORY.getConnection()) {
+			for (String tableName : TABLE_NAMES) {
+				installTable(con, tableName);
 			}
-			
-			if (!hasTable) {
-				try (
-					Statement st = con.createStatement();
-					BufferedReader reader = new BufferedReader(new InputStreamReader(DatabaseProvider.class.getResourceAsStream("/sql/plugins.sql"), StandardCharsets.UTF_8))) {
-					final String sql = reader.lines().collect(Collectors.joining(System.lineSeparator()));
-					st.execute(sql);
-					LOGGER.info("Automatically installing table {}", TABLE_NAME);
-				}
-				catch (SQLException e) {
-					LOGGER.warn("Failed to install table {} :", TABLE_NAME, e);
-					throw new RuntimeException(e);
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Installs the table from its bundled SQL script, unless it exists already.
+	 * @param con the connection
+	 * @param tableName the name of the table
+	 * @throws SQLException
+	 */
+	private static void installTable(Connection con, String tableName) throws SQLException {
+		try (ResultSet rs = con.getMetaData().getTables(null, null, tableName, null)) {
+			while (rs.next()) {
+				final String name = rs.getString("TABLE_NAME");
+				if ((name != null) && tableName.equals(name)) {
+					return;
 				}
 			}
 		}
-		catch (Exception e) {
+		
+		try (
+			Statement st = con.createStatement();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(DatabaseProvider.class.getResourceAsStream("/sql/" + tableName + ".sql"), StandardCharsets.UTF_8))) {
+			final String sql = reader.lines().collect(Collectors.joining(System.lineSeparator()));
+			st.execute(sql);
+			LOGGER.info("Automatically installing table {}", tableName);
+		}
+		catch (IOException | SQLException e) {
+			LOGGER.warn("Failed to install table {} :", tableName, e);
 			throw new RuntimeException(e);
 		}
 	}
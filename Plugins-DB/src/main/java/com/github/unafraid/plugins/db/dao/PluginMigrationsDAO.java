@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.db.dao;
+
+import java.io.Closeable;
+
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+
+/**
+ * The plugin migrations DAO. Stores the completed steps of unfinished plugin migrations.
+ * @author UnAfraid
+ */
+public interface PluginMigrationsDAO extends Closeable {
+	@SqlUpdate("INSERT INTO `plugin_migrations`(`name`, `version`, `completedOn`) VALUES (:name, :version, :completedOn)")
+	void insert(@Bind("name") String name, @Bind("version") int version, @Bind("completedOn") long completedOn);
+	
+	@SqlQuery("SELECT MAX(`version`) FROM `plugin_migrations` WHERE `name` = :name")
+	Integer findLastVersionByName(@Bind("name") String name);
+	
+	@SqlUpdate("DELETE FROM `plugin_migrations` WHERE `name` = :name")
+	void deleteByName(@Bind("name") String name);
+	
+	@Override
+	void close();
+}
@@ -22,38 +22,58 @@
 package com.github.unafraid.plugins.db.dao;
 
 import java.io.Closeable;
+import java.util.Collection;
 import java.util.List;
 
 import com.github.unafraid.plugins.db.dao.dto.Plugin;
 import com.github.unafraid.plugins.db.dao.mapper.PluginMapper;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.GetGeneratedKeys;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.customizers.RegisterMapper;
+import org.skife.jdbi.v2.sqlobject.stringtemplate.UseStringTemplate3StatementLocator;
+import org.skife.jdbi.v2.unstable.BindIn;
 
 /**
  * The plugin DAO. Stores DB queries.
  * @author UnAfraid
  */
 @RegisterMapper(PluginMapper.class)
+@UseStringTemplate3StatementLocator
 public interface PluginsDAO extends Closeable {
 	@SqlUpdate("INSERT INTO `plugins`(`name`, `version`, `installedOn`, `autoStart`) VALUES (:name, :version, :installedOn, :autoStart)")
 	@GetGeneratedKeys
 	int insert(@Bind("name") String name, @Bind("version") int version, @Bind("installedOn") long installedOn, @Bind("autoStart") int autoStart);
 	
+	@SqlBatch("INSERT INTO `plugins`(`name`, `version`, `installedOn`, `autoStart`) VALUES (:name, :version, :installedOn, :autoStart)")
+	void insertAll(@Bind("name") List<String> names, @Bind("version") List<Integer> versions, @Bind("installedOn") long installedOn, @Bind("autoStart") int autoStart);
+	
 	@SqlUpdate("UPDATE `plugins` SET `autoStart` = :autoStart WHERE `name` = :name")
 	void updateAutoStartByName(@Bind("autoStart") int autoStart, @Bind("name") String name);
 	
+	@SqlBatch("UPDATE `plugins` SET `autoStart` = :autoStart WHERE `name` = :name")
+	void updateAutoStartByNames(@Bind("autoStart") int autoStart, @Bind("name") List<String> names);
+	
+	@SqlBatch("UPDATE `plugins` SET `version` = :version WHERE `name` = :name")
+	void updateVersionByNames(@Bind("version") List<Integer> versions, @Bind("name") List<String> names);
+	
 	@SqlUpdate("DELETE FROM `plugins` WHERE `id` = :id")
 	void delete(@Bind("id") int id);
 	
+	@SqlBatch("DELETE FROM `plugins` WHERE `id` = :id")
+	void deleteAll(@Bind("id") List<Integer> ids);
+	
 	@SqlUpdate("DELETE FROM `plugins` WHERE `name` = :name")
 	void deleteByName(@Bind("name") String name);
 	
 	@SqlQuery("SELECT * FROM `plugins` WHERE `name` = :name")
 	Plugin findByName(@Bind("name") String name);
 	
+	@SqlQuery("SELECT * FROM `plugins` WHERE `name` IN (<names>)")
+	List<Plugin> findByNames(@BindIn("names") Collection<String> names);
+	
 	@SqlQuery("SELECT * FROM `plugins`")
 	List<Plugin> findAll();
 	
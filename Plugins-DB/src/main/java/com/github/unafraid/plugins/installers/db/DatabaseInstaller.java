@@ -21,18 +21,23 @@
  */
 package com.github.unafraid.plugins.installers.db;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
+import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Scanner;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.github.unafraid.plugins.AbstractPlugin;
 import com.github.unafraid.plugins.db.DatabaseProvider;
@@ -44,6 +49,8 @@ import com.github.unafraid.plugins.installers.IPluginInstaller;
  * @author UnAfraid
  */
 public class DatabaseInstaller implements IPluginInstaller {
+	private static final String[] TABLE_TYPES = {"TABLE"};
+	
 	private final Set<PluginDatabaseFile> _installFiles = new HashSet<>();
 	private final Set<PluginDatabaseFile> _uninstallFiles = new HashSet<>();
 	
@@ -81,55 +88,92 @@ public class DatabaseInstaller implements IPluginInstaller {
 		return _uninstallFiles;
 	}
 	
+	@Override
+	public Set<String> getSources() {
+		return Stream.concat(_installFiles.stream(), _uninstallFiles.stream()).map(PluginDatabaseFile::getSource).collect(Collectors.toCollection(TreeSet::new));
+	}
+	
 	@Override
 	public void install(AbstractPlugin plugin) throws PluginException {
 		Objects.requireNonNull(plugin);
 		
+		executeFiles(plugin, _installFiles, false);
+	}
+	
+	@Override
+	public void repair(AbstractPlugin plugin) {
+		// do nothing
+	}
+	
+	@Override
+	public void uninstall(AbstractPlugin plugin) throws PluginException {
+		Objects.requireNonNull(plugin);
+		
+		executeFiles(plugin, _uninstallFiles, true);
+	}
+	
+	/**
+	 * Executes the given database files within a single transaction.<br>
+	 * Files are grouped by their target database, so the database is switched at most once per group and the current database is queried only once.
+	 * @param plugin the plugin which has the resources
+	 * @param files the database files to be executed
+	 * @param tableExists if {@code true} named files are executed only when their table exists, if {@code false} only when it doesn't
+	 * @throws PluginException
+	 */
+	private void executeFiles(AbstractPlugin plugin, Set<PluginDatabaseFile> files, boolean tableExists) throws PluginException {
+		if (files.isEmpty()) {
+			return;
+		}
+		
+		final Map<Optional<String>, List<PluginDatabaseFile>> filesByDatabase = files.stream().collect(Collectors.groupingBy(PluginDatabaseFile::getDatabase, LinkedHashMap::new, Collectors.toList()));
+		
+		// Files without explicit database are executed first, while the connection still points to its original database
+		final List<PluginDatabaseFile> defaultFiles = filesByDatabase.remove(Optional.<String> empty());
+		
 		try (
 			Connection con = DatabaseProvider.DATABASE_FACTORY.getConnection();
 			Statement st = con.createStatement()) {
 			// Prevent half-way execution
 			con.setAutoCommit(false);
 			
-			for (PluginDatabaseFile file : _installFiles) {
-				String currentDatabase = "";
-				try (ResultSet rs = st.executeQuery("SELECT DATABASE()")) {
-					if (rs.next()) {
-						currentDatabase = rs.getString(1);
-					}
-				}
-				
-				if (file.getDatabase().isPresent()) {
-					// Switch database
-					st.execute("USE " + file.getDatabase().get());
+			String currentDatabase = null;
+			String activeDatabase = null;
+			try {
+				if (defaultFiles != null) {
+					executeFiles(plugin, defaultFiles, tableExists, con.getCatalog(), con, st);
 				}
 				
-				// Check for table existence
-				if (file.getName().isPresent()) {
-					try (PreparedStatement ps = con.prepareStatement("SHOW TABLES LIKE ?")) {
-						ps.setString(1, file.getName().get());
-						try (ResultSet rs = ps.executeQuery()) {
-							if (!rs.next()) {
-								// Execute the resource
-								executeResource(plugin, file.getSource(), st);
-							}
+				if (!filesByDatabase.isEmpty()) {
+					currentDatabase = getCurrentDatabase(con, st);
+					activeDatabase = currentDatabase;
+					for (Entry<Optional<String>, List<PluginDatabaseFile>> entry : filesByDatabase.entrySet()) {
+						final String database = entry.getKey().get();
+						if (!database.equals(activeDatabase)) {
+							// Switch database
+							st.execute("USE " + database);
+							activeDatabase = database;
 						}
+						
+						executeFiles(plugin, entry.getValue(), tableExists, database, con, st);
 					}
 				}
-				else {
-					// Execute the resource
-					executeResource(plugin, file.getSource(), st);
-				}
 				
-				if (file.getDatabase().isPresent()) {
-					// Switch database back to its original state
-					st.execute("USE " + currentDatabase);
+				if (!con.getAutoCommit()) {
+					con.commit();
+					con.setAutoCommit(true);
 				}
 			}
-			
-			if (!con.getAutoCommit()) {
-				con.commit();
+			catch (Exception e) {
+				// Do not leave a half-way transaction on the (possibly pooled) connection
+				con.rollback();
 				con.setAutoCommit(true);
+				throw e;
+			}
+			finally {
+				if ((currentDatabase != null) && !currentDatabase.equals(activeDatabase)) {
+					// Switch database back to its original state, so the (possibly pooled) connection is not left on the plugin's database
+					st.execute("USE " + currentDatabase);
+				}
 			}
 		}
 		catch (Exception e) {
@@ -137,64 +181,106 @@ public class DatabaseInstaller implements IPluginInstaller {
 		}
 	}
 	
-	@Override
-	public void repair(AbstractPlugin plugin) {
-		// do nothing
-	}
-	
-	@Override
-	public void uninstall(AbstractPlugin plugin) throws PluginException {
-		Objects.requireNonNull(plugin);
-		
-		try (
-			Connection con = DatabaseProvider.DATABASE_FACTORY.getConnection();
-			Statement st = con.createStatement()) {
-			// Prevent half-way execution
-			con.setAutoCommit(false);
+	/**
+	 * Executes the given database files against the currently selected database.<br>
+	 * Table existence is resolved with a single metadata lookup for the whole group and kept up to date as files are executed.
+	 * @param plugin the plugin which has the resources
+	 * @param files the database files to be executed
+	 * @param tableExists if {@code true} named files are executed only when their table exists, if {@code false} only when it doesn't
+	 * @param database the database the files are executed against
+	 * @param con the connection used for the process
+	 * @param st the SQL statement used for the process
+	 * @throws Exception
+	 */
+	private void executeFiles(AbstractPlugin plugin, List<PluginDatabaseFile> files, boolean tableExists, String database, Connection con, Statement st) throws Exception {
+		final Set<String> tables = files.stream().anyMatch(file -> file.getName().isPresent()) ? getTables(con, database) : Collections.emptySet();
+		for (PluginDatabaseFile file : files) {
+			if (!file.getName().isPresent()) {
+				// Execute the resource
+				executeResource(plugin, file.getSource(), st);
+				continue;
+			}
 			
-			for (PluginDatabaseFile file : _uninstallFiles) {
-				String currentDatabase = "";
-				try (ResultSet rs = st.executeQuery("SELECT DATABASE()")) {
-					if (rs.next()) {
-						currentDatabase = rs.getString(1);
-					}
-				}
-				
-				if (file.getDatabase().isPresent()) {
-					// Switch database
-					st.execute("USE " + file.getDatabase().get());
-				}
+			// Check for table existence
+			final String name = file.getName().get();
+			if (tables.contains(name) == tableExists) {
+				// Execute the resource
+				executeResource(plugin, file.getSource(), st);
 				
-				// Check for table existence
-				if (file.getName().isPresent()) {
-					try (PreparedStatement ps = con.prepareStatement("SHOW TABLES LIKE ?")) {
-						ps.setString(1, file.getName().get());
-						try (ResultSet rs = ps.executeQuery()) {
-							if (rs.next()) {
-								// Execute the resource
-								executeResource(plugin, file.getSource(), st);
-							}
-						}
-					}
+				// Install creates the table, uninstall drops it
+				if (tableExists) {
+					tables.remove(name);
 				}
 				else {
-					// Execute the resource
-					executeResource(plugin, file.getSource(), st);
-				}
-				if (file.getDatabase().isPresent()) {
-					// Switch database back to its original state
-					st.execute("USE " + currentDatabase);
+					tables.add(name);
 				}
 			}
-			
-			if (!con.getAutoCommit()) {
-				con.commit();
-				con.setAutoCommit(true);
+		}
+	}
+	
+	/**
+	 * Gets the database the connection currently points to, which is its current schema when the driver exposes databases as schemas.
+	 * @param con the connection used for the process
+	 * @param st the SQL statement used for the process
+	 * @return the current database, or {@code null} if none is selected
+	 * @throws SQLException
+	 */
+	private static String getCurrentDatabase(Connection con, Statement st) throws SQLException {
+		if (isSchemaDatabase(con)) {
+			// DATABASE() names the catalog there, which cannot be switched to
+			return con.getSchema();
+		}
+		
+		try (ResultSet rs = st.executeQuery("SELECT DATABASE()")) {
+			return rs.next() ? rs.getString(1) : null;
+		}
+	}
+	
+	/**
+	 * Checks whether the driver exposes databases as schemas, e.g. H2 or PostgreSQL, rather than as catalogs, e.g. MySQL.
+	 * @param con the connection used for the process
+	 * @return {@code true} if {@code USE} switches the current schema
+	 * @throws SQLException
+	 */
+	private static boolean isSchemaDatabase(Connection con) throws SQLException {
+		return con.getMetaData().supportsSchemasInTableDefinitions();
+	}
+	
+	/**
+	 * Gets the names of the tables in the given database using {@link DatabaseMetaData}, so it works with any JDBC driver.<br>
+	 * Only regular tables are returned, views and system tables of other schemas such as {@code INFORMATION_SCHEMA} never shadow a plugin table.
+	 * @param con the connection used for the process, already switched to the database
+	 * @param database the database to look into when databases are catalogs, schema-based drivers look into the current schema
+	 * @return case insensitive set of table names
+	 * @throws SQLException
+	 */
+	private static Set<String> getTables(Connection con, String database) throws SQLException {
+		final DatabaseMetaData metaData = con.getMetaData();
+		final Set<String> tables = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		try (ResultSet rs = isSchemaDatabase(con) ? metaData.getTables(con.getCatalog(), escapePattern(metaData, con.getSchema()), "%", TABLE_TYPES) : metaData.getTables(database, null, "%", TABLE_TYPES)) {
+			while (rs.next()) {
+				final String tableName = rs.getString("TABLE_NAME");
+				if (tableName != null) {
+					tables.add(tableName);
+				}
 			}
 		}
-		catch (Exception e) {
-			throw new PluginException(e);
+		return tables;
+	}
+	
+	/**
+	 * Escapes the wildcards of a name used as a {@link DatabaseMetaData} search pattern, e.g. the {@code _} of {@code plugin_db}.
+	 * @param metaData the database metadata
+	 * @param name the name, may be {@code null}
+	 * @return search pattern matching only the name, or {@code null} if the name is {@code null}
+	 * @throws SQLException
+	 */
+	private static String escapePattern(DatabaseMetaData metaData, String name) throws SQLException {
+		final String escape = metaData.getSearchStringEscape();
+		if ((name == null) || (escape == null) || escape.isEmpty()) {
+			return name;
 		}
+		return name.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
 	}
 	
 	/**
@@ -209,30 +295,8 @@ public class DatabaseInstaller implements IPluginInstaller {
 		Objects.requireNonNull(source);
 		Objects.requireNonNull(st);
 		
-		try (
-			InputStream inputStream = plugin.getClass().getResourceAsStream(source);
-			InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
-			Scanner scn = new Scanner(reader)) {
-			StringBuilder sb = new StringBuilder();
-			while (scn.hasNextLine()) {
-				String line = scn.nextLine();
-				if (line.startsWith("--")) {
-					continue;
-				}
-				else if (line.contains("--")) {
-					line = line.split("--")[0];
-				}
-				
-				line = line.trim();
-				if (!line.isEmpty()) {
-					sb.append(line + System.lineSeparator());
-				}
-				
-				if (line.endsWith(";")) {
-					st.execute(sb.toString());
-					sb = new StringBuilder();
-				}
-			}
+		for (String statement : PluginDatabaseScripts.getStatements(plugin, source)) {
+			st.execute(statement);
 		}
 	}
 	
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.installers.db;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.unafraid.plugins.AbstractPlugin;
+import com.github.unafraid.plugins.PluginRepository;
+
+/**
+ * Parses the SQL resources of the plugins into statements and keeps them per plugin JAR hash, so repeated install/uninstall cycles don't read and parse them again.
+ * @author UnAfraid
+ */
+public final class PluginDatabaseScripts {
+	private static final Map<String, Map<String, List<String>>> SCRIPTS = new ConcurrentHashMap<>();
+	
+	private PluginDatabaseScripts() {
+		// utility class
+	}
+	
+	/**
+	 * Gets the statements of the plugin's SQL resource, parsing it only the first time it is requested for the plugin's JAR hash.<br>
+	 * Resources of plugins not loaded from a JAR, such as {@link PluginRepository#isClassPathPlugin(AbstractPlugin) class-path plugins}, are parsed every time.
+	 * @param plugin the plugin which has the resource
+	 * @param source location of the resource inside the JAR
+	 * @return immutable list of statements
+	 * @throws IOException
+	 */
+	public static List<String> getStatements(AbstractPlugin plugin, String source) throws IOException {
+		Objects.requireNonNull(plugin);
+		Objects.requireNonNull(source);
+		
+		final String jarHash = plugin.getJarHash();
+		if ((jarHash == null) || PluginRepository.isClassPathPlugin(plugin)) {
+			// Not scanned from a JAR, nothing identifies the version of the resource, which may be edited at any time
+			return parse(plugin, source);
+		}
+		
+		try {
+			return SCRIPTS.computeIfAbsent(jarHash, k -> new ConcurrentHashMap<>()).computeIfAbsent(plugin.getClass().getName() + ":" + source, k ->
+			{
+				try {
+					return parse(plugin, source);
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+	
+	/**
+	 * Removes the cached statements of the given JAR hash.
+	 * @param jarHash the hash of the JAR file that contains the plugins
+	 */
+	public static void evict(String jarHash) {
+		if (jarHash != null) {
+			SCRIPTS.remove(jarHash);
+		}
+	}
+	
+	/**
+	 * Reads and parses the plugin's SQL resource into statements.<br>
+	 * Comments are dropped and each statement ends with a line ending in {@code ;}.
+	 * @param plugin the plugin which has the resource
+	 * @param source location of the resource inside the JAR
+	 * @return immutable list of statements
+	 * @throws IOException
+	 */
+	private static List<String> parse(AbstractPlugin plugin, String source) throws IOException {
+		final InputStream resource = plugin.getClass().getResourceAsStream(source);
+		if (resource == null) {
+			throw new FileNotFoundException("Resource " + source + " of plugin " + plugin.getName() + " not found!");
+		}
+		
+		final List<String> statements = new ArrayList<>();
+		try (
+			InputStream inputStream = resource;
+			InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+			Scanner scn = new Scanner(reader)) {
+			StringBuilder sb = new StringBuilder();
+			while (scn.hasNextLine()) {
+				String line = scn.nextLine();
+				if (line.startsWith("--")) {
+					continue;
+				}
+				else if (line.contains("--")) {
+					line = line.split("--")[0];
+				}
+				
+				line = line.trim();
+				if (!line.isEmpty()) {
+					sb.append(line + System.lineSeparator());
+				}
+				
+				if (line.endsWith(";")) {
+					statements.add(sb.toString());
+					sb = new StringBuilder();
+				}
+			}
+		}
+		return Collections.unmodifiableList(statements);
+	}
+}
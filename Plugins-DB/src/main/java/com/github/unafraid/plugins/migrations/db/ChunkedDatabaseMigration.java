@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.migrations.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+
+import com.github.unafraid.plugins.AbstractPlugin;
+import com.github.unafraid.plugins.db.DatabaseProvider;
+import com.github.unafraid.plugins.exceptions.PluginRuntimeException;
+import com.github.unafraid.plugins.migrations.IPluginMigration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A migration that walks a table in chunks ordered by a unique key column, using keyset pagination ({@code WHERE key > last key}) rather than offsets.<br>
+ * Each row of a chunk is handed to {@link #processRow(ResultSet, PreparedStatement)}, which may bind the update statement, the updates of the chunk are executed as one batch and committed together.
+ * So large tables are migrated online, without a long running transaction nor holding the whole table in memory.
+ * <p>
+ * Since every chunk is committed on its own, a failed migration leaves the chunks before the failure migrated, {@link #processRow(ResultSet, PreparedStatement)} should skip rows that are migrated already.
+ * @author UnAfraid
+ */
+public abstract class ChunkedDatabaseMigration implements IPluginMigration {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedDatabaseMigration.class);
+	
+	/**
+	 * The default amount of rows per chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+	
+	private final String description;
+	private final int targetVersion;
+	private final String database;
+	private final String table;
+	private final String keyColumn;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private long throttleMillis;
+	private IMigrationProgressListener progressListener;
+	
+	/**
+	 * @param description the description of this migration
+	 * @param targetVersion the target version of this migration
+	 * @param table the table of the connection's default database to walk
+	 * @param keyColumn the unique key column the table is walked by, it has to be part of {@link #getColumns()}
+	 */
+	protected ChunkedDatabaseMigration(String description, int targetVersion, String table, String keyColumn) {
+		this(description, targetVersion, null, table, keyColumn);
+	}
+	
+	/**
+	 * @param description the description of this migration
+	 * @param targetVersion the target version of this migration
+	 * @param database the database (or schema) of the table, e.g. the one the table was installed to by {@link com.github.unafraid.plugins.installers.db.DatabaseInstaller#addTable(String, java.util.Optional, java.util.Optional)}, {@code null} for the connection's default
+	 * @param table the table to walk
+	 * @param keyColumn the unique key column the table is walked by, it has to be part of {@link #getColumns()}
+	 */
+	protected ChunkedDatabaseMigration(String description, int targetVersion, String database, String table, String keyColumn) {
+		this.description = Objects.requireNonNull(description);
+		this.targetVersion = targetVersion;
+		this.database = database;
+		this.table = Objects.requireNonNull(table);
+		this.keyColumn = Objects.requireNonNull(keyColumn);
+	}
+	
+	@Override
+	public String getDescription() {
+		return description;
+	}
+	
+	@Override
+	public int getTargetVersion() {
+		return targetVersion;
+	}
+	
+	/**
+	 * Sets the amount of rows per chunk.
+	 * @param chunkSize the amount of rows per chunk
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+	}
+	
+	/**
+	 * Sets the pause between chunks, to leave room for the regular load of the database.
+	 * @param throttleMillis the pause in milliseconds, {@code 0} for none
+	 */
+	public void setThrottle(long throttleMillis) {
+		this.throttleMillis = Math.max(0, throttleMillis);
+	}
+	
+	/**
+	 * Sets the listener notified after each committed chunk.
+	 * @param progressListener the listener, {@code null} for none
+	 */
+	public void setProgressListener(IMigrationProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+	
+	/**
+	 * Gets the name of the walked table, qualified with its database if any, for use in {@link #getUpdateQuery()}.
+	 * @return quoted table name
+	 */
+	protected final String getQualifiedTable() {
+		return database != null ? "`" + database + "`.`" + table + "`" : "`" + table + "`";
+	}
+	
+	/**
+	 * Gets the columns selected for each row.
+	 * @return the column list of the select query, all columns by default
+	 */
+	protected String getColumns() {
+		return "*";
+	}
+	
+	/**
+	 * Gets the update query, prepared once and bound by {@link #processRow(ResultSet, PreparedStatement)} for each row to update.<br>
+	 * The query runs on the connection's default database, so a table of another database has to be {@link #getQualifiedTable() qualified}.
+	 * @return update query
+	 */
+	protected abstract String getUpdateQuery();
+	
+	/**
+	 * Processes a row of the table.
+	 * @param row the result set, positioned at the row
+	 * @param update the update statement to bind the parameters of
+	 * @return {@code true} if the update statement was bound and has to be added to the batch, {@code false} to skip the row
+	 * @throws SQLException
+	 */
+	protected abstract boolean processRow(ResultSet row, PreparedStatement update) throws SQLException;
+	
+	@Override
+	public void migrate(AbstractPlugin plugin) {
+		try (Connection con = DatabaseProvider.DATABASE_FACTORY.getConnection()) {
+			final boolean autoCommit = con.getAutoCommit();
+			con.setAutoCommit(false);
+			try {
+				migrate(plugin, con);
+			}
+			catch (SQLException | RuntimeException e) {
+				con.rollback();
+				throw e;
+			}
+			finally {
+				con.setAutoCommit(autoCommit);
+			}
+		}
+		catch (SQLException e) {
+			throw new PluginRuntimeException("Failed to migrate table " + getQualifiedTable() + " of plugin " + plugin.getName() + " to version " + targetVersion, e);
+		}
+	}
+	
+	/**
+	 * Walks the table chunk by chunk.
+	 * @param plugin the plugin
+	 * @param con the connection, not in auto commit mode
+	 * @throws SQLException
+	 */
+	private void migrate(AbstractPlugin plugin, Connection con) throws SQLException {
+		final String select = "SELECT " + getColumns() + " FROM " + getQualifiedTable();
+		final String order = " ORDER BY `" + keyColumn + "` LIMIT ?";
+		try (
+			PreparedStatement firstChunk = con.prepareStatement(select + order);
+			PreparedStatement nextChunk = con.prepareStatement(select + " WHERE `" + keyColumn + "` > ?" + order);
+			PreparedStatement update = con.prepareStatement(getUpdateQuery())) {
+			Object lastKey = null;
+			long processedRows = 0;
+			long updatedRows = 0;
+			while (true) {
+				final PreparedStatement chunk;
+				if (lastKey == null) {
+					chunk = firstChunk;
+					chunk.setInt(1, chunkSize);
+				}
+				else {
+					chunk = nextChunk;
+					chunk.setObject(1, lastKey);
+					chunk.setInt(2, chunkSize);
+				}
+				
+				int chunkRows = 0;
+				int chunkUpdates = 0;
+				try (ResultSet rs = chunk.executeQuery()) {
+					while (rs.next()) {
+						chunkRows++;
+						lastKey = rs.getObject(keyColumn);
+						if (processRow(rs, update)) {
+							update.addBatch();
+							chunkUpdates++;
+						}
+					}
+				}
+				
+				if (chunkUpdates > 0) {
+					update.executeBatch();
+				}
+				con.commit();
+				
+				processedRows += chunkRows;
+				updatedRows += chunkUpdates;
+				if (progressListener != null) {
+					progressListener.onProgress(this, processedRows, updatedRows, lastKey);
+				}
+				
+				if ((chunkRows < chunkSize) || (lastKey == null)) {
+					break;
+				}
+				throttle();
+			}
+			
+			LOGGER.info("Migrated table {} of plugin {} to version {}: {} row(s) processed, {} updated", getQualifiedTable(), plugin.getName(), targetVersion, processedRows, updatedRows);
+		}
+	}
+	
+	/**
+	 * Pauses between chunks, if throttling is set.
+	 */
+	private void throttle() {
+		if (throttleMillis <= 0) {
+			return;
+		}
+		
+		try {
+			Thread.sleep(throttleMillis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PluginRuntimeException("Interrupted while migrating table " + getQualifiedTable() + " to version " + targetVersion, e);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + description + ", version " + targetVersion + ", table " + getQualifiedTable() + "]";
+	}
+}
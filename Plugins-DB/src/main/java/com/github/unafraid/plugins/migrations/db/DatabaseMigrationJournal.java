@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.migrations.db;
+
+import com.github.unafraid.plugins.AbstractPlugin;
+import com.github.unafraid.plugins.db.DatabaseProvider;
+import com.github.unafraid.plugins.db.dao.PluginMigrationsDAO;
+import com.github.unafraid.plugins.migrations.IMigrationJournal;
+
+/**
+ * A migration journal keeping a row per completed target version of each unfinished plugin migration in the {@code plugin_migrations} table.<br>
+ * A plugin opts in by setting it in its setup, e.g. {@code migrations.setJournal(new DatabaseMigrationJournal())}.
+ * @author UnAfraid
+ */
+public class DatabaseMigrationJournal implements IMigrationJournal {
+	@Override
+	public int getCheckpoint(AbstractPlugin plugin) {
+		try (PluginMigrationsDAO migrationsDao = DatabaseProvider.DBI.open(PluginMigrationsDAO.class)) {
+			final Integer version = migrationsDao.findLastVersionByName(plugin.getName());
+			return version != null ? version : NO_CHECKPOINT;
+		}
+	}
+	
+	@Override
+	public void checkpoint(AbstractPlugin plugin, int version) {
+		try (PluginMigrationsDAO migrationsDao = DatabaseProvider.DBI.open(PluginMigrationsDAO.class)) {
+			migrationsDao.insert(plugin.getName(), version, System.currentTimeMillis());
+		}
+	}
+	
+	@Override
+	public void clear(AbstractPlugin plugin) {
+		try (PluginMigrationsDAO migrationsDao = DatabaseProvider.DBI.open(PluginMigrationsDAO.class)) {
+			migrationsDao.deleteByName(plugin.getName());
+		}
+	}
+}
@@ -0,0 +1,6 @@
+CREATE TABLE IF NOT EXISTS `plugin_migrations` (
+  `name` varchar(255) NOT NULL,
+  `version` int(10) unsigned NOT NULL,
+  `completedOn` bigint(20) unsigned NOT NULL,
+  PRIMARY KEY (`name`, `version`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
\ No newline at end of file
@@ -0,0 +1,602 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.unafraid.plugins.conditions.PluginConditions;
+import com.github.unafraid.plugins.db.DatabaseProvider;
+import com.github.unafraid.plugins.db.dao.PluginsDAO;
+import com.github.unafraid.plugins.db.dao.dto.Plugin;
+import com.github.unafraid.plugins.exceptions.PluginException;
+import com.github.unafraid.plugins.installers.db.DatabaseInstaller;
+import com.github.unafraid.plugins.installers.db.PluginDatabaseScripts;
+import com.github.unafraid.plugins.installers.file.FileInstaller;
+import com.github.unafraid.plugins.migrations.PluginMigrations;
+
+/**
+ * @author UnAfraid
+ */
+public class DBPluginRepositoryTest {
+	private final List<String> installOrder = Collections.synchronizedList(new ArrayList<>());
+	private final List<String> uninstallOrder = Collections.synchronizedList(new ArrayList<>());
+	private final DBPluginRepository<AbstractDBPlugin> repository = new DBPluginRepository<>();
+	
+	@Before
+	public void clearScannedPlugins() {
+		ScannedPlugin.MIGRATED.clear();
+	}
+	
+	@After
+	public void deleteInstalledPlugins() {
+		try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+			pluginsDao.findAll().forEach(dbPlugin -> pluginsDao.delete(dbPlugin.getId()));
+		}
+	}
+	
+	@Test
+	public void installsDependenciesFirst() throws PluginException {
+		final List<TestPlugin> plugins = Arrays.asList(new TestPlugin("C", "B"), new TestPlugin("B", "A"), new TestPlugin("A"), new TestPlugin("D"));
+		repository.installPlugins(plugins);
+		
+		Assert.assertEquals(4, installOrder.size());
+		Assert.assertTrue(installOrder.indexOf("A") < installOrder.indexOf("B"));
+		Assert.assertTrue(installOrder.indexOf("B") < installOrder.indexOf("C"));
+		Assert.assertEquals(new HashSet<>(Arrays.asList("A", "B", "C", "D")), getStoredNames());
+		plugins.forEach(plugin -> Assert.assertEquals(PluginState.INSTALLED, plugin.getState()));
+	}
+	
+	@Test
+	public void failedDependencySkipsDependents() {
+		final TestPlugin failing = new TestPlugin("Failing").failing();
+		final TestPlugin dependent = new TestPlugin("Dependent", "Failing");
+		final TestPlugin transitive = new TestPlugin("Transitive", "Dependent");
+		final TestPlugin independent = new TestPlugin("Independent");
+		try {
+			repository.installPlugins(Arrays.asList(transitive, dependent, failing, independent));
+			Assert.fail();
+		}
+		catch (PluginException e) {
+			Assert.assertEquals(3, e.getSuppressed().length);
+		}
+		
+		Assert.assertEquals(Arrays.asList("Failing", "Independent"), installOrder.stream().sorted().collect(Collectors.toList()));
+		Assert.assertEquals(PluginState.INITIALIZED, failing.getState());
+		Assert.assertEquals(PluginState.INITIALIZED, dependent.getState());
+		Assert.assertEquals(PluginState.INITIALIZED, transitive.getState());
+		Assert.assertEquals(Collections.singleton("Independent"), getStoredNames());
+	}
+	
+	@Test
+	public void rejectsCircularDependencies() {
+		final TestPlugin first = new TestPlugin("First", "Second");
+		final TestPlugin second = new TestPlugin("Second", "First");
+		final TestPlugin missing = new TestPlugin("Missing", "Unknown");
+		try {
+			repository.installPlugins(Arrays.asList(first, second, missing));
+			Assert.fail();
+		}
+		catch (PluginException e) {
+			Assert.assertEquals(3, e.getSuppressed().length);
+			Assert.assertTrue(Arrays.stream(e.getSuppressed()).anyMatch(t -> t.getMessage().contains("circular")));
+			Assert.assertTrue(Arrays.stream(e.getSuppressed()).anyMatch(t -> t.getMessage().contains("not installed")));
+		}
+		
+		Assert.assertTrue(installOrder.isEmpty());
+		Assert.assertTrue(getStoredNames().isEmpty());
+	}
+	
+	@Test
+	public void storesBulkOperationsInBatches() throws PluginException {
+		final TestPlugin first = new TestPlugin("First");
+		final TestPlugin second = new TestPlugin("Second").withVersion(2);
+		final TestPlugin third = new TestPlugin("Third");
+		repository.installPlugins(Arrays.asList(first, second, third));
+		
+		Map<String, Plugin> stored = getStoredPlugins();
+		Assert.assertEquals(3, stored.size());
+		Assert.assertEquals(1, stored.get("First").getVersion());
+		Assert.assertEquals(2, stored.get("Second").getVersion());
+		Assert.assertTrue(stored.values().stream().noneMatch(Plugin::isAutoStart));
+		
+		repository.updateAutoStart(Arrays.asList(first, second), true);
+		try {
+			repository.updateAutoStart(Arrays.asList(third, new TestPlugin("Missing")), true);
+			Assert.fail();
+		}
+		catch (PluginException e) {
+			Assert.assertTrue(e.getMessage().contains("Missing"));
+		}
+		stored = getStoredPlugins();
+		Assert.assertTrue(stored.get("First").isAutoStart());
+		Assert.assertTrue(stored.get("Second").isAutoStart());
+		Assert.assertFalse(stored.get("Third").isAutoStart());
+		
+		try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+			Assert.assertEquals(new HashSet<>(Arrays.asList("First", "Third")), pluginsDao.findByNames(Arrays.asList("First", "Third", "Missing")).stream().map(Plugin::getName).collect(Collectors.toSet()));
+			pluginsDao.updateVersionByNames(Arrays.asList(3, 4), Arrays.asList("First", "Third"));
+		}
+		stored = getStoredPlugins();
+		Assert.assertEquals(3, stored.get("First").getVersion());
+		Assert.assertEquals(2, stored.get("Second").getVersion());
+		Assert.assertEquals(4, stored.get("Third").getVersion());
+		
+		repository.uninstallPlugins(Arrays.asList(first, third));
+		Assert.assertEquals(Collections.singleton("Second"), getStoredNames());
+		Assert.assertEquals(PluginState.INITIALIZED, first.getState());
+		Assert.assertEquals(PluginState.INSTALLED, second.getState());
+	}
+	
+	@Test
+	public void uninstallsDependentsFirst() throws PluginException {
+		final List<TestPlugin> plugins = Arrays.asList(new TestPlugin("A"), new TestPlugin("C", "B"), new TestPlugin("B", "A"));
+		repository.installPlugins(plugins);
+		
+		repository.uninstallPlugins(plugins);
+		Assert.assertEquals(Arrays.asList("C", "B", "A"), uninstallOrder);
+		Assert.assertTrue(getStoredNames().isEmpty());
+	}
+	
+	@Test
+	public void failedDependentKeepsDependencyInstalled() throws PluginException {
+		final TestPlugin core = new TestPlugin("Core");
+		final TestPlugin failing = new TestPlugin("Failing", "Core");
+		final TestPlugin other = new TestPlugin("Other", "Core");
+		repository.installPlugins(Arrays.asList(core, failing, other));
+		
+		failing.failing();
+		try {
+			repository.uninstallPlugins(Arrays.asList(core, failing, other));
+			Assert.fail();
+		}
+		catch (PluginException e) {
+			Assert.assertEquals(2, e.getSuppressed().length);
+			Assert.assertTrue(Arrays.stream(e.getSuppressed()).anyMatch(t -> t.getMessage().contains("still required by Failing")));
+		}
+		
+		Assert.assertFalse(uninstallOrder.contains("Core"));
+		Assert.assertEquals(new HashSet<>(Arrays.asList("Core", "Failing")), getStoredNames());
+		Assert.assertEquals(PluginState.INSTALLED, core.getState());
+		Assert.assertEquals(PluginState.INITIALIZED, other.getState());
+	}
+	
+	@Test
+	public void startAllMigratesOutdatedPluginsAfterTheirDependencies() {
+		try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+			for (String name : Arrays.asList("Core", "Addon", "Broken", "Dependent")) {
+				pluginsDao.insert(name, 1, System.currentTimeMillis(), 1);
+			}
+			pluginsDao.insert("Current", 1, System.currentTimeMillis(), 0);
+		}
+		
+		final DBPluginRepository<ScannedPlugin> scannedRepository = new DBPluginRepository<>();
+		scannedRepository.scan(ScannedPlugin.class);
+		scannedRepository.setAutoMigrate(true);
+		scannedRepository.startAll();
+		
+		Assert.assertEquals(Arrays.asList("Core", "Addon"), ScannedPlugin.MIGRATED);
+		Assert.assertEquals(PluginState.STARTED, scannedRepository.getAvailablePlugin("Core").getState());
+		Assert.assertEquals(PluginState.STARTED, scannedRepository.getAvailablePlugin("Addon").getState());
+		Assert.assertEquals(PluginState.INITIALIZED, scannedRepository.getAvailablePlugin("Broken").getState());
+		Assert.assertEquals(PluginState.INITIALIZED, scannedRepository.getAvailablePlugin("Dependent").getState());
+		Assert.assertEquals(PluginState.INSTALLED, scannedRepository.getAvailablePlugin("Current").getState());
+		
+		final Map<String, Plugin> stored = getStoredPlugins();
+		Assert.assertEquals(2, stored.get("Core").getVersion());
+		Assert.assertEquals(3, stored.get("Addon").getVersion());
+		Assert.assertEquals(1, stored.get("Broken").getVersion());
+		Assert.assertEquals(1, stored.get("Dependent").getVersion());
+		Assert.assertEquals(1, stored.get("Current").getVersion());
+	}
+	
+	@Test
+	public void startAllLeavesOutdatedPluginsWithoutAutoMigrate() {
+		try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+			pluginsDao.insert("Core", 1, System.currentTimeMillis(), 1);
+			pluginsDao.insert("Current", 1, System.currentTimeMillis(), 1);
+		}
+		
+		final DBPluginRepository<ScannedPlugin> scannedRepository = new DBPluginRepository<>();
+		scannedRepository.scan(ScannedPlugin.class);
+		scannedRepository.startAll();
+		
+		Assert.assertTrue(ScannedPlugin.MIGRATED.isEmpty());
+		Assert.assertEquals(PluginState.INITIALIZED, scannedRepository.getAvailablePlugin("Core").getState());
+		Assert.assertEquals(PluginState.STARTED, scannedRepository.getAvailablePlugin("Current").getState());
+		Assert.assertEquals(1, getStoredPlugins().get("Core").getVersion());
+	}
+	
+	@Test
+	public void upgradeStoresTheNewVersion() throws Exception {
+		try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+			pluginsDao.insert("Core", 2, System.currentTimeMillis(), 1);
+		}
+		
+		final DBPluginRepository<ScannedPlugin> scannedRepository = new DBPluginRepository<>();
+		scannedRepository.scan(ScannedPlugin.class);
+		scannedRepository.startAll();
+		final ScannedPlugin core = scannedRepository.getAvailablePlugin("Core");
+		Assert.assertEquals(PluginState.STARTED, core.getState());
+		
+		final Path pluginsPath = Files.createTempDirectory("plugins");
+		try {
+			try {
+				scannedRepository.upgrade(ScannedPlugin.class, core, createServiceJar(pluginsPath.resolve("downgrade.jar"), CoreV1.class));
+				Assert.fail();
+			}
+			catch (PluginException e) {
+				Assert.assertTrue(e.getMessage().contains("Failed to upgrade"));
+			}
+			Assert.assertSame(core, scannedRepository.getAvailablePlugin("Core"));
+			Assert.assertEquals(PluginState.STARTED, core.getState());
+			Assert.assertEquals(2, getStoredPlugins().get("Core").getVersion());
+			
+			final ScannedPlugin upgrade = scannedRepository.upgrade(ScannedPlugin.class, core, createServiceJar(pluginsPath.resolve("upgrade.jar"), CoreV3.class));
+			Assert.assertTrue(upgrade instanceof CoreV3);
+			Assert.assertSame(upgrade, scannedRepository.getAvailablePlugin("Core"));
+			Assert.assertEquals(PluginState.STARTED, upgrade.getState());
+			Assert.assertEquals(PluginState.INSTALLED, core.getState());
+			Assert.assertEquals(Collections.singletonList("Core"), ScannedPlugin.MIGRATED);
+			Assert.assertEquals(3, getStoredPlugins().get("Core").getVersion());
+		}
+		finally {
+			try (Stream<Path> files = Files.list(pluginsPath)) {
+				for (Path file : files.collect(Collectors.toList())) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(pluginsPath);
+		}
+	}
+	
+	@Test
+	public void installsTablesOfNamedDatabase() throws Exception {
+		execute("CREATE SCHEMA plugin_db");
+		try {
+			// INFORMATION_SCHEMA has a USERS table too, which must not be mistaken for the plugin's one
+			final TestPlugin plugin = new TestPlugin("Named");
+			plugin.getDatabaseInstaller().addTable("/sql/test/create_users.sql", Optional.of("users"), Optional.of("plugin_db"));
+			plugin.getDatabaseInstaller().addUninstallFile("/sql/test/drop_users.sql", Optional.of("users"), Optional.of("plugin_db"));
+			
+			repository.installPlugins(Collections.singletonList(plugin));
+			Assert.assertTrue(hasTable("PLUGIN_DB", "USERS"));
+			
+			repository.uninstallPlugins(Collections.singletonList(plugin));
+			Assert.assertFalse(hasTable("PLUGIN_DB", "USERS"));
+			Assert.assertTrue(getStoredNames().isEmpty());
+		}
+		finally {
+			execute("DROP SCHEMA plugin_db CASCADE");
+		}
+	}
+	
+	@Test
+	public void cachesScriptStatementsPerJarHash() throws IOException {
+		final List<String> statements = PluginDatabaseScripts.getStatements(new TestPlugin("Cached").withJarHash("cached"), "/sql/test/create_users.sql");
+		Assert.assertEquals(Collections.singletonList("CREATE TABLE users (id INT);" + System.lineSeparator()), statements);
+		Assert.assertSame(statements, PluginDatabaseScripts.getStatements(new TestPlugin("Cached").withJarHash("cached"), "/sql/test/create_users.sql"));
+		Assert.assertNotSame(statements, PluginDatabaseScripts.getStatements(new TestPlugin("Cached").withJarHash("other"), "/sql/test/create_users.sql"));
+		Assert.assertNotSame(statements, PluginDatabaseScripts.getStatements(new TestPlugin("Cached").withJarHash("cached"), "/sql/test/drop_users.sql"));
+	}
+	
+	@Test
+	public void parsesScriptsOfUnidentifiedVersionsEveryTime() throws IOException {
+		for (String jarHash : Arrays.asList(null, PluginRepository.IDE_MODE)) {
+			final TestPlugin plugin = new TestPlugin("Unidentified").withJarHash(jarHash);
+			final List<String> statements = PluginDatabaseScripts.getStatements(plugin, "/sql/test/create_users.sql");
+			Assert.assertNotSame(statements, PluginDatabaseScripts.getStatements(plugin, "/sql/test/create_users.sql"));
+			Assert.assertEquals(statements, PluginDatabaseScripts.getStatements(plugin, "/sql/test/create_users.sql"));
+		}
+	}
+	
+	@Test
+	public void unloadEvictsCachedScripts() throws Exception {
+		final TestPlugin plugin = new TestPlugin("Unloaded").withJarHash("unloaded");
+		final List<String> statements = PluginDatabaseScripts.getStatements(plugin, "/sql/test/create_users.sql");
+		Assert.assertSame(statements, PluginDatabaseScripts.getStatements(plugin, "/sql/test/create_users.sql"));
+		
+		repository.unload(plugin);
+		Assert.assertNotSame(statements, PluginDatabaseScripts.getStatements(plugin, "/sql/test/create_users.sql"));
+	}
+	
+	private static void execute(String statement) throws SQLException {
+		try (Connection con = DatabaseProvider.DATABASE_FACTORY.getConnection();
+			Statement st = con.createStatement()) {
+			st.execute(statement);
+		}
+	}
+	
+	private static boolean hasTable(String schema, String table) throws SQLException {
+		try (Connection con = DatabaseProvider.DATABASE_FACTORY.getConnection();
+			ResultSet rs = con.getMetaData().getTables(null, schema, table, null)) {
+			return rs.next();
+		}
+	}
+	
+	/**
+	 * Creates a JAR registering the plugin class as a service, the class itself is loaded from the class-path.
+	 * @param jar the JAR file
+	 * @param pluginClass the plugin class
+	 * @return the JAR file
+	 * @throws IOException
+	 */
+	private static Path createServiceJar(Path jar, Class<? extends ScannedPlugin> pluginClass) throws IOException {
+		try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+			out.putNextEntry(new JarEntry("META-INF/services/" + ScannedPlugin.class.getName()));
+			out.write(pluginClass.getName().getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+		return jar;
+	}
+	
+	private static Map<String, Plugin> getStoredPlugins() {
+		try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+			return pluginsDao.findAll().stream().collect(Collectors.toMap(Plugin::getName, Function.identity()));
+		}
+	}
+	
+	private static Set<String> getStoredNames() {
+		try (PluginsDAO pluginsDao = DatabaseProvider.DBI.open(PluginsDAO.class)) {
+			return pluginsDao.findAll().stream().map(Plugin::getName).collect(Collectors.toSet());
+		}
+	}
+	
+	private final class TestPlugin extends AbstractDBPlugin {
+		private final String name;
+		private final Set<String> dependencies;
+		private int version = 1;
+		private boolean failing;
+		
+		private TestPlugin(String name, String... dependencies) {
+			this.name = name;
+			this.dependencies = new HashSet<>(Arrays.asList(dependencies));
+			// Uninstalling cleans up the directory of the plugin, which is never created by the tests
+			setPluginsPath(Paths.get(System.getProperty("java.io.tmpdir"), "DBPluginRepositoryTest"));
+			init();
+			registerFunction(new AbstractPluginFunction<TestPlugin>(this) {
+				@Override
+				public void onInstall() throws PluginException {
+					installOrder.add(name);
+					if (failing) {
+						throw new PluginException("Plugin " + name + " failed on purpose");
+					}
+				}
+				
+				@Override
+				public void onUninstall() throws PluginException {
+					uninstallOrder.add(name);
+					if (failing) {
+						throw new PluginException("Plugin " + name + " failed on purpose");
+					}
+				}
+				
+				@Override
+				public void onStart() {
+					// nothing to start
+				}
+				
+				@Override
+				public void onStop() {
+					// nothing to stop
+				}
+			});
+		}
+		
+		private TestPlugin withVersion(int version) {
+			this.version = version;
+			return this;
+		}
+		
+		private TestPlugin withJarHash(String jarHash) {
+			setJarHash(jarHash);
+			return this;
+		}
+		
+		private TestPlugin failing() {
+			failing = true;
+			return this;
+		}
+		
+		@Override
+		public String getName() {
+			return name;
+		}
+		
+		@Override
+		public String getAuthor() {
+			return "UnAfraid";
+		}
+		
+		@Override
+		public String getCreatedAt() {
+			return "19.10.2026";
+		}
+		
+		@Override
+		public String getDescription() {
+			return "Test plugin " + name;
+		}
+		
+		@Override
+		public int getVersion() {
+			return version;
+		}
+		
+		@Override
+		public Set<String> getDependencies() {
+			return dependencies;
+		}
+		
+		@Override
+		protected void setup(FileInstaller fileInstaller, DatabaseInstaller dbInstaller, PluginMigrations migrations, PluginConditions pluginConditions) {
+			// nothing to set up
+		}
+	}
+	
+	/**
+	 * A plugin found on the class-path by {@link PluginRepository#scan(Class)}, registered in {@code META-INF/services}.
+	 */
+	public abstract static class ScannedPlugin extends AbstractDBPlugin {
+		private static final List<String> MIGRATED = Collections.synchronizedList(new ArrayList<>());
+		
+		private final int version;
+		private final Set<String> dependencies;
+		
+		ScannedPlugin(int version, String... dependencies) {
+			this.version = version;
+			this.dependencies = new HashSet<>(Arrays.asList(dependencies));
+			init();
+			registerFunction(new AbstractPluginFunction<ScannedPlugin>(this) {
+				@Override
+				public void onMigrate(int from, int to) throws PluginException {
+					if (getName().startsWith("Broken")) {
+						throw new PluginException("Plugin " + getName() + " failed on purpose");
+					}
+					MIGRATED.add(getName());
+				}
+				
+				@Override
+				public void onStart() {
+					// nothing to start
+				}
+				
+				@Override
+				public void onStop() {
+					// nothing to stop
+				}
+			});
+		}
+		
+		@Override
+		public String getName() {
+			return getClass().getSimpleName();
+		}
+		
+		@Override
+		public String getAuthor() {
+			return "UnAfraid";
+		}
+		
+		@Override
+		public String getCreatedAt() {
+			return "19.10.2026";
+		}
+		
+		@Override
+		public String getDescription() {
+			return "Scanned test plugin " + getName();
+		}
+		
+		@Override
+		public int getVersion() {
+			return version;
+		}
+		
+		@Override
+		public Set<String> getDependencies() {
+			return dependencies;
+		}
+		
+		@Override
+		protected void setup(FileInstaller fileInstaller, DatabaseInstaller dbInstaller, PluginMigrations migrations, PluginConditions pluginConditions) {
+			// nothing to set up
+		}
+	}
+	
+	public static class Core extends ScannedPlugin {
+		public Core() {
+			super(2);
+		}
+	}
+	
+	public static class Addon extends ScannedPlugin {
+		public Addon() {
+			super(3, "Core");
+		}
+	}
+	
+	public static class Broken extends ScannedPlugin {
+		public Broken() {
+			super(2);
+		}
+	}
+	
+	public static class Dependent extends ScannedPlugin {
+		public Dependent() {
+			super(2, "Broken");
+		}
+	}
+	
+	public static class CoreV1 extends ScannedPlugin {
+		public CoreV1() {
+			super(1);
+		}
+		
+		@Override
+		public String getName() {
+			return "Core";
+		}
+	}
+	
+	public static class CoreV3 extends ScannedPlugin {
+		public CoreV3() {
+			super(3);
+		}
+		
+		@Override
+		public String getName() {
+			return "Core";
+		}
+	}
+	
+	public static class Current extends ScannedPlugin {
+		public Current() {
+			super(1);
+		}
+	}
+}
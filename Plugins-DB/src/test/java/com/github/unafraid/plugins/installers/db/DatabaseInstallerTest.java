@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.installers.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.unafraid.plugins.AbstractDBPlugin;
+import com.github.unafraid.plugins.conditions.PluginConditions;
+import com.github.unafraid.plugins.db.DatabaseProvider;
+import com.github.unafraid.plugins.exceptions.PluginException;
+import com.github.unafraid.plugins.exceptions.PluginRuntimeException;
+import com.github.unafraid.plugins.installers.file.FileInstaller;
+import com.github.unafraid.plugins.migrations.PluginMigrations;
+
+/**
+ * @author UnAfraid
+ */
+public class DatabaseInstallerTest {
+	@Before
+	public void createDatabases() throws SQLException {
+		execute("CREATE SCHEMA installer_first", "CREATE SCHEMA installer_second");
+	}
+	
+	@After
+	public void dropDatabases() throws SQLException {
+		execute("DROP TABLE IF EXISTS installer_marker", "DROP SCHEMA IF EXISTS installer_first CASCADE", "DROP SCHEMA IF EXISTS installer_second CASCADE");
+	}
+	
+	@Test
+	public void executesDefaultDatabaseFirstThenEachDatabase() throws Exception {
+		final TestPlugin plugin = new TestPlugin();
+		plugin.getDatabaseInstaller().addTable("/sql/test/second_database.sql", Optional.empty(), Optional.of("installer_second"));
+		plugin.getDatabaseInstaller().addTable("/sql/test/first_database.sql", Optional.empty(), Optional.of("installer_first"));
+		plugin.getDatabaseInstaller().addTable("/sql/test/default_marker.sql", Optional.empty(), Optional.empty());
+		plugin.install();
+		
+		final Set<String> tables = getTables();
+		Assert.assertTrue(tables.contains("PUBLIC.INSTALLER_MARKER"));
+		Assert.assertTrue(tables.contains("INSTALLER_FIRST.INSTALLER_FIRST"));
+		Assert.assertTrue(tables.contains("INSTALLER_SECOND.INSTALLER_SECOND"));
+		Assert.assertFalse(tables.contains("PUBLIC.INSTALLER_FIRST"));
+		Assert.assertFalse(tables.contains("PUBLIC.INSTALLER_SECOND"));
+		
+		try (Connection con = DatabaseProvider.DATABASE_FACTORY.getConnection();
+			Statement st = con.createStatement();
+			ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM installer_marker")) {
+			Assert.assertTrue(rs.next());
+			Assert.assertEquals(2, rs.getInt(1));
+		}
+	}
+	
+	@Test
+	public void switchesBackAfterFailure() throws SQLException {
+		final TestPlugin plugin = new TestPlugin();
+		plugin.getDatabaseInstaller().addTable("/sql/test/failing_database.sql", Optional.empty(), Optional.of("installer_first"));
+		try {
+			plugin.install();
+			Assert.fail();
+		}
+		catch (PluginException | PluginRuntimeException e) {
+			// Expected, the script fails after switching to its database.
+		}
+		
+		// The pool hands out the connection returned last, which is the installer's one
+		try (Connection con = DatabaseProvider.DATABASE_FACTORY.getConnection()) {
+			Assert.assertEquals("PUBLIC", con.getSchema());
+			Assert.assertTrue(con.getAutoCommit());
+		}
+	}
+	
+	private static void execute(String... statements) throws SQLException {
+		try (Connection con = DatabaseProvider.DATABASE_FACTORY.getConnection();
+			Statement st = con.createStatement()) {
+			for (String statement : statements) {
+				st.execute(statement);
+			}
+		}
+	}
+	
+	private static Set<String> getTables() throws SQLException {
+		final Set<String> tables = new TreeSet<>();
+		try (Connection con = DatabaseProvider.DATABASE_FACTORY.getConnection();
+			ResultSet rs = con.getMetaData().getTables(null, null, "%", new String[]{"TABLE"})) {
+			while (rs.next()) {
+				tables.add((rs.getString("TABLE_SCHEM") + "." + rs.getString("TABLE_NAME")).toUpperCase());
+			}
+		}
+		return tables;
+	}
+	
+	private static final class TestPlugin extends AbstractDBPlugin {
+		private TestPlugin() {
+			init();
+		}
+		
+		@Override
+		public String getName() {
+			return "DatabaseInstallerTest";
+		}
+		
+		@Override
+		public String getAuthor() {
+			return "UnAfraid";
+		}
+		
+		@Override
+		public String getCreatedAt() {
+			return "19.10.2026";
+		}
+		
+		@Override
+		public String getDescription() {
+			return "Test plugin of the database installer";
+		}
+		
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+		
+		@Override
+		protected void setup(FileInstaller fileInstaller, DatabaseInstaller dbInstaller, PluginMigrations migrations, PluginConditions pluginConditions) {
+			// the tests register the files
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.unafraid.plugins.migrations.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.unafraid.plugins.AbstractDBPlugin;
+import com.github.unafraid.plugins.conditions.PluginConditions;
+import com.github.unafraid.plugins.db.DatabaseProvider;
+import com.github.unafraid.plugins.exceptions.PluginRuntimeException;
+import com.github.unafraid.plugins.installers.db.DatabaseInstaller;
+import com.github.unafraid.plugins.installers.file.FileInstaller;
+import com.github.unafraid.plugins.migrations.PluginMigrations;
+
+/**
+ * @author UnAfraid
+ */
+public class ChunkedDatabaseMigrationTest {
+	private static final int ROWS = 7;
+	
+	private final TestPlugin plugin = new TestPlugin();
+	
+	@Before
+	public void createTables() throws SQLException {
+		execute("CREATE TABLE chunked_items (id INT PRIMARY KEY, migrated INT NOT NULL)", "CREATE SCHEMA chunked_db", "CREATE TABLE chunked_db.chunked_items (id INT PRIMARY KEY, migrated INT NOT NULL)");
+		for (int id = 1; id <= ROWS; id++) {
+			execute("INSERT INTO chunked_items VALUES (" + (id * 10) + ", 0)", "INSERT INTO chunked_db.chunked_items VALUES (" + (id * 10) + ", 0)");
+		}
+	}
+	
+	@After
+	public void dropTables() throws SQLException {
+		execute("DROP TABLE IF EXISTS chunked_items", "DROP SCHEMA IF EXISTS chunked_db CASCADE");
+	}
+	
+	@Test
+	public void walksTableInChunks() throws SQLException {
+		final TestMigration migration = new TestMigration(null);
+		final List<String> progress = new ArrayList<>();
+		migration.setChunkSize(3);
+		migration.setProgressListener((m, processedRows, updatedRows, lastKey) -> progress.add(processedRows + "/" + updatedRows + "@" + lastKey));
+		migration.migrate(plugin);
+		
+		// 7 rows in chunks of 3, each chunk starts after the key of the previous one
+		Assert.assertEquals("[3/3@30, 6/6@60, 7/7@70]", progress.toString());
+		Assert.assertEquals(ROWS, migration.processedKeys.size());
+		Assert.assertEquals(ROWS, countMigrated("chunked_items"));
+		Assert.assertEquals(0, countMigrated("chunked_db.chunked_items"));
+	}
+	
+	@Test
+	public void stopsAfterFullLastChunk() throws SQLException {
+		execute("DELETE FROM chunked_items WHERE id > 60");
+		final TestMigration migration = new TestMigration(null);
+		final List<Long> progress = new ArrayList<>();
+		migration.setChunkSize(3);
+		migration.setProgressListener((m, processedRows, updatedRows, lastKey) -> progress.add(processedRows));
+		migration.migrate(plugin);
+		
+		// The second chunk is full, so an empty third chunk is read to find the end
+		Assert.assertEquals("[3, 6, 6]", progress.toString());
+		Assert.assertEquals(6, countMigrated("chunked_items"));
+	}
+	
+	@Test
+	public void skipsMigratedRows() throws SQLException {
+		execute("UPDATE chunked_items SET migrated = 1 WHERE id IN (20, 50)");
+		final TestMigration migration = new TestMigration(null);
+		final List<String> progress = new ArrayList<>();
+		migration.setChunkSize(3);
+		migration.setProgressListener((m, processedRows, updatedRows, lastKey) -> progress.add(processedRows + "/" + updatedRows));
+		migration.migrate(plugin);
+		
+		Assert.assertEquals("[3/2, 6/4, 7/5]", progress.toString());
+		Assert.assertEquals(ROWS, countMigrated("chunked_items"));
+	}
+	
+	@Test
+	public void resumesAfterFailedChunk() throws SQLException {
+		final TestMigration failing = new TestMigration(null);
+		failing.setChunkSize(3);
+		failing.failAt = 50;
+		try {
+			failing.migrate(plugin);
+			Assert.fail();
+		}
+		catch (PluginRuntimeException e) {
+			// Expected, the second chunk fails
+		}
+		
+		// The first chunk stays committed, the failed one is rolled back
+		Assert.assertEquals(3, countMigrated("chunked_items"));
+		
+		final TestMigration resumed = new TestMigration(null);
+		final List<String> progress = new ArrayList<>();
+		resumed.setChunkSize(3);
+		resumed.setProgressListener((m, processedRows, updatedRows, lastKey) -> progress.add(processedRows + "/" + updatedRows));
+		resumed.migrate(plugin);
+		
+		Assert.assertEquals("[3/0, 6/3, 7/4]", progress.toString());
+		Assert.assertEquals(ROWS, countMigrated("chunked_items"));
+	}
+	
+	@Test
+	public void walksTableOfDatabase() throws SQLException {
+		final TestMigration migration = new TestMigration("chunked_db");
+		migration.setChunkSize(3);
+		migration.migrate(plugin);
+		
+		Assert.assertEquals(ROWS, migration.processedKeys.size());
+		Assert.assertEquals(ROWS, countMigrated("chunked_db.chunked_items"));
+		Assert.assertEquals(0, countMigrated("chunked_items"));
+	}
+	
+	private static int countMigrated(String table) throws SQLException {
+		try (Connection con = DatabaseProvider.DATABASE_FACTORY.getConnection();
+			Statement st = con.createStatement();
+			ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table + " WHERE migrated = 1")) {
+			Assert.assertTrue(rs.next());
+			return rs.getInt(1);
+		}
+	}
+	
+	private static void execute(String... statements) throws SQLException {
+		try (Connection con = DatabaseProvider.DATABASE_FACTORY.getConnection();
+			Statement st = con.createStatement()) {
+			for (String statement : statements) {
+				st.execute(statement);
+			}
+		}
+	}
+	
+	private static final class TestMigration extends ChunkedDatabaseMigration {
+		private final List<Integer> processedKeys = new ArrayList<>();
+		private int failAt = -1;
+		
+		private TestMigration(String database) {
+			super("Marks the items as migrated", 2, database, "chunked_items", "id");
+		}
+		
+		@Override
+		protected String getColumns() {
+			return "id, migrated";
+		}
+		
+		@Override
+		protected String getUpdateQuery() {
+			return "UPDATE " + getQualifiedTable() + " SET migrated = 1 WHERE id = ?";
+		}
+		
+		@Override
+		protected boolean processRow(ResultSet row, PreparedStatement update) throws SQLException {
+			final int id = row.getInt("id");
+			if (id == failAt) {
+				throw new SQLException("Failing at " + id);
+			}
+			
+			processedKeys.add(id);
+			if (row.getInt("migrated") == 1) {
+				return false;
+			}
+			
+			update.setInt(1, id);
+			return true;
+		}
+	}
+	
+	private static final class TestPlugin extends AbstractDBPlugin {
+		private TestPlugin() {
+			init();
+		}
+		
+		@Override
+		public String getName() {
+			return "ChunkedDatabaseMigrationTest";
+		}
+		
+		@Override
+		public String getAuthor() {
+			return "UnAfraid";
+		}
+		
+		@Override
+		public String getCreatedAt() {
+			return "19.10.2026";
+		}
+		
+		@Override
+		public String getDescription() {
+			return "Test plugin of the chunked database migration";
+		}
+		
+		@Override
+		public int getVersion() {
+			return 2;
+		}
+		
+		@Override
+		protected void setup(FileInstaller fileInstaller, DatabaseInstaller dbInstaller, PluginMigrations migrations, PluginConditions pluginConditions) {
+			// the tests run the migrations directly
+		}
+	}
+}
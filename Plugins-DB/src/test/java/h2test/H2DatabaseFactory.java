@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2017 Rumen Nikiforov <unafraid89@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package h2test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import com.github.unafraid.plugins.db.IDatabaseFactory;
+
+/**
+ * A pool of connections to an in-memory H2 database in MySQL mode for the tests, so connections are reused like in production.<br>
+ * It lives outside of {@code com.github.unafraid}, as {@link com.github.unafraid.plugins.db.TestDatabaseProvider} verifies that the library itself provides no database factory.
+ * @author UnAfraid
+ */
+public class H2DatabaseFactory implements IDatabaseFactory {
+	private final JdbcConnectionPool dataSource = JdbcConnectionPool.create("jdbc:h2:mem:plugins;MODE=MySQL;DB_CLOSE_DELAY=-1", "", "");
+	
+	@Override
+	public Connection getConnection() {
+		try {
+			return dataSource.getConnection();
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+}
@@ -0,0 +1,2 @@
+-- Created first, the files of the named databases fill it
+CREATE TABLE installer_marker (id INT);
@@ -0,0 +1,2 @@
+CREATE TABLE installer_first (id INT);
+INSERT INTO installer_missing VALUES (1);
@@ -0,0 +1,2 @@
+INSERT INTO PUBLIC.installer_marker VALUES (1);
+CREATE TABLE installer_first (id INT);
@@ -0,0 +1,2 @@
+INSERT INTO PUBLIC.installer_marker VALUES (2);
+CREATE TABLE installer_second (id INT);